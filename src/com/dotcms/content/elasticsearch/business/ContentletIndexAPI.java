@@ -62,6 +62,17 @@ public interface ContentletIndexAPI {
 	public void addContentToIndex(final Contentlet content, final boolean deps, boolean indexBeforeCommit, final boolean reindexOnly,
 			final BulkRequestBuilder bulk) throws DotHibernateException;
 
+	/**
+	 * Adds the index requests of the contentlets to the bulk, mapping them all at once.
+	 * Dependencies are not reindexed
+	 * @param contentToIndex
+	 * @param reindexOnly only to the indexes of a full reindex in progress
+	 * @param bulk
+	 * @throws DotDataException
+	 */
+	public void addContentToIndex(final List<Contentlet> contentToIndex, final boolean reindexOnly, final BulkRequestBuilder bulk)
+			throws DotDataException;
+
 	public void removeContentFromIndex(final Contentlet content) throws DotHibernateException;
 
 	public void removeContentFromIndex(final Contentlet content, final boolean onlyLive) throws DotHibernateException;
@@ -5,6 +5,7 @@ import java.io.StringWriter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +21,7 @@ import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -80,6 +82,9 @@ import com.liferay.portal.model.User;
 
 public class ESContentFactoryImpl extends ContentletFactory {
 	private ContentletCache cc = CacheLocator.getContentletCache();
+	// other servers don't tell us about their writes, off by default in a cluster
+	private static final int indexSearchCacheSeconds = Config.getIntProperty("INDEX_SEARCH_CACHE_SECONDS",
+	        Config.getBooleanProperty("DIST_INDEXATION_ENABLED", false) ? 0 : 60);
 	private ESClient client = null;
 	private LanguageAPI langAPI = APILocator.getLanguageAPI();
 
@@ -1279,6 +1284,10 @@ public class ESContentFactoryImpl extends ContentletFactory {
 	}
 	
 	private SearchRequestBuilder createRequest(Client client, String query) {
+		return createRequest(client, query, null);
+	}
+
+	private SearchRequestBuilder createRequest(Client client, String query, FilterBuilder permissionFilter) {
 		if(Config.getBooleanProperty("ELASTICSEARCH_USE_FILTERS_FOR_SEARCHING",false)) {
 			/* this is filtered query
 			 * return client.prepareSearch().setQuery(
@@ -1286,17 +1295,110 @@ public class ESContentFactoryImpl extends ContentletFactory {
                         FilterBuilders.queryFilter(
         					QueryBuilders.queryString(query)).cache(true)));*/
 			/* this is a match_all query with a separated filter */
+			FilterBuilder filter=FilterBuilders.queryFilter(QueryBuilders.queryString(query)).cache(true);
 			return client.prepareSearch().setQuery(QueryBuilders.matchAllQuery())
-					.setFilter(FilterBuilders.queryFilter(
-							QueryBuilders.queryString(query)).cache(true));
+					.setFilter(permissionFilter!=null ? FilterBuilders.andFilter(filter, permissionFilter) : filter);
+		}
+		else if(permissionFilter!=null) {
+			return client.prepareSearch().setQuery(QueryBuilders.filteredQuery(QueryBuilders.queryString(query), permissionFilter));
 		}
 		else {
 			return client.prepareSearch().setQuery(QueryBuilders.queryString(query));
 		}
 	}
+
+	/**
+	 * Matches the documents either permission query matches. The roles one is the same for every
+	 * user with the same roles, so elasticsearch keeps it in its filter cache. The owner one is
+	 * only good for one user and isn't cached
+	 * @return the filter or null if there are no permission queries
+	 */
+	private FilterBuilder createPermissionFilter(String ownerQuery, String rolesQuery) {
+		FilterBuilder rolesFilter = rolesQuery != null
+				? FilterBuilders.queryFilter(QueryBuilders.queryString(translateQuery(rolesQuery, null).getQuery())).cache(true) : null;
+		FilterBuilder ownerFilter = ownerQuery != null
+				? FilterBuilders.queryFilter(QueryBuilders.queryString(translateQuery(ownerQuery, null).getQuery())).cache(false) : null;
+		if (rolesFilter != null && ownerFilter != null)
+			return FilterBuilders.orFilter(ownerFilter, rolesFilter);
+		return rolesFilter != null ? rolesFilter : ownerFilter;
+	}
 	
+	/**
+	 * Like {@link #indexSearch(String, int, int, String)} but only gives the inodes and identifiers
+	 * of the hits. Results from the live index are cached for INDEX_SEARCH_CACHE_SECONDS (default
+	 * 60, or 0 when DIST_INDEXATION_ENABLED, 0 disables it) or until this server writes to the live
+	 * index, see {@link LiveIndexGeneration}
+	 */
+	protected IndexSearchResult indexSearchInodes(String query, int limit, int offset, String sortBy) {
+	    return indexSearchInodes(query, null, null, limit, offset, sortBy);
+	}
+
+	/**
+	 * Searches only the documents matching the owner or the roles permission query, see
+	 * {@link #indexSearch(String, String, String, int, int, String)}
+	 */
+	protected IndexSearchResult indexSearchInodes(String query, String ownerQuery, String rolesQuery, int limit, int offset, String sortBy) {
+	    String key=null;
+	    if(indexSearchCacheSeconds>0 && query.contains("+live:true") && !query.contains("+deleted:true")
+	            && !(sortBy!=null && sortBy.trim().equalsIgnoreCase("random"))) {
+	        try {
+	            IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
+	            key=info.live + " --- " + LiveIndexGeneration.getGeneration(query) + " --- " + translateQuery(query, sortBy).getQuery()
+	                    + " --- " + ownerQuery + " --- " + rolesQuery + " --- " + sortBy + " --- " + limit + " --- " + offset;
+	            IndexSearchResult cached=cc.getIndexSearch(key);
+	            if(cached!=null && System.currentTimeMillis()-cached.getCreated() < indexSearchCacheSeconds*1000L)
+	                return cached;
+	        }
+	        catch(DotDataException ee) {
+	            Logger.warn(this, "Can't get indicies information, not caching the search: "+ee.getMessage());
+	            key=null;
+	        }
+	    }
+	    // a write made while searching changes the generation, so the key is not found again
+	    boolean settled=LiveIndexGeneration.isSettled();
+
+	    SearchHits hits=indexSearch(query, ownerQuery, rolesQuery, limit, offset, sortBy);
+	    List<String> inodes=new ArrayList<String>();
+	    List<String> identifiers=new ArrayList<String>();
+	    long total=0;
+	    if(hits!=null) {
+	        total=hits.getTotalHits();
+	        for(SearchHit h : hits.hits()) {
+	            try {
+	                String inode=h.field("inode").getValue().toString();
+	                String identifier=h.field("identifier").getValue().toString();
+	                inodes.add(inode);
+	                identifiers.add(identifier);
+	            }
+	            catch(Exception e) {
+	                Logger.error(this,e.getMessage(),e);
+	            }
+	        }
+	    }
+	    IndexSearchResult result=new IndexSearchResult(inodes, identifiers, total);
+	    if(key!=null && settled)
+	        cc.addIndexSearch(key, result);
+	    return result;
+	}
+
 	@Override
 	protected SearchHits indexSearch(String query, int limit, int offset, String sortBy) {
+	    return indexSearch(query, null, null, limit, offset, sortBy);
+	}
+
+	/**
+	 * Searches the documents matching the query and either permission query. Permission queries
+	 * go as filters so they don't change the scores and limit and offset count only the documents
+	 * they let through
+	 * @param query
+	 * @param ownerQuery matches the documents a user owns, null for none
+	 * @param rolesQuery matches the documents some roles can access, null for none
+	 * @param limit
+	 * @param offset
+	 * @param sortBy
+	 * @return the hits
+	 */
+	protected SearchHits indexSearch(String query, String ownerQuery, String rolesQuery, int limit, int offset, String sortBy) {
 	    String qq=findAndReplaceQueryDates(translateQuery(query, sortBy).getQuery());
 
 	    // we check the query to figure out wich indexes to hit
@@ -1318,7 +1420,7 @@ public class ESContentFactoryImpl extends ContentletFactory {
 	    SearchResponse resp = null;
         try {
         	
-        	SearchRequestBuilder srb = createRequest(client,qq);
+        	SearchRequestBuilder srb = createRequest(client,qq,createPermissionFilter(ownerQuery, rolesQuery));
         	
         	srb.setIndices(indexToHit);
         	srb.addFields("inode","identifier");
@@ -1432,11 +1534,7 @@ public class ESContentFactoryImpl extends ContentletFactory {
 
 	@Override
 	protected List<Contentlet> search(String query, int limit, int offset, String sortBy) throws DotDataException, DotStateException, DotSecurityException {
-	    SearchHits hits = indexSearch(query, limit, offset, sortBy);
-	    List<String> inodes=new ArrayList<String>();
-	    for(SearchHit h : hits)
-	        inodes.add(h.field("inode").getValue().toString());
-	    return findContentlets(inodes);
+	    return findContentlets(new ArrayList<String>(indexSearchInodes(query, limit, offset, sortBy).getInodes()));
 	}
 
 	@Override
@@ -1516,6 +1614,40 @@ public class ESContentFactoryImpl extends ContentletFactory {
 	        }
 	    }
 
+	   /**
+	    * The inodes and identifiers of the hits of a search, in order, and the total hits
+	    */
+	   public static class IndexSearchResult implements Serializable {
+
+	        private static final long serialVersionUID = 1L;
+	        private final List<String> inodes;
+	        private final List<String> identifiers;
+	        private final long totalHits;
+	        private final long created=System.currentTimeMillis();
+
+	        public IndexSearchResult(List<String> inodes, List<String> identifiers, long totalHits) {
+	            this.inodes=Collections.unmodifiableList(inodes);
+	            this.identifiers=Collections.unmodifiableList(identifiers);
+	            this.totalHits=totalHits;
+	        }
+
+	        public List<String> getInodes() {
+	            return inodes;
+	        }
+
+	        public List<String> getIdentifiers() {
+	            return identifiers;
+	        }
+
+	        public long getTotalHits() {
+	            return totalHits;
+	        }
+
+	        public long getCreated() {
+	            return created;
+	        }
+	    }
+
 //	    protected static LRUMap translatedQueryCache = new LRUMap(5000);
 	    public static TranslatedQuery translateQuery(String query, String sortBy) {
 
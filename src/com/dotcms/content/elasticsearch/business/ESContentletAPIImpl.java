@@ -25,10 +25,10 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
-import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 
 import com.dotcms.content.business.DotMappingException;
+import com.dotcms.content.elasticsearch.business.ESContentFactoryImpl.IndexSearchResult;
 import com.dotcms.enterprise.cmis.QueryResult;
 import com.dotcms.publisher.business.DotPublisherException;
 import com.dotcms.publisher.business.PublisherAPI;
@@ -51,6 +51,7 @@ import com.dotmarketing.business.query.ValidationException;
 import com.dotmarketing.cache.FieldsCache;
 import com.dotmarketing.cache.LiveCache;
 import com.dotmarketing.cache.StructureCache;
+import com.dotmarketing.cache.URIResolutionCache;
 import com.dotmarketing.cache.WorkingCache;
 import com.dotmarketing.common.business.journal.DistributedJournalAPI;
 import com.dotmarketing.common.db.DotConnect;
@@ -65,6 +66,7 @@ import com.dotmarketing.factories.InodeFactory;
 import com.dotmarketing.factories.MultiTreeFactory;
 import com.dotmarketing.factories.PublishFactory;
 import com.dotmarketing.factories.TreeFactory;
+import com.dotmarketing.image.filter.DerivativeImageIndex;
 import com.dotmarketing.menubuilders.RefreshMenus;
 import com.dotmarketing.portlets.categories.business.CategoryAPI;
 import com.dotmarketing.portlets.categories.model.Category;
@@ -261,7 +263,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
     public List<Contentlet> findContentletsByFolder(Folder parentFolder, User user, boolean respectFrontendRoles) throws DotDataException, DotSecurityException {
 
         try {
-            return perAPI.filterCollection(search("+conFolder:" + parentFolder.getInode(), -1, 0, null , user, respectFrontendRoles), PermissionAPI.PERMISSION_READ, respectFrontendRoles, user);
+            return search("+conFolder:" + parentFolder.getInode(), -1, 0, null , user, respectFrontendRoles);
         } catch (Exception e) {
             Logger.error(this.getClass(), e.getMessage(), e);
             throw new DotRuntimeException(e.getMessage(), e);
@@ -271,7 +273,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
     public List<Contentlet> findContentletsByHost(Host parentHost, User user, boolean respectFrontendRoles) throws DotDataException, DotSecurityException {
         try {
-            return perAPI.filterCollection(search("+conHost:" + parentHost.getIdentifier() + " +working:true", -1, 0, null , user, respectFrontendRoles), PermissionAPI.PERMISSION_READ, respectFrontendRoles, user);
+            return search("+conHost:" + parentHost.getIdentifier() + " +working:true", -1, 0, null , user, respectFrontendRoles);
         } catch (Exception e) {
             Logger.error(this.getClass(), e.getMessage(), e);
             throw new DotRuntimeException(e.getMessage(), e);
@@ -320,9 +322,24 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
             finishPublish(contentlet, false);
 
+            removeURIResolution(contentlet);
+
         }
     }
 
+    /**
+     * The URIResolutionCache keeps the live inode of file assets, it has to forget
+     * the uri every time the live or working state of one changes
+     */
+    private void removeURIResolution(Contentlet contentlet) throws DotDataException {
+        if(contentlet.getStructure().getStructureType()!=Structure.STRUCTURE_TYPE_FILEASSET
+                || !UtilMethods.isSet(contentlet.getIdentifier()))
+            return;
+        Identifier ident = APILocator.getIdentifierAPI().find(contentlet.getIdentifier());
+        if(ident!=null && UtilMethods.isSet(ident.getId()))
+            URIResolutionCache.removeURI(ident.getHostId(), ident.getURI());
+    }
+
     /* Not needed anymore
      * private void setLiveContentOff(Contentlet contentlet) throws DotDataException {
         List<Contentlet> liveCons = new ArrayList<Contentlet>();
@@ -453,7 +470,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
         ArrayList<String> inodes = new ArrayList<String>();
 
 
-        PaginatedArrayList <ContentletSearch> list =(PaginatedArrayList)searchIndex(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles);
+        PaginatedArrayList <ContentletSearch> list =(PaginatedArrayList)searchIndex(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles, requiredPermission);
         contents.setTotalResults(list.getTotalResults());
         for(ContentletSearch conwrap: list){
 
@@ -484,7 +501,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
     public List<Contentlet> searchByIdentifier(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles, int requiredPermission, boolean anyLanguage) throws DotDataException,DotSecurityException {
         PaginatedArrayList<Contentlet> contents = new PaginatedArrayList<Contentlet>();
-        PaginatedArrayList <ContentletSearch> list =(PaginatedArrayList)searchIndex(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles);
+        PaginatedArrayList <ContentletSearch> list =(PaginatedArrayList)searchIndex(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles, requiredPermission);
         contents.setTotalResults(list.getTotalResults());
 
         List<String> identifierList = new ArrayList<String>();
@@ -535,26 +552,60 @@ public class ESContentletAPIImpl implements ContentletAPI {
     }
 
     protected void addPermissionsToQuery(StringBuffer buffy, User user, List<Role> roles, boolean respectFrontendRoles) throws DotSecurityException, DotDataException  {
-        if(user != null)
-            buffy.append(" +((+owner:" + user.getUserId() + " +ownerCanRead:true) ");
-        else
-            buffy.append(" +(");
+        String ownerQuery = ownerPermissionQuery(user, PermissionAPI.PERMISSION_READ);
+        String rolesQuery = rolesPermissionQuery(user, roles, respectFrontendRoles, PermissionAPI.PERMISSION_READ);
+        buffy.append(" +(");
+        if(ownerQuery != null)
+            buffy.append("(" + ownerQuery + ") ");
+        if(rolesQuery != null)
+            buffy.append(rolesQuery);
+        buffy.append(")");
+    }
+
+    /**
+     * @return the clauses matching the content the user owns, when the owner has the permission,
+     * or null if there is no user. The owner flags only cover read, write and publish, any other
+     * permission checks read
+     */
+    private String ownerPermissionQuery(User user, int requiredPermission) {
+        if(user == null)
+            return null;
+        String ownerCan = requiredPermission == PermissionAPI.PERMISSION_PUBLISH ? "ownerCanPublish"
+                : requiredPermission == PermissionAPI.PERMISSION_EDIT ? "ownerCanWrite" : "ownerCanRead";
+        return "+owner:" + user.getUserId() + " +" + ownerCan + ":true";
+    }
+
+    /**
+     * @return the clauses matching the content any of the roles has the permission over, or null
+     * if there are none. It only depends on the roles, so every user with them shares it
+     */
+    private String rolesPermissionQuery(User user, List<Role> roles, boolean respectFrontendRoles, int requiredPermission) throws DotDataException {
+        // the permissions field holds a P<role>.<bit>P entry for every bit, see ESMappingAPIImpl.loadPermissions
+        StringBuilder buffy = new StringBuilder();
         if (0 < roles.size()) {
             buffy.append(" (");
             for (Role role : roles) {
-                buffy.append("permissions:P" + role.getId() + ".1P* ");
+                buffy.append("permissions:P" + role.getId() + "." + requiredPermission + "P* ");
             }
             buffy.append(") ");
         }
         if(respectFrontendRoles) {
-            buffy.append("(permissions:P" + APILocator.getRoleAPI().loadCMSAnonymousRole().getId() + ".1P*) ");
+            buffy.append("(permissions:P" + APILocator.getRoleAPI().loadCMSAnonymousRole().getId() + "." + requiredPermission + "P*) ");
             if(user != null)
-                buffy.append("(permissions:P" + APILocator.getRoleAPI().loadLoggedinSiteRole().getId() + ".1P*)");
+                buffy.append("(permissions:P" + APILocator.getRoleAPI().loadLoggedinSiteRole().getId() + "." + requiredPermission + "P*)");
         }
-        buffy.append(")");
+        return buffy.length() > 0 ? buffy.toString() : null;
     }
 
     public List <ContentletSearch> searchIndex(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles)throws DotSecurityException, DotDataException {
+        return searchIndex(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles, PermissionAPI.PERMISSION_READ);
+    }
+
+    /**
+     * Searches the content the user has the permission over. Permissions are checked by
+     * elasticsearch, so limit and offset apply to what the user can see
+     */
+    private List <ContentletSearch> searchIndex(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles, int requiredPermission)throws DotSecurityException, DotDataException {
         boolean isAdmin = false;
         List<Role> roles = new ArrayList<Role>();
         if(user == null && !respectFrontendRoles){
@@ -567,11 +618,14 @@ public class ESContentletAPIImpl implements ContentletAPI {
                 isAdmin = true;
             }
         }
-        StringBuffer buffy = new StringBuffer(luceneQuery);
 
-        // Permissions in the query
-        if (!isAdmin)
-            addPermissionsToQuery(buffy, user, roles, respectFrontendRoles);
+        // Permissions as filters next to the query
+        String ownerQuery = null;
+        String rolesQuery = null;
+        if (!isAdmin) {
+            ownerQuery = ownerPermissionQuery(user, requiredPermission);
+            rolesQuery = rolesPermissionQuery(user, roles, respectFrontendRoles, requiredPermission);
+        }
 
         int originalLimit = limit;
         if(UtilMethods.isSet(sortBy) && sortBy.trim().equalsIgnoreCase("random")){
@@ -580,23 +634,16 @@ public class ESContentletAPIImpl implements ContentletAPI {
         if(limit>MAX_LIMIT || limit <=0){
             limit = MAX_LIMIT;
         }
-        SearchHits lc = conFac.indexSearch(buffy.toString(), limit, offset, sortBy);
+        IndexSearchResult lc = conFac.indexSearchInodes(luceneQuery, ownerQuery, rolesQuery, limit, offset, sortBy);
         PaginatedArrayList <ContentletSearch> list=new PaginatedArrayList<ContentletSearch>();
         list.setTotalResults(lc.getTotalHits());
 
-        for (SearchHit sh : lc.hits()) {
-            try{
-                Map<String, Object> hm = new HashMap<String, Object>();
-                ContentletSearch conwrapper= new ContentletSearch();
-                conwrapper.setIdentifier(sh.field("identifier").getValue().toString());
-                conwrapper.setInode(sh.field("inode").getValue().toString());
-
-                list.add(conwrapper);
-            }
-            catch(Exception e){
-                Logger.error(this,e.getMessage(),e);
-            }
+        for (int i = 0; i < lc.getInodes().size(); i++) {
+            ContentletSearch conwrapper= new ContentletSearch();
+            conwrapper.setIdentifier(lc.getIdentifiers().get(i));
+            conwrapper.setInode(lc.getInodes().get(i));
 
+            list.add(conwrapper);
         }
         return list;
     }
@@ -1045,6 +1092,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
             contentletsVersion.addAll(findAllVersions(APILocator.getIdentifierAPI().find(con.getIdentifier()), user, respectFrontendRoles));
             APILocator.getVersionableAPI().deleteContentletVersionInfo(con.getIdentifier(), con.getLanguageId());
+            removeURIResolution(con);
 
             List<MultiTree> mts = MultiTreeFactory.getMultiTreeByChild(con.getIdentifier());
             for (MultiTree mt : mts) {
@@ -1339,6 +1387,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
             ContentletServices.invalidate(contentlet);
             ContentletMapServices.invalidate(contentlet);
+            removeURIResolution(contentlet);
             publishRelatedHtmlPages(contentlet);
         }else{
             throw new DotContentletStateException("Contentlet is locked: Unable to archive");
@@ -1510,6 +1559,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
         ContentletServices.unpublishContentletFile(contentlet);
         ContentletMapServices.unpublishContentletMapFile(contentlet);
+        removeURIResolution(contentlet);
         publishRelatedHtmlPages(contentlet);
 
     }
@@ -1556,6 +1606,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
         ContentletServices.invalidate(contentlet);
         ContentletMapServices.invalidate(contentlet);
+        removeURIResolution(contentlet);
         publishRelatedHtmlPages(contentlet);
     }
 
@@ -2268,6 +2319,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 				// if we have a new temp file or a deleted file
 				// do it to the new inode directory
 			    List<Field> structFields = FieldsCache.getFieldsByStructureInode(contentlet.getStructureInode());
+			    boolean binaryChanged = false;
 			    for (Field field : structFields) {
 			        if (field.getFieldContentlet().startsWith("binary")) {
 			            try {
@@ -2284,6 +2336,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 			                // if the user has removed this  file via the ui
 			                if (incomingFile == null  || incomingFile.getAbsolutePath().contains("-removed-")){
 			                    FileUtil.deltree(binaryFieldFolder);
+			                    binaryChanged = true;
 			                    contentlet.setBinary(velocityVarNm, null);
 			                    if(metadata!=null && metadata.exists())
 			                        metadata.delete();
@@ -2318,6 +2371,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 				                	//FileUtil.deltree(binaryFieldFolder);
 
 			                		FileUtil.move(incomingFile, newFile);
+			                		binaryChanged = true;
 
 			                		// delete old content metadata if exists
 			                		if(metadata!=null && metadata.exists())
@@ -2364,6 +2418,11 @@ public class ESContentletAPIImpl implements ContentletAPI {
 			        }
 			    }
 
+			    // images generated from the old binaries of this inode are no longer valid
+			    if (binaryChanged) {
+			        DerivativeImageIndex.removeInode(newInode);
+			    }
+
 
 			    // lets update identifier's syspubdate & sysexpiredate
 			    if ((contentlet != null) && InodeUtils.isSet(contentlet.getIdentifier())) {
@@ -2525,6 +2584,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
 				Host host = APILocator.getHostAPI().find(contIdent.getHostId(), user, respectFrontendRoles);
 				cache.remove(LiveCache.getPrimaryGroup() + host.getIdentifier() + ":" + contIdent.getParentPath()+contIdent.getAssetName(),
 						LiveCache.getPrimaryGroup() + "_" + host.getIdentifier());
+				URIResolutionCache.removeURI(host.getIdentifier(), contIdent.getParentPath()+contIdent.getAssetName());
 
 
 
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -37,13 +38,16 @@ import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.structure.factories.RelationshipFactory;
 import com.dotmarketing.portlets.structure.model.Relationship;
+import com.dotmarketing.portlets.structure.model.Structure;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
-import com.google.gson.Gson;
 
 public class ESContentletIndexAPI implements ContentletIndexAPI{
 	private static final ESIndexAPI iapi  = new ESIndexAPI();
     private static final ESMappingAPIImpl mappingAPI = new ESMappingAPIImpl();
+    private static final int DEPS_CHUNK = 500;
+    private static final boolean reindexDepsInBackground = Config.getBooleanProperty("REINDEX_DEPENDENCIES_IN_BACKGROUND", false);
 
     public static final SimpleDateFormat timestampFormatter=new SimpleDateFormat("yyyyMMddHHmmss");
 
@@ -288,13 +292,37 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
                     // check for related content to reindex
                     List<Contentlet> contentToIndex=new ArrayList<Contentlet>();
                     contentToIndex.add(content);
-                    if(deps)
-                        contentToIndex.addAll(loadDeps(content));
+                    if(deps) {
+                        List<String> depsIdentifiers=mappingAPI.dependenciesLeftToReindex(content);
+                        boolean journaled=false;
+                        if(bulk==null && reindexDepsInBackground) {
+                            // leave them to the reindex thread, only the contentlet is indexed now
+                            try {
+                                APILocator.getDistributedJournalAPI().addIdentifierReindexEntries(depsIdentifiers);
+                                journaled=true;
+                            }
+                            catch(Exception ex) {
+                                Logger.warn(ESContentletIndexAPI.class, "can't add the dependencies of "+content.getIdentifier()+" to the reindex journal, indexing them now", ex);
+                            }
+                        }
+                        if(!journaled) {
+                            try {
+                                contentToIndex.addAll(loadDeps(depsIdentifiers));
+                            }
+                            catch(Exception ex) {
+                                Logger.error(ESContentletIndexAPI.class, "can't load the dependencies of "+content.getIdentifier(), ex);
+                            }
+                        }
+                    }
                     
                     indexContentletList(req, contentToIndex,reindexOnly);
                                         
-                    if(bulk==null && req.numberOfActions()>0)
+                    if(bulk==null && req.numberOfActions()>0) {
                         req.execute().actionGet();
+                        for(Contentlet con : contentToIndex)
+                            if(con.isLive() && !reindexOnly)
+                                liveIndexChanged(con);
+                    }
 
                 } catch (Exception e) {
                     Logger.error(ESContentFactoryImpl.class, e.getMessage(), e);
@@ -312,16 +340,34 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 	    }	    
 	}
 
-	private void indexContentletList(BulkRequestBuilder req, List<Contentlet> contentToIndex, boolean reindexOnly) throws DotStateException, DotDataException, DotSecurityException, DotMappingException {
+	public void addContentToIndex(final List<Contentlet> contentToIndex, final boolean reindexOnly, final BulkRequestBuilder bulk) throws DotDataException {
+	    try {
+	        indexContentletList(bulk, contentToIndex, reindexOnly);
+	    } catch (DotDataException e) {
+	        throw e;
+	    } catch (Exception e) {
+	        throw new DotDataException(e.getMessage(), e);
+	    }
+	}
+
+	private void indexContentletList(BulkRequestBuilder req, List<Contentlet> contentToIndex, boolean reindexOnly) throws DotStateException, DotDataException, DotSecurityException, DotMappingException, IOException {
+
+		IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
+		List<Contentlet> toMap=new ArrayList<Contentlet>(contentToIndex.size());
+		for(Contentlet con : contentToIndex)
+		    if(con.isWorking() || con.isLive())
+		        toMap.add(con);
+		Map<String,Map<String,Object>> maps=mappingAPI.toMaps(toMap);
 
-		for(Contentlet con : contentToIndex) {
+		for(Contentlet con : toMap) {
             String id=con.getIdentifier()+"_"+con.getLanguageId();
-            IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
-            Gson gson=new Gson();
-            String mapping=null;
+            Map<String,Object> map=maps.get(con.getInode());
+            if(map==null)
+                // couldn't be mapped, logged by the mapping api
+                continue;
+            byte[] mapping=mappingAPI.toJsonBytes(map);
+
             if(con.isWorking()) {
-                mapping=gson.toJson(mappingAPI.toMap(con));
-                
                 if(!reindexOnly)
                     req.add(new IndexRequest(info.working, "content", id)
                                 .source(mapping));
@@ -331,9 +377,6 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
             }
 
             if(con.isLive()) {
-                if(mapping==null)
-                    mapping=gson.toJson(mappingAPI.toMap(con));
-                
                 if(!reindexOnly)
                     req.add(new IndexRequest(info.live, "content", id)
                             .source(mapping));
@@ -345,36 +388,46 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 		
 	}
 
+	private void liveIndexChanged(Contentlet con) {
+	    Structure st=con.getStructure();
+	    LiveIndexGeneration.changed(st!=null ? st.getVelocityVarName() : null);
+	}
+
+	/**
+	 * Loads the working and live versions, in every language, of the identifiers. The version
+	 * info is read with one query per {@value #DEPS_CHUNK} identifiers and the contentlets
+	 * are loaded together, from the contentlet cache when there.
+	 */
 	@SuppressWarnings("unchecked")
-	private List<Contentlet> loadDeps(Contentlet content) throws DotDataException, DotSecurityException {
+	private List<Contentlet> loadDeps(List<String> depsIdentifiers) throws DotDataException, DotSecurityException {
 	    List<Contentlet> contentToIndex=new ArrayList<Contentlet>();
-	    List<String> depsIdentifiers=mappingAPI.dependenciesLeftToReindex(content);
-        for(String ident : depsIdentifiers) {
-            // get working and live version for all languages based on the identifier
-//            String sql = "select distinct inode from contentlet join contentlet_version_info " +
-//                    " on (inode=live_inode or inode=working_inode) and contentlet.identifier=?";
-            String sql = "select working_inode,live_inode from contentlet_version_info where identifier=?";
-    	    
-            DotConnect dc = new DotConnect();
-            dc.setSQL(sql);
-            dc.addParam(ident);
-            List<Map<String,String>> ret = dc.loadResults();
-            List<String> inodes = new ArrayList<String>(); 
-            for(Map<String,String> m : ret) {
-            	String workingInode = m.get("working_inode");
-            	String liveInode = m.get("live_inode");
-            	inodes.add(workingInode);
-            	if(UtilMethods.isSet(liveInode) && !workingInode.equals(liveInode)){
-            		inodes.add(liveInode);
-            	}
-            }
-            
-            for(String inode : inodes) {
-                Contentlet con=APILocator.getContentletAPI().find(inode, APILocator.getUserAPI().getSystemUser(), false);
-                contentToIndex.add(con);
-            }
-        }
-        return contentToIndex;
+	    List<String> idents=new ArrayList<String>(new LinkedHashSet<String>(depsIdentifiers));
+	    for(int i=0;i<idents.size();i+=DEPS_CHUNK) {
+	        List<String> chunk=idents.subList(i, Math.min(i+DEPS_CHUNK, idents.size()));
+	        StringBuilder sql=new StringBuilder("select working_inode,live_inode from contentlet_version_info where identifier in (");
+	        for(int j=0;j<chunk.size();j++)
+	            sql.append(j==0 ? "?" : ",?");
+	        sql.append(')');
+
+	        DotConnect dc = new DotConnect();
+	        dc.setSQL(sql.toString());
+	        for(String ident : chunk)
+	            dc.addParam(ident);
+	        List<Map<String,String>> ret = dc.loadResults();
+	        List<String> inodes = new ArrayList<String>();
+	        for(Map<String,String> m : ret) {
+	            String workingInode = m.get("working_inode");
+	            String liveInode = m.get("live_inode");
+	            inodes.add(workingInode);
+	            if(UtilMethods.isSet(liveInode) && !workingInode.equals(liveInode)){
+	                inodes.add(liveInode);
+	            }
+	        }
+
+	        if(!inodes.isEmpty())
+	            contentToIndex.addAll(APILocator.getContentletAPI().findContentlets(inodes));
+	    }
+	    return contentToIndex;
 	}
 
 	public void removeContentFromIndex(final Contentlet content) throws DotHibernateException {
@@ -389,6 +442,7 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 	            	    Client client=new ESClient().getClient();
 	            	    BulkRequestBuilder bulk=client.prepareBulk();
 	            	    IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
+	            	    List<Contentlet> reindexed=new ArrayList<Contentlet>();
 
 	            	    bulk.add(client.prepareDelete(info.live, "content", id));
 	            	    if(info.reindex_live!=null)
@@ -411,6 +465,7 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 
 	        	                List<Contentlet> related = APILocator.getContentletAPI().search(q, -1, 0, null, APILocator.getUserAPI().getSystemUser(), false);
 	        	                indexContentletList(bulk, related, false);
+	        	                reindexed.addAll(related);
 	        	            }
 
 	        	            bulk.add(client.prepareDelete(info.working, "content", id));
@@ -419,6 +474,10 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 	        	        }
 
 	                    bulk.execute().actionGet();
+	                    liveIndexChanged(content);
+	                    for(Contentlet con : reindexed)
+	                        if(con.isLive())
+	                            liveIndexChanged(con);
 
 	        	    }
 	        	    catch(Exception ex) {
@@ -464,6 +523,7 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
               .setIndices(idxsArr)
               .setQuery(QueryBuilders.queryString("+structurename:"+structureName))
               .execute().actionGet();
+	    LiveIndexGeneration.changed(structureName);
 	}
 
     public void fullReindexAbort() {
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -51,7 +52,6 @@ import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.portlets.categories.model.Category;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
-import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.portlets.fileassets.business.FileAssetAPI;
 import com.dotmarketing.portlets.folders.model.Folder;
 import com.dotmarketing.portlets.structure.business.FieldAPI;
@@ -262,17 +262,53 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	 * Jun 7, 2013 - 3:47:26 PM
 	 */
 	public Map<String,Object> toMap(Contentlet con) throws DotMappingException {
+		return toMap(con, null);
+	}
+
+	/**
+	 * Same as {@link #toMap(Contentlet)} for a list of contentlets. The identifiers, version dates,
+	 * categories, tags and relationships of the whole list are loaded with a few queries, see
+	 * {@link ESMappingBatch}. Contentlets that can't be mapped are logged and left out.
+	 * @param cons
+	 * @return the maps by contentlet inode
+	 */
+	public Map<String,Map<String,Object>> toMaps(List<Contentlet> cons) {
+		Map<String,Map<String,Object>> maps = new HashMap<String,Map<String,Object>>();
+		if(cons.isEmpty())
+			return maps;
+
+		ESMappingBatch batch = null;
+		try {
+			batch = new ESMappingBatch(cons);
+		} catch (Exception e) {
+			Logger.warn(this.getClass(), "Unable to load the mapping data of " + cons.size() + " contentlets, mapping them one by one: " + e.getMessage());
+		}
+		for(Contentlet con : cons) {
+			try {
+				maps.put(con.getInode(), toMap(con, batch));
+			} catch (DotMappingException e) {
+				// already logged by toMap
+			}
+		}
+		return maps;
+	}
+
+	private Map<String,Object> toMap(Contentlet con, ESMappingBatch batch) throws DotMappingException {
 		try {
 		    
 			Map<String,String> m = new HashMap<String,String>();
 			Map<String,Object> mlowered=new HashMap<String,Object>();
-			loadCategories(con, m);
-			loadFields(con, m);
+			loadCategories(con, m, batch);
+			loadFields(con, m, batch);
 			loadPermissions(con, m);
-			loadRelationshipFields(con, m);
-
-			Identifier ident = APILocator.getIdentifierAPI().find(con);
-			ContentletVersionInfo cvi = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), con.getLanguageId());
+			loadRelationshipFields(con, m, batch);
+
+			Identifier ident = (batch != null) ? batch.getIdentifier(con.getIdentifier()) : null;
+			if(ident == null)
+			    ident = APILocator.getIdentifierAPI().find(con);
+			Date versionTs = (batch != null) ? batch.getVersionDate(ident.getId(), con.getLanguageId()) : null;
+			if(versionTs == null)
+			    versionTs = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), con.getLanguageId()).getVersionTs();
 			Structure st=StructureCache.getStructureByInode(con.getStructureInode());
 			
 			Folder conFolder=APILocator.getFolderAPI().findFolderByPath(ident.getParentPath(), ident.getHostId(), APILocator.getUserAPI().getSystemUser(), false);
@@ -299,14 +335,14 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
             if(UtilMethods.isSet(ident.getSysPublishDate()))
                 m.put("pubdate", datetimeFormat.format(ident.getSysPublishDate()));
             else
-                m.put("pubdate", datetimeFormat.format(cvi.getVersionTs()));
+                m.put("pubdate", datetimeFormat.format(versionTs));
             
             if(UtilMethods.isSet(ident.getSysExpireDate()))
                 m.put("expdate", datetimeFormat.format(ident.getSysExpireDate()));
             else
                 m.put("expdate", "29990101000000");
             
-            m.put("versionTs", datetimeFormat.format(cvi.getVersionTs()));
+            m.put("versionTs", datetimeFormat.format(versionTs));
             
             String urlMap = null;
             try{
@@ -352,8 +388,12 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 		return toJson(con);
 	}
 
-	@SuppressWarnings("unchecked")
 	protected void loadCategories(Contentlet con, Map<String,String> m) throws DotDataException, DotSecurityException {
+	    loadCategories(con, m, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadCategories(Contentlet con, Map<String,String> m, ESMappingBatch batch) throws DotDataException, DotSecurityException {
 	    // first we check if there is a category field in the structure. We don't hit db if not needed
 	    boolean thereiscategory=false;
 	    Structure st=StructureCache.getStructureByInode(con.getStructureInode());
@@ -365,16 +405,19 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	    String categoriesString="";
 
 	    if(thereiscategory) {
-    	    String categoriesSQL = "select category.category_velocity_var_name as cat_velocity_var "+
-                    " from  category join tree on (tree.parent = category.inode) join contentlet c on (c.inode = tree.child) " +
-                    " where c.inode = ?";
-    	    DotConnect db = new DotConnect();
-            db.setSQL(categoriesSQL);
-            db.addParam(con.getInode());
-            ArrayList<String> categories=new ArrayList<String>();
-    	    List<HashMap<String, String>> categoriesResults = db.loadResults();
-    	    for (HashMap<String, String> crow : categoriesResults)
-    	        categories.add(crow.get("cat_velocity_var"));
+	        List<String> categories=(batch != null) ? batch.getCategories(con.getInode()) : null;
+	        if(categories == null) {
+        	    String categoriesSQL = "select category.category_velocity_var_name as cat_velocity_var "+
+                        " from  category join tree on (tree.parent = category.inode) join contentlet c on (c.inode = tree.child) " +
+                        " where c.inode = ?";
+        	    DotConnect db = new DotConnect();
+                db.setSQL(categoriesSQL);
+                db.addParam(con.getInode());
+                categories=new ArrayList<String>();
+        	    List<HashMap<String, String>> categoriesResults = db.loadResults();
+        	    for (HashMap<String, String> crow : categoriesResults)
+        	        categories.add(crow.get("cat_velocity_var"));
+	        }
 
     	    categoriesString=UtilMethods.join(categories, " ").trim();
 
@@ -384,18 +427,25 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
     	            if(!categories.isEmpty()) {
         	            String catId=f.getValues();
 
-        	            // we get all subcategories (recursive)
-        	            Category category=APILocator.getCategoryAPI().find(catId, APILocator.getUserAPI().getSystemUser(), false);
-        	            List<Category> childrens=APILocator.getCategoryAPI().getAllChildren(
-        	                    category, APILocator.getUserAPI().getSystemUser(), false);
-
         	            // we look for categories that match childrens for the
         	            // categoryId of the field
         	            ArrayList<String> fieldCategories=new ArrayList<String>();
-        	            for(String catvelvarname : categories)
-        	                for(Category chCat : childrens)
-        	                    if(chCat.getCategoryVelocityVarName().equals(catvelvarname))
+        	            if(batch != null) {
+        	                Set<String> childrens=batch.getCategoryChildren(catId);
+        	                for(String catvelvarname : categories)
+        	                    if(childrens.contains(catvelvarname))
         	                        fieldCategories.add(catvelvarname);
+        	            }
+        	            else {
+            	            // we get all subcategories (recursive)
+            	            Category category=APILocator.getCategoryAPI().find(catId, APILocator.getUserAPI().getSystemUser(), false);
+            	            List<Category> childrens=APILocator.getCategoryAPI().getAllChildren(
+            	                    category, APILocator.getUserAPI().getSystemUser(), false);
+            	            for(String catvelvarname : categories)
+            	                for(Category chCat : childrens)
+            	                    if(chCat.getCategoryVelocityVarName().equals(catvelvarname))
+            	                        fieldCategories.add(catvelvarname);
+        	            }
 
         	            // after matching them we create the JSON field
         	            if(!fieldCategories.isEmpty())
@@ -417,12 +467,13 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
         boolean ownerCanRead = false;
         boolean ownerCanWrite = false;
         boolean ownerCanPub = false;
+        String ownerRoleId = APILocator.getRoleAPI().loadCMSOwnerRole().getId();
         for (Permission permission : permissions) {
             String str = "P" + permission.getRoleId() + "." + permission.getPermission() + "P ";
             if (permissionsSt.toString().indexOf(str) < 0) {
                 permissionsSt.append(str);
             }
-            if(APILocator.getRoleAPI().loadCMSOwnerRole().getId().equals(String.valueOf(permission.getRoleId()))){
+            if(ownerRoleId.equals(String.valueOf(permission.getRoleId()))){
                 if(permission.getPermission() == PERMISSION_READ){
                     ownerCanRead = true;
                 }else if(permission.getPermission() == PERMISSION_WRITE){
@@ -452,6 +503,10 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	public static final DecimalFormat numFormatter = new DecimalFormat("0000000000000000000.000000000000000000");
 	
 	protected void loadFields(Contentlet con, Map<String, String> m) throws DotDataException {
+	    loadFields(con, m, null);
+	}
+
+	private void loadFields(Contentlet con, Map<String, String> m, ESMappingBatch batch) throws DotDataException {
 	    FieldAPI fAPI=APILocator.getFieldAPI();
 	    List<Field> fields = new ArrayList<Field>(FieldsCache.getFieldsByStructureInode(con.getStructureInode()));
 	    
@@ -547,8 +602,15 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
                 	}
                 } else if(f.getFieldType().equals(Field.FieldType.TAG.toString())) {
                     StringBuilder tagg=new StringBuilder();
-                    for(Tag t : APILocator.getTagAPI().getTagsByInode(con.getInode()))
-                        tagg.append(t.getTagName()).append(' ');
+                    List<String> tagNames=(batch != null) ? batch.getTags(con.getInode()) : null;
+                    if(tagNames != null) {
+                        for(String t : tagNames)
+                            tagg.append(t).append(' ');
+                    }
+                    else {
+                        for(Tag t : APILocator.getTagAPI().getTagsByInode(con.getInode()))
+                            tagg.append(t.getTagName()).append(' ');
+                    }
                     m.put(st.getVelocityVarName() + "." + f.getVelocityVarName(), tagg.toString());
                 } else {
                     if (f.getFieldContentlet().startsWith("bool")) {
@@ -569,6 +631,13 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	public String toJsonString(Map<String, Object> map) throws JsonGenerationException, JsonMappingException, IOException{
 		return mapper.writeValueAsString(map);
 	}
+
+	/**
+	 * Writes the map straight to UTF-8 JSON bytes with the shared mapper
+	 */
+	public byte[] toJsonBytes(Map<String, Object> map) throws JsonGenerationException, JsonMappingException, IOException{
+		return mapper.writeValueAsBytes(map);
+	}
 	public List<String> dependenciesLeftToReindex(Contentlet con) throws DotStateException, DotDataException, DotSecurityException {
 	    List<String> dependenciesToReindex = new ArrayList<String>();
 
@@ -631,20 +700,31 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	}
 
 	protected void loadRelationshipFields(Contentlet con, Map<String,String> m) throws DotStateException, DotDataException {
-	    List<Relationship> relationships = RelationshipFactory.getAllRelationshipsByStructure(con.getStructure());
+	    loadRelationshipFields(con, m, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadRelationshipFields(Contentlet con, Map<String,String> m, ESMappingBatch batch) throws DotStateException, DotDataException {
+	    List<Relationship> relationships = (batch != null) ? batch.getRelationships(con.getStructure())
+	            : RelationshipFactory.getAllRelationshipsByStructure(con.getStructure());
 
 	    if(relationships==null || relationships.isEmpty())
 	        // if no relationships then nothing to do here
 	        return;
 
-	    Identifier identifier = APILocator.getIdentifierAPI().find(con);
-
-	    String relatedSQL = "select tree.* from tree where parent = ? or child = ? order by tree_order";
-        DotConnect db = new DotConnect();
-        db.setSQL(relatedSQL);
-        db.addParam(identifier.getInode());
-        db.addParam(identifier.getInode());
-        ArrayList<HashMap<String, String>> relatedContentlets = db.loadResults();
+	    Identifier identifier = (batch != null) ? batch.getIdentifier(con.getIdentifier()) : null;
+	    if(identifier == null)
+	        identifier = APILocator.getIdentifierAPI().find(con);
+
+	    List<HashMap<String, String>> relatedContentlets = (batch != null) ? batch.getTrees(identifier.getInode()) : null;
+	    if(relatedContentlets == null) {
+    	    String relatedSQL = "select tree.* from tree where parent = ? or child = ? order by tree_order";
+            DotConnect db = new DotConnect();
+            db.setSQL(relatedSQL);
+            db.addParam(identifier.getInode());
+            db.addParam(identifier.getInode());
+            relatedContentlets = db.loadResults();
+	    }
 
         for(Relationship rel : relationships) {
 
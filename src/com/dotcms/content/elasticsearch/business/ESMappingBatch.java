@@ -0,0 +1,249 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.dotmarketing.beans.Identifier;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.cache.FieldsCache;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.portlets.categories.model.Category;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.structure.factories.RelationshipFactory;
+import com.dotmarketing.portlets.structure.model.Field;
+import com.dotmarketing.portlets.structure.model.Field.FieldType;
+import com.dotmarketing.portlets.structure.model.Relationship;
+import com.dotmarketing.portlets.structure.model.Structure;
+
+/**
+ * What {@link ESMappingAPIImpl} needs to map a list of contentlets, loaded with one query per
+ * kind of data for the whole list (in chunks of {@value #CHUNK} keys): identifiers, version
+ * dates, categories, tags and relationships. Category children and relationships are only
+ * looked up once per category field and structure.
+ *
+ * Anything not found here is left for the mapping to load the usual way.
+ */
+class ESMappingBatch {
+
+	private static final int CHUNK = 500;
+
+	private final Map<String, Identifier> identifiers = new HashMap<String, Identifier>();
+	private final Map<String, Date> versionDates = new HashMap<String, Date>();
+	private final Map<String, List<String>> categories = new HashMap<String, List<String>>();
+	private final Map<String, List<String>> tags = new HashMap<String, List<String>>();
+	private final Map<String, List<HashMap<String, String>>> trees = new HashMap<String, List<HashMap<String, String>>>();
+	private final Map<String, Set<String>> categoryChildren = new HashMap<String, Set<String>>();
+	private final Map<String, List<Relationship>> relationships = new HashMap<String, List<Relationship>>();
+
+	private final Set<String> categoryInodes = new HashSet<String>();
+	private final Set<String> tagInodes = new HashSet<String>();
+	private final Set<String> treeIdentifiers = new HashSet<String>();
+
+	ESMappingBatch(List<Contentlet> cons) throws DotDataException {
+		Set<String> ids = new LinkedHashSet<String>();
+		Set<String> catInodes = new LinkedHashSet<String>();
+		Set<String> tagged = new LinkedHashSet<String>();
+		Set<String> related = new LinkedHashSet<String>();
+		Map<String, boolean[]> structures = new HashMap<String, boolean[]>();
+		for (Contentlet con : cons) {
+			ids.add(con.getIdentifier());
+			boolean[] kinds = structures.get(con.getStructureInode());
+			if (kinds == null) {
+				kinds = new boolean[3];
+				for (Field f : FieldsCache.getFieldsByStructureInode(con.getStructureInode())) {
+					kinds[0] |= f.getFieldType().equals(FieldType.CATEGORY.toString());
+					kinds[1] |= f.getFieldType().equals(FieldType.TAG.toString()) && f.isIndexed();
+				}
+				List<Relationship> rels = getRelationships(con.getStructure());
+				kinds[2] = rels != null && !rels.isEmpty();
+				structures.put(con.getStructureInode(), kinds);
+			}
+			if (kinds[0])
+				catInodes.add(con.getInode());
+			if (kinds[1])
+				tagged.add(con.getInode());
+			if (kinds[2])
+				related.add(con.getIdentifier());
+		}
+
+		List<String> idList = new ArrayList<String>(ids);
+		for (int i = 0; i < idList.size(); i += CHUNK) {
+			List<String> chunk = idList.subList(i, Math.min(i + CHUNK, idList.size()));
+			loadIdentifiers(chunk);
+			loadVersionDates(chunk);
+		}
+		List<String> catList = new ArrayList<String>(catInodes);
+		for (int i = 0; i < catList.size(); i += CHUNK) {
+			loadCategories(catList.subList(i, Math.min(i + CHUNK, catList.size())));
+		}
+		categoryInodes.addAll(catInodes);
+		List<String> tagList = new ArrayList<String>(tagged);
+		for (int i = 0; i < tagList.size(); i += CHUNK) {
+			loadTags(tagList.subList(i, Math.min(i + CHUNK, tagList.size())));
+		}
+		tagInodes.addAll(tagged);
+		List<String> relList = new ArrayList<String>(related);
+		for (int i = 0; i < relList.size(); i += CHUNK) {
+			loadTrees(relList.subList(i, Math.min(i + CHUNK, relList.size())));
+		}
+		treeIdentifiers.addAll(related);
+	}
+
+	/**
+	 * @return the identifier or null if it wasn't loaded
+	 */
+	Identifier getIdentifier(String id) {
+		return identifiers.get(id);
+	}
+
+	/**
+	 * @return the version date of the identifier in the language or null if it wasn't loaded
+	 */
+	Date getVersionDate(String id, long languageId) {
+		return versionDates.get(id + "_" + languageId);
+	}
+
+	/**
+	 * @return the category velocity var names of the contentlet or null if they weren't loaded
+	 */
+	List<String> getCategories(String inode) {
+		if (!categoryInodes.contains(inode))
+			return null;
+		List<String> cats = categories.get(inode);
+		return cats != null ? cats : new ArrayList<String>();
+	}
+
+	/**
+	 * @return the tag names of the contentlet or null if they weren't loaded
+	 */
+	List<String> getTags(String inode) {
+		if (!tagInodes.contains(inode))
+			return null;
+		List<String> names = tags.get(inode);
+		return names != null ? names : new ArrayList<String>();
+	}
+
+	/**
+	 * @return the tree rows where the identifier is the parent or the child, in tree order, or
+	 * null if they weren't loaded
+	 */
+	List<HashMap<String, String>> getTrees(String id) {
+		if (!treeIdentifiers.contains(id))
+			return null;
+		List<HashMap<String, String>> rows = trees.get(id);
+		return rows != null ? rows : new ArrayList<HashMap<String, String>>();
+	}
+
+	/**
+	 * @return the velocity var names of every subcategory of the category
+	 */
+	Set<String> getCategoryChildren(String categoryId) throws DotDataException, DotSecurityException {
+		Set<String> children = categoryChildren.get(categoryId);
+		if (children == null) {
+			children = new HashSet<String>();
+			Category category = APILocator.getCategoryAPI().find(categoryId, APILocator.getUserAPI().getSystemUser(), false);
+			for (Category child : APILocator.getCategoryAPI().getAllChildren(category, APILocator.getUserAPI().getSystemUser(), false))
+				children.add(child.getCategoryVelocityVarName());
+			categoryChildren.put(categoryId, children);
+		}
+		return children;
+	}
+
+	List<Relationship> getRelationships(Structure st) {
+		List<Relationship> rels = relationships.get(st.getInode());
+		if (rels == null) {
+			rels = RelationshipFactory.getAllRelationshipsByStructure(st);
+			relationships.put(st.getInode(), rels);
+		}
+		return rels;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadIdentifiers(List<String> ids) throws DotDataException {
+		HibernateUtil hu = new HibernateUtil(Identifier.class);
+		hu.setQuery("from identifier in class com.dotmarketing.beans.Identifier where id in (" + placeholders(ids.size()) + ")");
+		for (String id : ids)
+			hu.setParam(id);
+		for (Identifier ident : (List<Identifier>) hu.list())
+			identifiers.put(ident.getId(), ident);
+	}
+
+	private void loadVersionDates(List<String> ids) throws DotDataException {
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select identifier, lang, version_ts from contentlet_version_info where identifier in (" + placeholders(ids.size()) + ")");
+		for (String id : ids)
+			dc.addParam(id);
+		for (Map<String, Object> row : dc.loadObjectResults()) {
+			// drivers that don't give a java.util.Date are left to the version info lookup
+			if (row.get("version_ts") instanceof Date && row.get("lang") instanceof Number)
+				versionDates.put(row.get("identifier") + "_" + ((Number) row.get("lang")).longValue(), (Date) row.get("version_ts"));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadCategories(List<String> inodes) throws DotDataException {
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select tree.child as con_inode, category.category_velocity_var_name as cat_velocity_var "
+				+ " from category join tree on (tree.parent = category.inode) where tree.child in (" + placeholders(inodes.size()) + ")");
+		for (String inode : inodes)
+			dc.addParam(inode);
+		for (HashMap<String, String> row : (List<HashMap<String, String>>) dc.loadResults())
+			add(categories, row.get("con_inode"), row.get("cat_velocity_var"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadTags(List<String> inodes) throws DotDataException {
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select tag_inode.inode as con_inode, tag.tagname as tag_name from tag_inode join tag on (tag.tag_id = tag_inode.tag_id) "
+				+ " where tag_inode.inode in (" + placeholders(inodes.size()) + ")");
+		for (String inode : inodes)
+			dc.addParam(inode);
+		for (HashMap<String, String> row : (List<HashMap<String, String>>) dc.loadResults())
+			add(tags, row.get("con_inode"), row.get("tag_name"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadTrees(List<String> ids) throws DotDataException {
+		String in = placeholders(ids.size());
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select tree.* from tree where parent in (" + in + ") or child in (" + in + ") order by tree_order");
+		for (String id : ids)
+			dc.addParam(id);
+		for (String id : ids)
+			dc.addParam(id);
+		Set<String> wanted = new HashSet<String>(ids);
+		for (HashMap<String, String> row : (List<HashMap<String, String>>) dc.loadResults()) {
+			String parent = row.get("parent");
+			String child = row.get("child");
+			if (wanted.contains(parent))
+				add(trees, parent, row);
+			if (wanted.contains(child) && !child.equals(parent))
+				add(trees, child, row);
+		}
+	}
+
+	private static <T> void add(Map<String, List<T>> map, String key, T value) {
+		List<T> values = map.get(key);
+		if (values == null) {
+			values = new ArrayList<T>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static String placeholders(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++)
+			sb.append(i == 0 ? "?" : ",?");
+		return sb.toString();
+	}
+}
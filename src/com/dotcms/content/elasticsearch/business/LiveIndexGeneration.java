@@ -0,0 +1,119 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.dotmarketing.util.Config;
+
+/**
+ * Counts the writes this server makes to the live index, so cached search results can be
+ * keyed by the generation they were computed on and stop being found once content changes.
+ * A write is counted once elasticsearch has answered it. Writes from other servers of a
+ * cluster are not counted, which is why the search cache is off there by default.
+ *
+ * Queries restricted to a single structure (one top level +structureName:x clause) use the
+ * generation of that structure, any other query uses the generation of the whole index.
+ * Results are not worth caching until INDEX_SEARCH_CACHE_REFRESH_WAIT milliseconds (default
+ * 2000) after the last write, so elasticsearch had the time to refresh the index.
+ */
+public class LiveIndexGeneration {
+
+	private static final Pattern STRUCTURE_CLAUSE = Pattern.compile("structurename:", Pattern.CASE_INSENSITIVE);
+	private static final long refreshWait = Config.getIntProperty("INDEX_SEARCH_CACHE_REFRESH_WAIT", 2000);
+
+	// every write
+	private static final AtomicLong index = new AtomicLong();
+	// writes not known to touch a single structure
+	private static final AtomicLong allStructures = new AtomicLong();
+	private static final ConcurrentHashMap<String, AtomicLong> structures = new ConcurrentHashMap<String, AtomicLong>();
+	private static volatile long lastWrite;
+
+	/**
+	 * Records a write of content of the structure to the live index
+	 * @param structureName the structure velocity var name, null if it isn't known
+	 */
+	public static void changed(String structureName) {
+		if (structureName == null) {
+			allStructures.incrementAndGet();
+		} else {
+			structureCounter(structureName).incrementAndGet();
+		}
+		index.incrementAndGet();
+		lastWrite = System.currentTimeMillis();
+	}
+
+	/**
+	 * Records a write to the live index that may touch any structure
+	 */
+	public static void changed() {
+		changed(null);
+	}
+
+	/**
+	 * @param query the lucene query
+	 * @return the generation results of the query were computed on
+	 */
+	public static String getGeneration(String query) {
+		String structureName = getStructureName(query);
+		if (structureName == null) {
+			return "i" + index.get();
+		}
+		return "s" + allStructures.get() + "." + structureCounter(structureName).get();
+	}
+
+	/**
+	 * @return false when the last write could still be missing from search results
+	 */
+	public static boolean isSettled() {
+		return System.currentTimeMillis() - lastWrite > refreshWait;
+	}
+
+	/**
+	 * @return the structure the query is restricted to or null if it can match more than one
+	 */
+	static String getStructureName(String query) {
+		Matcher m = STRUCTURE_CLAUSE.matcher(query);
+		if (!m.find()) {
+			return null;
+		}
+		int start = m.start();
+		if (m.find() || start == 0 || query.charAt(start - 1) != '+') {
+			return null;
+		}
+		int depth = 0;
+		for (int i = 0; i < start; i++) {
+			char c = query.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			}
+		}
+		if (depth != 0) {
+			return null;
+		}
+		int end = start + "structurename:".length();
+		int i = end;
+		while (i < query.length() && !Character.isWhitespace(query.charAt(i)) && query.charAt(i) != ')') {
+			i++;
+		}
+		String name = query.substring(end, i);
+		// wildcards can match more than one
+		return name.length() > 0 && name.indexOf('*') < 0 && name.indexOf('?') < 0 ? name.toLowerCase() : null;
+	}
+
+	private static AtomicLong structureCounter(String structureName) {
+		String key = structureName.toLowerCase();
+		AtomicLong counter = structures.get(key);
+		if (counter == null) {
+			AtomicLong created = new AtomicLong();
+			counter = structures.putIfAbsent(key, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+}
@@ -9,6 +9,8 @@ import com.dotcms.content.elasticsearch.business.ESContentletIndexAPI;
 import com.dotcms.content.elasticsearch.business.IndiciesAPI.IndiciesInfo;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.common.reindex.ReindexPipeline;
+import com.dotmarketing.common.reindex.ReindexThread;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
@@ -70,6 +72,13 @@ public class ESReindexationProcessStatus implements Serializable {
 	            theMap.put("currentIndexPath", currentIndexPath());
 	            theMap.put("newIndexPath", getNewIndexPath());
             }
+            ReindexPipeline pipeline=ReindexThread.getInstance().getPipeline();
+            theMap.put("reindexRecordsPerSecond", pipeline.getThroughput());
+            theMap.put("reindexBatchesInFlight", pipeline.getBatchesInFlight());
+            theMap.put("reindexRecordsIndexed", pipeline.getRecordsIndexed());
+            theMap.put("reindexBulkFailures", pipeline.getBulkFailures());
+            theMap.put("reindexBulkRejections", pipeline.getBulkRejections());
+            theMap.put("reindexRecordsLeft", APILocator.getDistributedJournalAPI().recordsLeftToIndexForServer());
             return theMap;
         }
         finally {
@@ -2,10 +2,12 @@ package com.dotcms.journal.business;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -130,6 +132,60 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
         }
     }
 
+    @Override
+    protected void addCacheEntries(Collection<String> entries) throws DotDataException {
+        if (!indexationEnabled || entries == null || entries.isEmpty()) {
+            return;
+        }
+        // uses its own connection as batches are shipped from the invalidation bus thread
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = DbConnectionFactory.getDataSource().getConnection();
+            con.setAutoCommit(false);
+            ps = con.prepareStatement("INSERT INTO dist_process(object_to_index, time_entered, serverid, journal_type)VALUES (?, ?, ?, ?)");
+            java.sql.Timestamp timestamp = new java.sql.Timestamp(new java.util.Date().getTime());
+            for (String serversId : serversIds) {
+                if (!serverId.equals(serversId)) {
+                    for (String entry : entries) {
+                        ps.setString(1, entry);
+                        ps.setTimestamp(2, timestamp);
+                        ps.setString(3, serversId);
+                        ps.setInt(4, JOURNAL_TYPE_CACHE);
+                        ps.addBatch();
+                    }
+                }
+            }
+            ps.executeBatch();
+            con.commit();
+        } catch (SQLException e1) {
+            try {
+                if (con != null) {
+                    con.rollback();
+                }
+            } catch (Exception e) {
+                Logger.debug(this, e.getMessage(), e);
+            }
+            throw new DotDataException(e1.getMessage(), e1);
+        } finally {
+            try {
+                if (ps != null) {
+                    ps.close();
+                }
+            } catch (Exception e) {
+                Logger.error(this, e.getMessage(), e);
+            } finally {
+                try {
+                    if (con != null) {
+                        con.close();
+                    }
+                } catch (Exception e) {
+                    Logger.error(this, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
     @Override
     protected void addStructureReindexEntries(T structureInode)
             throws DotDataException {
@@ -148,6 +204,58 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
         }
     }
 
+    @Override
+    protected void addIdentifierReindexEntries(Collection<T> identifiers) throws DotDataException {
+        if (identifiers == null || identifiers.isEmpty()) {
+            return;
+        }
+        // uses its own connection so the entries are there for the reindex thread
+        // even when called from a commit listener
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = DbConnectionFactory.getDataSource().getConnection();
+            con.setAutoCommit(false);
+            ps = con.prepareStatement("insert into dist_reindex_journal(inode_to_index,ident_to_index,priority,dist_action,time_entered) values (?, ?, ?, ?, ?)");
+            java.sql.Timestamp timestamp = new java.sql.Timestamp(new java.util.Date().getTime());
+            for (T identifier : identifiers) {
+                ps.setString(1, identifier.toString());
+                ps.setString(2, identifier.toString());
+                ps.setInt(3, REINDEX_JOURNAL_PRIORITY_CONTENT_REINDEX);
+                ps.setInt(4, REINDEX_ACTION_REINDEX_OBJECT);
+                ps.setTimestamp(5, timestamp);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            con.commit();
+        } catch (SQLException e1) {
+            try {
+                if (con != null) {
+                    con.rollback();
+                }
+            } catch (Exception e) {
+                Logger.debug(this, e.getMessage(), e);
+            }
+            throw new DotDataException(e1.getMessage(), e1);
+        } finally {
+            try {
+                if (ps != null) {
+                    ps.close();
+                }
+            } catch (Exception e) {
+                Logger.error(this, e.getMessage(), e);
+            } finally {
+                try {
+                    if (con != null) {
+                        con.close();
+                    }
+                } catch (Exception e) {
+                    Logger.error(this, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
     @Override
     protected boolean areRecordsLeftToIndex() throws DotDataException {
         DotConnect dc = new DotConnect();
@@ -248,6 +356,35 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
 		}
     }
 
+    @Override
+    protected void releaseReindexEntryForServer(List<IndexJournal<T>> records) throws DotDataException {
+        if(records.isEmpty()) return;
+        StringBuilder sql=new StringBuilder().append("UPDATE dist_reindex_journal SET serverid=NULL where id in (");
+        boolean first=true;
+        for(IndexJournal<T> idx : records) {
+            if(!first) sql.append(','); else first=false;
+            sql.append(idx.getId());
+        }
+        sql.append(')');
+
+        DotConnect dc = new DotConnect();
+        dc.setSQL(sql.toString());
+        Connection con = null;
+        try {
+            con = DbConnectionFactory.getDataSource().getConnection();
+            con.setAutoCommit(true);
+            dc.loadResult(con);
+        } catch (SQLException e) {
+            throw new DotDataException(e.getMessage(), e);
+        } finally {
+            try {
+                if(con != null) con.close();
+            } catch (SQLException e) {
+                Logger.error(ESDistributedJournalFactoryImpl.class,e.getMessage(),e);
+            }
+        }
+    }
+
     @Override
     protected void distReindexJournalCleanup(int time, boolean add, boolean includeInodeCheck, DateType type) throws DotDataException {
         StringBuilder reindexJournalCleanupSql = new StringBuilder();
@@ -339,6 +476,12 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
     @Override
     protected List<IndexJournal<T>> findContentReindexEntriesToReindex()
             throws DotDataException {
+        return findContentReindexEntriesToReindex(50);
+    }
+
+    @Override
+    protected List<IndexJournal<T>> findContentReindexEntriesToReindex(int recordsToFetch)
+            throws DotDataException {
         DotConnect dc = new DotConnect();
         List<IndexJournal<T>> x = new ArrayList<IndexJournal<T>>();
         List<Map<String, Object>> results;
@@ -350,7 +493,7 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
                 CallableStatement call = con.prepareCall("{ ? = call load_records_to_index(?,?) }");
                 call.registerOutParameter(1, OracleTypes.CURSOR);
                 call.setString(2, serverId);
-                call.setInt(3, 50);
+                call.setInt(3, recordsToFetch);
                 call.execute();
                 ResultSet r = (ResultSet)call.getObject(1);
                 results = new ArrayList<Map<String,Object>>();
@@ -370,13 +513,13 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
                 dc.setSQL("SET TRANSACTION ISOLATION LEVEL READ COMMITTED;");
                 dc.loadResult();
 
-                dc.setSQL("load_records_to_index @server_id='"+serverId+"', @records_to_fetch=50");
+                dc.setSQL("load_records_to_index @server_id='"+serverId+"', @records_to_fetch="+recordsToFetch);
                 dc.setForceQuery(true);
                 results = dc.loadObjectResults(con);
             } else {
                 dc.setSQL(REINDEXENTRIESSELECTSQL);
                 dc.addParam(serverId);
-                dc.addParam(50);
+                dc.addParam(recordsToFetch);
                 results = dc.loadObjectResults(con);
             }
 
@@ -14,6 +14,34 @@ public abstract class BlockDirectiveCache implements Cachable {
 	abstract public String get(String key, int ttl);
 	abstract public BlockDirectiveCacheObject get(String key);
 
+	/**
+	 * Returns the cached page for the key, or null when the calling request has to render it.
+	 * Once a page expires only one request at a time gets null to refresh it, the others keep
+	 * getting the expired page until it is PAGE_CACHE_MAX_STALE seconds past its ttl.
+	 * A request that got null must call {@link #add(String, String, int)} or
+	 * {@link #endRefresh(String)} once done.
+	 * @param key page cache key
+	 * @param pageId page identifier the hit/miss/stale stats are kept for
+	 * @param ttl
+	 * @return
+	 */
+	abstract public BlockDirectiveCacheObject getPage(String key, String pageId, int ttl);
+
+	/**
+	 * Lets other requests refresh the page after a render that did not add it to the cache.
+	 * Does nothing when the calling request does not hold the refresh of the page
+	 * @param key
+	 */
+	abstract public void endRefresh(String key);
+
+	/**
+	 * How long past their ttl entries are kept to be served stale
+	 * @return
+	 */
+	abstract public long getMaxStaleMillis();
+
+	abstract public PageCacheStats getPageStats();
+
 	abstract  public void clearCache();
 	abstract  public void remove(String key) ;
 
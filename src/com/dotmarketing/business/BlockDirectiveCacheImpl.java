@@ -1,9 +1,15 @@
 package com.dotmarketing.business;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
 import com.dotcms.enterprise.LicenseUtil;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotCacheAdministrator;
 import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 
 public class BlockDirectiveCacheImpl extends BlockDirectiveCache {
@@ -14,12 +20,23 @@ public class BlockDirectiveCacheImpl extends BlockDirectiveCache {
 			return;
 		}
 		BlockDirectiveCacheObject cto = new BlockDirectiveCacheObject(value, ttl);
+		// weak as the gzipped and plain variants share it, changes on every refresh
+		cto.setETag("W/\"" + Integer.toHexString(key.hashCode()) + "-" + Long.toHexString(cto.getCreated()) + "\"");
 		cache.put(key, cto, group);
+		endRefresh(key);
 
 	}
 	private boolean canCache;
 	private DotCacheAdministrator cache;
 
+	// how long a request refreshing an expired page keeps the others on the stale copy
+	private final long graceMillis = Config.getIntProperty("PAGE_CACHE_GRACE", 30) * 1000L;
+	// expired pages are never served past this
+	private final long maxStaleMillis = Config.getIntProperty("PAGE_CACHE_MAX_STALE", 300) * 1000L;
+	// pages being refreshed and by whom
+	private final ConcurrentHashMap<String, RefreshClaim> refreshing = new ConcurrentHashMap<String, RefreshClaim>();
+	private final PageCacheStats stats = new PageCacheStats(Config.getIntProperty("PAGE_CACHE_STATS_MAX_PAGES", 1000));
+
 	private String group = "BlockDirectiveCache";
 	private String secondaryGroup = "BlockDirectiveHTMLPageCache";
 
@@ -31,7 +48,11 @@ public class BlockDirectiveCacheImpl extends BlockDirectiveCache {
 		//delete everything on startup
 		//clearCache();
 		canCache = LicenseUtil.getLevel() > 99;
-		
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName("org.dotcms:type=PageCache"));
+		} catch (Exception e) {
+			Logger.debug(this, "Unable to register PageCache MBean: " + e.getMessage(), e);
+		}
 		
 	}
 
@@ -44,6 +65,7 @@ public class BlockDirectiveCacheImpl extends BlockDirectiveCache {
 		// clear the cache
 		cache.flushGroup(group);
 		cache.flushGroup(secondaryGroup);
+		refreshing.clear();
 	}
 
 	/*
@@ -87,6 +109,76 @@ public class BlockDirectiveCacheImpl extends BlockDirectiveCache {
 		}
 		return null;
 	}
+	@Override
+	public BlockDirectiveCacheObject getPage(String key, String pageId, int ttl) {
+		if(!canCache)return null;
+		BlockDirectiveCacheObject cto = get(key);
+		if (cto == null || cto.getBytes() == null) {
+			stats.miss(pageId);
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		long expires = cto.getCreated() + (ttl * 1000L);
+		if (now < expires) {
+			stats.hit(pageId);
+			return cto;
+		}
+		if (now - expires <= maxStaleMillis && !startRefresh(key, now)) {
+			stats.staleServed(pageId);
+			return cto;
+		}
+		stats.miss(pageId);
+		return null;
+	}
+
+	/**
+	 * Claims the refresh of an expired page, a claim older than the grace period
+	 * is taken over as that render most likely failed
+	 */
+	private boolean startRefresh(String key, long now) {
+		RefreshClaim claim = new RefreshClaim(now);
+		RefreshClaim current = refreshing.putIfAbsent(key, claim);
+		if (current == null) {
+			return true;
+		}
+		return now - current.started > graceMillis && refreshing.replace(key, current, claim);
+	}
+
+	/**
+	 * Only releases the claim the calling request holds, a request that rendered the
+	 * page without claiming it (dotcache=refresh, past max stale) leaves the claim alone
+	 */
+	@Override
+	public void endRefresh(String key) {
+		if (key == null) {
+			return;
+		}
+		RefreshClaim claim = refreshing.get(key);
+		if (claim != null && claim.owner == Thread.currentThread()) {
+			refreshing.remove(key, claim);
+		}
+	}
+
+	@Override
+	public long getMaxStaleMillis() {
+		return maxStaleMillis;
+	}
+
+	@Override
+	public PageCacheStats getPageStats() {
+		return stats;
+	}
+
+	private static class RefreshClaim {
+
+		private final long started;
+		private final Thread owner = Thread.currentThread();
+
+		RefreshClaim(long started) {
+			this.started = started;
+		}
+	}
+
 	@Override
 	 public BlockDirectiveCacheObject get(String key) {
 		if(!canCache)return null;
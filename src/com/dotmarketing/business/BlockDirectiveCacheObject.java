@@ -1,12 +1,27 @@
 package com.dotmarketing.business;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.GZIPOutputStream;
 
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+
+/**
+ * A cached block or page. The content is kept encoded with the configured charset and,
+ * when PAGE_CACHE_GZIP is on (default) and it is at least PAGE_CACHE_GZIP_MIN_SIZE bytes,
+ * gzipped as well, so a hit can be written as is.
+ */
 public class BlockDirectiveCacheObject implements Serializable {
 
 
-		private static final long serialVersionUID = 1L;
-		String value;
+		private static final long serialVersionUID = 2L;
+		byte[] bytes;
+		byte[] gzipBytes;
+		String etag;
 		long created = 0;
 		int ttl=0;
 		public int getTtl() {
@@ -15,7 +30,7 @@ public class BlockDirectiveCacheObject implements Serializable {
 
 		public BlockDirectiveCacheObject(String value, int ttl){
 			this.ttl = ttl;
-			this.value=value;
+			setValue(value);
 			created = System.currentTimeMillis();
 		}
 
@@ -28,9 +43,9 @@ public class BlockDirectiveCacheObject implements Serializable {
 		public BlockDirectiveCacheObject(){
 			created = System.currentTimeMillis();
 		}
-		
-		
-		
+
+
+
 		public long getCreated() {
 			return created;
 		}
@@ -39,16 +54,68 @@ public class BlockDirectiveCacheObject implements Serializable {
 
 
 		public String getValue() {
-			return value;
+			if (bytes == null) {
+				return null;
+			}
+			try {
+				return new String(bytes, UtilMethods.getCharsetConfiguration());
+			} catch (UnsupportedEncodingException e) {
+				return new String(bytes);
+			}
 		}
 		public void setValue(String value) {
-			this.value = value;
-		}
-		
-		
-		
-		
-		
-		
+			gzipBytes = null;
+			if (value == null) {
+				bytes = null;
+				return;
+			}
+			try {
+				bytes = value.getBytes(UtilMethods.getCharsetConfiguration());
+			} catch (UnsupportedEncodingException e) {
+				bytes = value.getBytes();
+			}
+			if (Config.getBooleanProperty("PAGE_CACHE_GZIP", true) && bytes.length >= Config.getIntProperty("PAGE_CACHE_GZIP_MIN_SIZE", 1024)) {
+				gzipBytes = gzip(bytes);
+			}
+		}
+
+		/**
+		 * The content encoded with the configured charset
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * The gzipped content or null if it was not worth compressing
+		 */
+		public byte[] getGzipBytes() {
+			return gzipBytes;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		public void setETag(String etag) {
+			this.etag = etag;
+		}
+
+		private static byte[] gzip(byte[] data) {
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+				GZIPOutputStream gzip = new GZIPOutputStream(out);
+				gzip.write(data);
+				gzip.close();
+				byte[] ret = out.toByteArray();
+				return (ret.length < data.length) ? ret : null;
+			} catch (IOException e) {
+				Logger.debug(BlockDirectiveCacheObject.class, "Unable to gzip cache entry : " + e.getMessage());
+				return null;
+			}
+		}
+
+
+
 
 }
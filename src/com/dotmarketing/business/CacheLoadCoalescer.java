@@ -0,0 +1,208 @@
+package com.dotmarketing.business;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.dotmarketing.exception.DotDataException;
+
+/**
+ * Coalesces concurrent cache loads so that only one thread per group/key runs the loader
+ * on a cache miss while every other caller for the same entry waits for that result.
+ * Used by the {@link DotCacheAdministrator} implementations to back
+ * {@link DotCacheAdministrator#get(String, String, Callable)}.
+ *
+ * Invalidations that arrive while a load is in flight mark that load as stale, its result
+ * is still handed to the threads waiting on it but it is not left in the cache. The stale
+ * mark is checked again after the put, so an invalidation racing with the put removes the
+ * value it just stored instead of letting the old value survive it.
+ *
+ * Keys and groups are expected to be already normalized by the calling administrator.
+ *
+ * {@link #load(String, Callable)} gives the same single flight to loads that are not
+ * cached through an administrator, each user of it keeps its own instance.
+ */
+public class CacheLoadCoalescer {
+
+	private static final String SEPARATOR = ":";
+
+	private final ConcurrentHashMap<String, Load> inFlight = new ConcurrentHashMap<String, Load>();
+
+	/**
+	 * Returns the cached value for key/group, loading it through the loader on a miss.
+	 * Non null results are put in the cache.
+	 * @param cache administrator used to read and store the entry
+	 * @param key
+	 * @param group
+	 * @param loader
+	 * @return
+	 * @throws DotCacheException wrapping any exception thrown by the loader
+	 */
+	public Object get(DotCacheAdministrator cache, String key, String group, Callable<?> loader) throws DotCacheException {
+		if (key == null || group == null) {
+			return null;
+		}
+		Object value = cache.get(key, group);
+		if (value != null || loader == null) {
+			return value;
+		}
+
+		return run(group + SEPARATOR + key, new Load(cache, key, group, loader));
+	}
+
+	/**
+	 * Runs the loader unless another thread is already running it for the same key, in
+	 * which case its result is waited for. Nothing is cached, the loader does it if needed.
+	 * @param key
+	 * @param loader
+	 * @return
+	 * @throws DotCacheException wrapping any exception thrown by the loader
+	 */
+	public Object load(String key, Callable<?> loader) throws DotCacheException {
+		if (key == null || loader == null) {
+			return null;
+		}
+		return run(key, new Load(null, key, null, loader));
+	}
+
+	private Object run(String flightKey, Load load) throws DotCacheException {
+		Load running = inFlight.putIfAbsent(flightKey, load);
+		if (running == null) {
+			try {
+				load.task.run();
+			} finally {
+				inFlight.remove(flightKey, load);
+			}
+			return load.result();
+		}
+		if (running.owner == Thread.currentThread()) {
+			// the loader is asking for its own key, waiting would deadlock
+			try {
+				return load.loader.call();
+			} catch (Exception e) {
+				throw new DotCacheException("Unable to load " + flightKey, e);
+			}
+		}
+		return running.result();
+	}
+
+	/**
+	 * Marks the in flight load for key/group as stale
+	 * @param key
+	 * @param group
+	 */
+	public void invalidate(String key, String group) {
+		if (key == null || group == null) {
+			return;
+		}
+		Load load = inFlight.remove(group + SEPARATOR + key);
+		if (load != null) {
+			load.stale = true;
+		}
+	}
+
+	/**
+	 * Marks every in flight load of the group as stale
+	 * @param group
+	 */
+	public void invalidateGroup(String group) {
+		if (group == null) {
+			return;
+		}
+		String prefix = group + SEPARATOR;
+		for (Iterator<Map.Entry<String, Load>> it = inFlight.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Load> entry = it.next();
+			if (entry.getKey().startsWith(prefix)) {
+				entry.getValue().stale = true;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Marks every in flight load as stale
+	 */
+	public void invalidateAll() {
+		for (Iterator<Load> it = inFlight.values().iterator(); it.hasNext();) {
+			it.next().stale = true;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Turns the exception of a failed load back into the DotDataException (or runtime
+	 * exception) thrown by the loader so callers keep their usual error handling
+	 * @param e
+	 * @return
+	 */
+	public static DotDataException toDataException(DotCacheException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof DotDataException) {
+			return (DotDataException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		return new DotDataException(e.getMessage(), e);
+	}
+
+	private static class Load implements Callable<Object> {
+
+		private final DotCacheAdministrator cache;
+		private final String key;
+		private final String group;
+		private final Callable<?> loader;
+		private final Thread owner = Thread.currentThread();
+		private final FutureTask<Object> task = new FutureTask<Object>(this);
+		private volatile boolean stale = false;
+
+		Load(DotCacheAdministrator cache, String key, String group, Callable<?> loader) {
+			this.cache = cache;
+			this.key = key;
+			this.group = group;
+			this.loader = loader;
+		}
+
+		public Object call() throws Exception {
+			if (cache == null) {
+				return loader.call();
+			}
+			// another load may have completed between our cache miss and our registration
+			Object value = cache.get(key, group);
+			if (value != null) {
+				return value;
+			}
+			value = loader.call();
+			if (value != null && !stale) {
+				cache.put(key, value, group);
+				// invalidations mark the load stale before they remove the entry, so either
+				// their removal runs after our put or we see the mark here and undo it
+				if (stale) {
+					cache.removeLocalOnly(key, group);
+				}
+			}
+			return value;
+		}
+
+		Object result() throws DotCacheException {
+			try {
+				return task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DotCacheException("Interrupted while waiting for " + key + (group != null ? " in group " + group : ""), e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof DotCacheException) {
+					throw (DotCacheException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new DotCacheException("Unable to load " + key + (group != null ? " in group " + group : ""), (Exception) cause);
+			}
+		}
+	}
+}
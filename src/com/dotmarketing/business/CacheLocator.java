@@ -3,6 +3,7 @@ package com.dotmarketing.business;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.jgroups.JChannel;
 
@@ -75,6 +76,21 @@ public class CacheLocator extends Locator<CacheIndex>{
         public void flushAlLocalOnlyl() { dotcache.flushAlLocalOnlyl(); }
         public void flushGroupLocalOnly(String group) { dotcache.flushGroupLocalOnly(group); }
         public Object get(String key, String group) throws DotCacheException { return dotcache.get(key, group); }
+        public Object get(final String key, final String group, final Callable<?> loader) throws DotCacheException {
+            return dotcache.get(key, group, new Callable<Object>() {
+                public Object call() throws Exception {
+                    Object value = loader.call();
+                    if(value != null && !HibernateUtil.getSession().connection().getAutoCommit()) {
+                        HibernateUtil.addRollbackListener(new Runnable() {
+                           public void run() {
+                               dotcache.remove(key, group);
+                           }
+                        });
+                    }
+                    return value;
+                }
+            });
+        }
         public void remove(String key, String group) { dotcache.remove(key,group); }
         public void removeLocalOnly(String key, String group) { dotcache.removeLocalOnly(key, group); }
         public void shutdown() { dotcache.shutdown(); }
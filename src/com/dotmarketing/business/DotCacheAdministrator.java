@@ -6,6 +6,7 @@ package com.dotmarketing.business;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.jgroups.JChannel;
 
@@ -54,6 +55,18 @@ public interface DotCacheAdministrator  {
 	 * @return
 	 */
 	public Object get(String key, String group)throws DotCacheException;
+
+	/**
+	 * Get an object from the cache, loading it on a miss. Only one caller per key
+	 * runs the loader, concurrent callers for the same key wait for its result.
+	 * A non null result is put in the cache.
+	 * @param key
+	 * @param group
+	 * @param loader
+	 * @return
+	 * @throws DotCacheException wrapping any exception thrown by the loader
+	 */
+	public Object get(String key, String group, Callable<?> loader)throws DotCacheException;
 	
 	/**
 	 * Puts an object in a cache
@@ -3,7 +3,7 @@
  */
 package com.dotmarketing.business;
 
-import java.sql.SQLException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
@@ -15,8 +15,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.jboss.cache.Fqn;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.github.jamm.MemoryMeter;
 import org.jgroups.Address;
 import org.jgroups.ChannelClosedException;
 import org.jgroups.ChannelNotConnectedException;
@@ -25,11 +30,14 @@ import org.jgroups.Message;
 import org.jgroups.ReceiverAdapter;
 import org.jgroups.View;
 
-import com.dotmarketing.cache.H2CacheLoader;
+import com.dotmarketing.business.cluster.CacheInvalidationBus;
+import com.dotmarketing.cache.DiskCache;
+import com.dotmarketing.cache.H2DiskCache;
+import com.dotmarketing.cache.MappedDiskCache;
+import com.dotmarketing.cache.WriteBehindDiskCache;
 import com.dotmarketing.common.business.journal.DistributedJournalAPI;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
-import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.menubuilders.RefreshMenus;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
@@ -39,6 +47,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 
 import edu.emory.mathcs.backport.java.util.Collections;
 
@@ -54,18 +63,24 @@ import edu.emory.mathcs.backport.java.util.Collections;
 public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements DotCacheAdministrator {
 
 	private DistributedJournalAPI journalAPI;
-	private Map<String, Cache<String, Object>> groups = new HashMap<String, Cache<String, Object>>();
+	private final ConcurrentHashMap<String, Cache<String, Object>> groups = new ConcurrentHashMap<String, Cache<String, Object>>();
 	private JChannel channel;
 	private boolean useJgroups = false;
-	private ConcurrentHashMap<String, Boolean> cacheToDisk = new ConcurrentHashMap<String, Boolean>();
+	private final ConcurrentHashMap<String, Boolean> cacheToDisk = new ConcurrentHashMap<String, Boolean>();
 	private HashSet<String> availableCaches = new HashSet<String>();
-	private H2CacheLoader diskCache = null;
+	// disk stores by type and the store used by each disk region
+	private final ConcurrentHashMap<String, DiskCache> diskStores = new ConcurrentHashMap<String, DiskCache>();
+	private final ConcurrentHashMap<String, DiskCache> regionDiskStores = new ConcurrentHashMap<String, DiskCache>();
 	
 	static final String LIVE_CACHE_PREFIX = "livecache";
 	static final String WORKING_CACHE_PREFIX = "workingcache";
 	static final String DEFAULT_CACHE = "default";
+	static final String DISK_STORE_H2 = "h2";
+	static final String DISK_STORE_MMAP = "mmap";
 	
 	private NullCallable nullCallable = new NullCallable();
+	private final CacheLoadCoalescer loadCoalescer = new CacheLoadCoalescer();
+	private CacheInvalidationBus invalidationBus;
 	
 	
 	
@@ -73,9 +88,38 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 	
 	
 	private boolean isDiskCache(String group){
-		if(group ==null || diskCache==null){
-			return false;
+		return getDiskCache(group) != null;
+	}
+
+	/**
+	 * Returns the disk store of the region, the one named by cache.[region].disk.store
+	 * (h2 or mmap, h2 by default), or null if the region is not cached to disk
+	 */
+	private DiskCache getDiskCache(String group){
+		if(group ==null || diskStores.isEmpty()){
+			return null;
 		}
+		group = group.toLowerCase();
+		DiskCache store = regionDiskStores.get(group);
+		if(store != null){
+			return store;
+		}
+		if(!isDiskRegion(group)){
+			return null;
+		}
+		store = diskStores.get(getDiskStoreType(group));
+		if(store != null){
+			regionDiskStores.put(group, store);
+		}
+		return store;
+	}
+
+	private String getDiskStoreType(String group){
+		String type = getRegionProperty(group, "disk.store");
+		return UtilMethods.isSet(type) ? type.trim().toLowerCase() : DISK_STORE_H2;
+	}
+
+	private boolean isDiskRegion(String group){
 		group = group.toLowerCase();
 		Boolean ret = cacheToDisk.get(group);
 		if(ret == null) {
@@ -117,7 +161,7 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
 		
-		boolean initDiskCache = false;
+		Set<String> diskStoreTypes = new HashSet<String>();
 		Iterator<String> it = Config.getKeys();
 		availableCaches.add(DEFAULT_CACHE);	
 		while(it.hasNext()){
@@ -132,28 +176,68 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 					availableCaches.add(cacheName.toLowerCase());	
 					Logger.info(this.getClass(), "***\t Cache Config Memory : " +  cacheName + ": " + inMemory  );
 				}
+				if(key.endsWith(".maxweight")){
+					availableCaches.add(cacheName.toLowerCase());
+					Logger.info(this.getClass(), "***\t Cache Config Weight : " +  cacheName + ": " + Config.getStringProperty(key, "")  );
+				}
 				if(key.endsWith(".disk")){
 					boolean useDisk = Config.getBooleanProperty(key, false);
 					if(useDisk){
-						initDiskCache =true;
-						Logger.info(this.getClass(), "***\t Cache Config Disk   : " + cacheName  + ": true");
+						String type = getDiskStoreType(cacheName.toLowerCase());
+						diskStoreTypes.add(type);
+						Logger.info(this.getClass(), "***\t Cache Config Disk   : " + cacheName  + ": " + type);
 					}
 				}
 
 			}
 		}
-		if(initDiskCache){
+		for(String type : diskStoreTypes){
 			try{
-				diskCache = H2CacheLoader.getInstance();
+				DiskCache store = null;
+				if(DISK_STORE_H2.equals(type)){
+					store = new H2DiskCache();
+				}
+				else if(DISK_STORE_MMAP.equals(type)){
+					store = new MappedDiskCache();
+				}
+				else{
+					Logger.error(this.getClass(), "***\t Unknown disk cache store: " + type);
+					continue;
+				}
+				// request threads only pay for the memory put, disk writes happen in the background
+				WriteBehindDiskCache writeBehind = new WriteBehindDiskCache(store);
+				diskStores.put(type, writeBehind);
+				try {
+					ManagementFactory.getPlatformMBeanServer().registerMBean(writeBehind,
+							new ObjectName("org.dotcms:type=DiskCacheWriter,store=" + type));
+				} catch (Exception e) {
+					Logger.debug(DotGuavaCacheAdministratorImpl.class, "Unable to register DiskCacheWriter MBean: " + e.getMessage(), e);
+				}
 			}
 			catch(Exception e){
-				Logger.error(this.getClass(), "***\t Unable to start disk cache: " + e.getMessage(), e);
-				cacheToDisk.clear();
+				Logger.error(this.getClass(), "***\t Unable to start " + type + " disk cache: " + e.getMessage(), e);
 			}
 		}
+		cacheToDisk.clear();
 
 
 
+		invalidationBus = new CacheInvalidationBus(new CacheInvalidationBus.Transport() {
+			public void send(List<String> invalidations) throws Exception {
+				if (Config.getBooleanProperty("CACHE_CLUSTER_THROUGH_DB", false)) {
+					journalAPI.addCacheEntries(invalidations);
+				} else if (useJgroups) {
+					channel.send(new Message(null, null, CacheInvalidationBus.encode(invalidations)));
+				}
+			}
+		});
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(invalidationBus, new ObjectName("org.dotcms:type=CacheInvalidationBus"));
+		} catch (Exception e) {
+			Logger.debug(DotGuavaCacheAdministratorImpl.class, "Unable to register CacheInvalidationBus MBean: " + e.getMessage(), e);
+		}
+
 		if ((Config.getBooleanProperty("CACHE_CLUSTER_THROUGH_DB", false) == false)
 				&& Config.getBooleanProperty("DIST_INDEXATION_ENABLED", false)) {
 			Logger.info(this, "***\t Starting JGroups Cluster Setup");
@@ -214,20 +298,7 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 	 */
 	public void flushAll() {
 		flushAlLocalOnlyl();
-		try {
-			if (Config.getBooleanProperty("CACHE_CLUSTER_THROUGH_DB", false)) {
-				journalAPI.addCacheEntry("0", ROOT_GOUP);
-			} else if (useJgroups) {
-				Message msg = new Message(null, null, "0:" + ROOT_GOUP);
-				try {
-					channel.send(msg);
-				} catch (Exception e) {
-					Logger.error(DotGuavaCacheAdministratorImpl.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
-				}
-			}
-		} catch (DotDataException e) {
-			Logger.error(this, "Unable to add journal entry for cluster", e);
-		}
+		invalidateCluster("0", ROOT_GOUP);
 	}
 
 	/*
@@ -245,24 +316,9 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		}
 		group = group.toLowerCase();
 		
-		groups.remove(group);
-		
 		flushGroupLocalOnly(group);
 
-		try {
-			if (Config.getBooleanProperty("CACHE_CLUSTER_THROUGH_DB", false)) {
-				journalAPI.addCacheEntry("0", group);
-			} else if (useJgroups) {
-				Message msg = new Message(null, null, "0:" + group);
-				try {
-					channel.send(msg);
-				} catch (Exception e) {
-					Logger.error(DotGuavaCacheAdministratorImpl.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
-				}
-			}
-		} catch (DotDataException e) {
-			Logger.error(this, "Unable to add journal entry for cluster", e);
-		}
+		invalidateCluster("0", group);
 	}
 
 	/*
@@ -272,14 +328,16 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 	 */
 	public void flushAlLocalOnlyl() {
 		
+		// regions are flushed in place, the registry itself is never swapped out so
+		// concurrent readers can not miss a region or fall back to the default one
 		Set<String> myGroups = new HashSet<String>();
 
 		myGroups.addAll(groups.keySet());
-		groups = new HashMap<String, Cache<String,Object>>();
-		if(diskCache != null){
+		loadCoalescer.invalidateAll();
+		for(DiskCache store : diskStores.values()){
 			try {
-				myGroups.addAll(H2CacheLoader.getGroups());
-			} catch (SQLException e) {
+				myGroups.addAll(store.getGroups());
+			} catch (Exception e) {
 				Logger.error(DotGuavaCacheAdministratorImpl.class,e.getMessage(),e);
 			}
 		}
@@ -287,10 +345,11 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		for(String group : myGroups){
 			flushGroupLocalOnly(group);
 		}
-		if(diskCache != null){
-			diskCache.resetCannotCacheCache();
+		for(DiskCache store : diskStores.values()){
+			store.reset();
 		}
-		cacheToDisk = new ConcurrentHashMap<String, Boolean>();
+		cacheToDisk.clear();
+		regionDiskStores.clear();
 		
 	}
 
@@ -302,11 +361,12 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		group = group.toLowerCase();
 		
 		Cache cache = getCache(group);
+		loadCoalescer.invalidateGroup(group);
 		
-		
-		if(isDiskCache(group)){
+		DiskCache diskCache = getDiskCache(group);
+		if(diskCache != null){
 			try {
-				diskCache.remove(new Fqn(group));
+				diskCache.removeGroup(group);
 			} catch (Exception e) {
 				Logger.debug(DotGuavaCacheAdministratorImpl.class,e.getMessage(),e);
 			}
@@ -349,15 +409,13 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		key = key.toLowerCase();
 		group = group.toLowerCase();
 		Object j = null;
-		if(isDiskCache(group)){
+		DiskCache diskCache = getDiskCache(group);
+		if(diskCache != null){
 			try {
-				Map m=diskCache.get(new Fqn(group, key));
-				if(m!=null){
-					j = m.get(key);
-					if(j != null){
-						Cache cache = getCache(group);
-						cache.put(key, j);
-					}
+				j = diskCache.get(group, key);
+				if(j != null){
+					Cache cache = getCache(group);
+					cache.put(key, j);
 				}
 			} catch (Exception e) {
 				Logger.debug(DotGuavaCacheAdministratorImpl.class,e.getMessage(),e);
@@ -384,6 +442,16 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		return j;
 	}
 
+	/**
+	 * Gets from memory, then disk, and only then runs the loader, once per key
+	 */
+	public Object get(String key, String group, Callable<?> loader) throws DotCacheException {
+		if(key == null || group == null){
+			return null;
+		}
+		return loadCoalescer.get(this, key.toLowerCase(), group.toLowerCase(), loader);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -403,9 +471,10 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		Cache cache = getCache(group);
 		cache.put(key, content);
 		
-		if(isDiskCache(group)){
+		DiskCache diskCache = getDiskCache(group);
+		if(diskCache != null){
 			try {
-				diskCache.put(new Fqn(group, key), key, content);
+				diskCache.put(group, key, content);
 			} catch (Exception e) {
 				Logger.debug(DotGuavaCacheAdministratorImpl.class,e.getMessage(),e);
 			}
@@ -422,37 +491,37 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		if(key == null || group == null){
 			return;
 		}
-		Runnable cacheRemoveRunnable=new Runnable() {
-	         public void run() {
+		final String k = key.toLowerCase();
+		final String g = group.toLowerCase();
 
-				String k = key.toLowerCase();
-				String g = group.toLowerCase();
-				removeLocalOnly(k, g);
-		
-				try {
-					if (Config.getBooleanProperty("CACHE_CLUSTER_THROUGH_DB", false)) {
-						journalAPI.addCacheEntry(k, g);
-					} else if (useJgroups) {
-						Message msg = new Message(null, null, k + ":" + g);
-						try {
-							channel.send(msg);
-						} catch (Exception e) {
-							Logger.error(DotGuavaCacheAdministratorImpl.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
-						}
-					}
-				} catch (DotDataException e) {
-					Logger.error(this, "Unable to add journal entry for cluster", e);
-				}
-	         }
+		// runs now and again after commit
+		removeLocalOnly(k, g);
+
+		Runnable clusterRemoveRunnable=new Runnable() {
+			public void run() {
+				invalidateCluster(k, g);
+			}
 		};
 		try {
 			if(!DbConnectionFactory.getConnection().getAutoCommit()){
-				HibernateUtil.addCommitListener(cacheRemoveRunnable);
+				// other servers would reload the uncommitted values, tell them once committed
+				HibernateUtil.addCommitListener(clusterRemoveRunnable);
+				return;
 			}
 		} catch (Exception e) {
 			Logger.error(DotGuavaCacheAdministratorImpl.class,e.getMessage(),e);
 		}
-		cacheRemoveRunnable.run();
+		clusterRemoveRunnable.run();
+	}
+
+	/**
+	 * Queues the invalidation for the other servers in the cluster,
+	 * they are batched and shipped by the invalidation bus
+	 */
+	private void invalidateCluster(String key, String group) {
+		if (useJgroups || Config.getBooleanProperty("CACHE_CLUSTER_THROUGH_DB", false)) {
+			invalidationBus.invalidate(key, group);
+		}
 	}
 
 	public void removeLocalOnly(final String key, final String group) {
@@ -464,13 +533,15 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 				String k = key.toLowerCase();
 				String g = group.toLowerCase();
 				Cache<String, Object>  cache = getCache(g);
+				loadCoalescer.invalidate(k, g);
 				cache.invalidate(k);
-				if(isDiskCache(g)){
+				DiskCache diskCache = getDiskCache(g);
+				if(diskCache != null){
 					try {
 						if(!UtilMethods.isSet(key)){
 							Logger.error(this.getClass(), "Empty key passed in, clearing group " + group + " by mistake");
 						}
-						diskCache.remove(new Fqn(g, k), k.toLowerCase());
+						diskCache.remove(g, k);
 					} catch (Exception e) {
 						Logger.error(DotGuavaCacheAdministratorImpl.class,e.getMessage(),e);
 					}
@@ -501,12 +572,13 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 			keys.addAll(m.keySet());
 		} 
 		
-		if(diskCache!=null && isDiskCache(group)) {
+		DiskCache diskCache = getDiskCache(group);
+		if(diskCache!=null) {
 		    try {
 		        keys.addAll(diskCache.getKeys(group));
 		    }
 		    catch(Exception ex) {
-		        Logger.error(this, "can't get h2 cache keys on group "+group,ex);
+		        Logger.error(this, "can't get disk cache keys on group "+group,ex);
 		    }
 		}
 			
@@ -523,12 +595,12 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 
 		myGroups.addAll(groups.keySet());
 		
-		if(diskCache != null){
+		for(DiskCache store : diskStores.values()){
 			try {
-				for(String s : H2CacheLoader.getGroups()){
+				for(String s : store.getGroups()){
 					myGroups.add(s.toLowerCase());
 				}
-			} catch (SQLException e) {
+			} catch (Exception e) {
 				Logger.error(DotGuavaCacheAdministratorImpl.class, e.getMessage(), e);
 			}
 		}
@@ -556,25 +628,19 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 			}
 			m.put("isDefault", isDefault);
 			m.put("disk", -1);
+			DiskCache diskCache = getDiskCache(group);
 			if(diskCache != null){
-				if(isDiskCache(group)){
-					m.put("disk", H2CacheLoader.getGroupCount(group.toString()));
-				}
+				m.put("disk", String.valueOf(diskCache.getGroupCount(group)));
 			}
 			
 			
-			int configured = isDefault  
-				? Config.getIntProperty("cache."+DEFAULT_CACHE+".size" ) 
-    				: (Config.getIntProperty("cache." +region + ".size", -1 ) != -1) 
-    					? Config.getIntProperty("cache." +region + ".size" ) 
-    						: (region.startsWith(WORKING_CACHE_PREFIX) && Config.getIntProperty("cache."+WORKING_CACHE_PREFIX+".size", -1 ) != -1) 
-    							? Config.getIntProperty("cache."+WORKING_CACHE_PREFIX+".size" )
-   									: (region.startsWith(LIVE_CACHE_PREFIX) && Config.getIntProperty("cache."+LIVE_CACHE_PREFIX+".size", -1 ) != -1) 
-   										? Config.getIntProperty("cache."+LIVE_CACHE_PREFIX+".size" )
-   												: Config.getIntProperty("cache."+DEFAULT_CACHE+".size" );
-			
-			
-			
+			int configured = isDefault
+				? Config.getIntProperty("cache."+DEFAULT_CACHE+".size" )
+					: getRegionIntProperty(region, "size", Config.getIntProperty("cache."+DEFAULT_CACHE+".size" ));
+			m.put("configuredWeight", isDefault
+				? Config.getIntProperty("cache."+DEFAULT_CACHE+".maxweight", -1 )
+					: getRegionIntProperty(region, "maxweight", -1));
+
    			m.put("configuredSize", configured);
 			
 			list.add(m);
@@ -631,8 +697,9 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 	}
 
 	public void shutdown() {
-		if(diskCache != null){
-			diskCache.destroy();
+		invalidationBus.shutdown();
+		for(DiskCache store : diskStores.values()){
+			store.destroy();
 		}
 	}
 
@@ -655,7 +722,9 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 		if (v.toString().equals("TESTINGCLUSTER")) {
 			Logger.info(this, "Received Message Ping " + new Date());
 		} else {
-			invalidateCacheFromCluster(v.toString());
+			for (String invalidation : invalidationBus.receive(v.toString())) {
+				invalidateCacheFromCluster(invalidation);
+			}
 		}
 	}
 
@@ -738,72 +807,19 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 
 		// init cache if it does not exist
 		if (cache == null) {
-			synchronized (cacheName) {
-				cache = groups.get(cacheName);
-				if (cache == null) {
-					
-
-					boolean separateCache = (availableCaches.contains(cacheName) || DEFAULT_CACHE.equals(cacheName) ||cacheName.startsWith(LIVE_CACHE_PREFIX) || cacheName.startsWith(WORKING_CACHE_PREFIX) );
-
-						
-					if (separateCache) {
-						int size = -1;
-						boolean toDisk = false;
-						if (cacheName.startsWith(LIVE_CACHE_PREFIX)) {
-							size = Config.getIntProperty("cache." + cacheName + ".size", -1);
-							if(size <0){
-								size = Config.getIntProperty("cache."+LIVE_CACHE_PREFIX+".size", -1);
-							}
-							if(Config.containsProperty("cache." + cacheName + ".disk")){
-								toDisk = Config.getBooleanProperty("cache." + cacheName + ".disk", false);
-							}
-							else{
-								toDisk = Config.getBooleanProperty("cache."+LIVE_CACHE_PREFIX+".disk", false);
-							}
-						} 
-						else if (cacheName.startsWith(WORKING_CACHE_PREFIX)) {
-							size = Config.getIntProperty("cache." + cacheName + ".size", -1);
-							if(size <0){
-								size = Config.getIntProperty("cache."+WORKING_CACHE_PREFIX+".size", -1);
-							}
-							if(Config.containsProperty("cache." + cacheName + ".disk")){
-								toDisk = Config.getBooleanProperty("cache." + cacheName + ".disk", false);
-							}
-							else{
-								toDisk = Config.getBooleanProperty("cache."+WORKING_CACHE_PREFIX+".disk", false);
-							}
-						} 
-						else {
-							size = Config.getIntProperty("cache." + cacheName + ".size", -1);
-							if(Config.containsProperty("cache." + cacheName + ".disk")){
-								toDisk = Config.getBooleanProperty("cache." + cacheName + ".disk", false);
-							}
-							else{
-								toDisk = Config.getBooleanProperty("cache."+DEFAULT_CACHE+".disk", false);
-							}
-						}
-						
-						if (size == -1) {
-							size = Config.getIntProperty("cache."+DEFAULT_CACHE+".size", 100);
-						}
-
-						Logger.info(this.getClass(), "***\t Building Cache : " + cacheName + ", size:" + size + ", toDisk:" + toDisk + ",Concurrency:" + Config.getIntProperty("cache.concurrencylevel", 32));
-						CacheBuilder<Object, Object> cb  = CacheBuilder
-								.newBuilder()
-								.maximumSize(size)
-								.concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32));
-								
+			boolean separateCache = (availableCaches.contains(cacheName) || DEFAULT_CACHE.equals(cacheName) ||cacheName.startsWith(LIVE_CACHE_PREFIX) || cacheName.startsWith(WORKING_CACHE_PREFIX) );
 
-						
-						cache = cb.build();
-						groups.put(cacheName, cache);
+			if (separateCache) {
+				cache = buildCache(cacheName);
+			} else {
+				Logger.info(this.getClass(), "***\t No Cache for   : " + cacheName + ", using " + DEFAULT_CACHE);
+				cache = getCache(DEFAULT_CACHE);
+			}
 
-					} else {
-						Logger.info(this.getClass(), "***\t No Cache for   : " + cacheName + ", using " + DEFAULT_CACHE);
-						cache = getCache(DEFAULT_CACHE);
-						groups.put(cacheName, cache);
-					}
-				}
+			// only the first region registered wins, a losing thread uses the winner's region
+			Cache<String, Object> existing = groups.putIfAbsent(cacheName, cache);
+			if (existing != null) {
+				cache = existing;
 			}
 		}
 
@@ -811,6 +827,135 @@ public class DotGuavaCacheAdministratorImpl extends ReceiverAdapter implements D
 
 	}
 
+	/**
+	 * Builds the Guava cache for a region using the cache.[region].* properties. Every
+	 * property falls back to the livecache/workingcache prefix settings and then to the
+	 * cache.default.* settings. Supported properties are:
+	 * <ul>
+	 * <li>size: max number of entries</li>
+	 * <li>maxweight: max size in bytes measured with jamm, takes precedence over size
+	 * when the jamm agent is loaded</li>
+	 * <li>weighsample: deep measure one put out of this many and weigh the rest with the
+	 * region average, 1 measures every put</li>
+	 * <li>expireafteraccess / expireafterwrite: in seconds</li>
+	 * </ul>
+	 * @param cacheName
+	 * @return
+	 */
+	private Cache<String, Object> buildCache(String cacheName) {
+		int concurrency = Config.getIntProperty("cache.concurrencylevel", 32);
+		int size = getRegionIntProperty(cacheName, "size", Config.getIntProperty("cache."+DEFAULT_CACHE+".size", 100));
+		long maxWeight = getRegionLongProperty(cacheName, "maxweight", -1);
+		int weighSample = Math.max(1, getRegionIntProperty(cacheName, "weighsample", 100));
+		long expireAfterAccess = getRegionLongProperty(cacheName, "expireafteraccess", -1);
+		long expireAfterWrite = getRegionLongProperty(cacheName, "expireafterwrite", -1);
+
+		CacheBuilder<Object, Object> cb = CacheBuilder
+				.newBuilder()
+				.concurrencyLevel(concurrency);
+
+		if (maxWeight > 0 && MemoryMeter.isInitialized()) {
+			cb.maximumWeight(maxWeight).weigher(new MemoryMeterWeigher(weighSample));
+		} else {
+			if (maxWeight > 0) {
+				Logger.warn(this.getClass(), "***\t Cache " + cacheName + " has a maxweight but the jamm agent is not loaded, using size:" + size);
+				maxWeight = -1;
+			}
+			cb.maximumSize(size);
+		}
+		if (expireAfterAccess > 0) {
+			cb.expireAfterAccess(expireAfterAccess, TimeUnit.SECONDS);
+		}
+		if (expireAfterWrite > 0) {
+			cb.expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS);
+		}
+
+		Logger.info(this.getClass(), "***\t Building Cache : " + cacheName + ", size:" + size + ", maxweight:" + maxWeight
+				+ (maxWeight > 0 ? ", weighSample:" + weighSample : "")
+				+ ", expireAfterAccess:" + expireAfterAccess + ", expireAfterWrite:" + expireAfterWrite
+				+ ", toDisk:" + isDiskCache(cacheName) + ",Concurrency:" + concurrency);
+
+		return cb.build();
+	}
+
+	/**
+	 * Returns the cache.[region].[property] value, falling back to the livecache/workingcache
+	 * prefix value for those regions and then to cache.default.[property]
+	 */
+	private String getRegionProperty(String region, String property) {
+		String key = "cache." + region + "." + property;
+		if (Config.containsProperty(key)) {
+			return Config.getStringProperty(key);
+		}
+		if (region.startsWith(LIVE_CACHE_PREFIX) && Config.containsProperty("cache." + LIVE_CACHE_PREFIX + "." + property)) {
+			return Config.getStringProperty("cache." + LIVE_CACHE_PREFIX + "." + property);
+		}
+		if (region.startsWith(WORKING_CACHE_PREFIX) && Config.containsProperty("cache." + WORKING_CACHE_PREFIX + "." + property)) {
+			return Config.getStringProperty("cache." + WORKING_CACHE_PREFIX + "." + property);
+		}
+		if (Config.containsProperty("cache." + DEFAULT_CACHE + "." + property)) {
+			return Config.getStringProperty("cache." + DEFAULT_CACHE + "." + property);
+		}
+		return null;
+	}
+
+	private long getRegionLongProperty(String region, String property, long defaultValue) {
+		String value = getRegionProperty(region, property);
+		if (!UtilMethods.isSet(value)) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			Logger.warn(this.getClass(), "Invalid value " + value + " for cache." + region + "." + property);
+			return defaultValue;
+		}
+	}
+
+	private int getRegionIntProperty(String region, String property, int defaultValue) {
+		return (int) getRegionLongProperty(region, property, defaultValue);
+	}
+
+	/**
+	 * Weighs cache entries by their deep size in bytes using jamm.
+	 * Only used when the jamm agent has been loaded with -javaagent.
+	 * Walking the object graph of a big contentlet or page costs more than the put itself,
+	 * so only the first puts and then one put out of sampleRate are measured, the rest
+	 * weigh the running average of the region
+	 */
+	private static class MemoryMeterWeigher implements Weigher<String, Object> {
+
+		private static final int WARMUP = 10;
+
+		private final MemoryMeter meter = new MemoryMeter();
+		private final int sampleRate;
+		private final AtomicLong puts = new AtomicLong();
+		private final AtomicLong measured = new AtomicLong();
+		private final AtomicLong measuredWeight = new AtomicLong();
+
+		MemoryMeterWeigher(int sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		public int weigh(String key, Object value) {
+			long put = puts.incrementAndGet();
+			long samples = measured.get();
+			if (sampleRate > 1 && samples >= WARMUP && put % sampleRate != 0) {
+				return (int) Math.max(1, Math.min(measuredWeight.get() / samples, Integer.MAX_VALUE));
+			}
+			try {
+				long weight = meter.measureDeep(key) + meter.measureDeep(value);
+				measuredWeight.addAndGet(weight);
+				measured.incrementAndGet();
+				return (int) Math.min(weight, Integer.MAX_VALUE);
+			} catch (Throwable t) {
+				Logger.debug(DotGuavaCacheAdministratorImpl.class, "Unable to weigh cache entry " + key + " : " + t.getMessage());
+				return 1;
+			}
+		}
+
+	}
+
 	private class DotRemoval implements RemovalListener {
 
 		public void onRemoval(RemovalNotification removalEvent) {
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -78,6 +79,7 @@ public class DotJBCacheAdministratorImpl extends ReceiverAdapter implements DotC
 	private boolean useJgroups = false;
 	private TreeSet<String> groups = null;
 	private TreeSet<String> keys = null;
+	private final CacheLoadCoalescer loadCoalescer = new CacheLoadCoalescer();
 		
 	public DotJBCacheAdministratorImpl() {
 		journalAPI = APILocator.getDistributedJournalAPI();
@@ -266,6 +268,7 @@ public class DotJBCacheAdministratorImpl extends ReceiverAdapter implements DotC
 	 * @see com.dotmarketing.business.DotCacheAdministrator#flushAll()
 	 */
 	public void flushAlLocalOnlyl() {
+		loadCoalescer.invalidateAll();
 		Set<Node<String,Object>> c = cache.getRoot().getChildren();
 		for (Node<String, Object> node : c) {
 			cache.removeNode(node.getFqn());
@@ -278,6 +281,7 @@ public class DotJBCacheAdministratorImpl extends ReceiverAdapter implements DotC
 	
 	public void flushGroupLocalOnly(String group) {
 		group = group.toUpperCase();
+		loadCoalescer.invalidateGroup(group);
 		Node grp = cache.getRoot().getChild(group);
 		if(grp == null){
 			setUpGroup(group);
@@ -297,6 +301,16 @@ public class DotJBCacheAdministratorImpl extends ReceiverAdapter implements DotC
 		return j;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.dotmarketing.business.DotCacheAdministrator#get(java.lang.String, java.lang.String, java.util.concurrent.Callable)
+	 */
+	public Object get(String key, String group, Callable<?> loader) throws DotCacheException {
+		if(key == null || group == null){
+			return null;
+		}
+		return loadCoalescer.get(this, key, group.toUpperCase(), loader);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.dotmarketing.business.DotCacheAdministrator#put(java.lang.String, java.lang.Object, java.lang.String[])
 	 */
@@ -334,6 +348,7 @@ public class DotJBCacheAdministratorImpl extends ReceiverAdapter implements DotC
 		group = group.toUpperCase();
 		Fqn fqn = Fqn.fromElements(new String[]{group,key});
 		if(key !=null){
+			loadCoalescer.invalidate(key, group);
 			cache.remove(fqn, key);
 		}
 		try{
@@ -355,6 +370,7 @@ public class DotJBCacheAdministratorImpl extends ReceiverAdapter implements DotC
 	public void removeLocalOnly(String key, String group) {
 		group = group.toUpperCase();
 		Fqn fqn = Fqn.fromElements(new String[]{group,key});
+		loadCoalescer.invalidate(key, group);
 		cache.remove(fqn, key);
 	}
 
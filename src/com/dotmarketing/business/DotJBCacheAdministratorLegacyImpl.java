@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.jgroups.JChannel;
 
@@ -56,6 +57,13 @@ public class DotJBCacheAdministratorLegacyImpl implements DotCacheAdministrator{
 		return cache.get(key, group);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.dotmarketing.business.DotCacheAdministrator#get(java.lang.String, java.lang.String, java.util.concurrent.Callable)
+	 */
+	public Object get(String key, String group, Callable<?> loader) throws DotCacheException {
+		return cache.get(key, group, loader);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.dotmarketing.business.DotCacheAdministrator#put(java.lang.String, java.lang.Object, java.lang.String[])
 	 */
@@ -1,8 +1,11 @@
 package com.dotmarketing.business;
 
+import java.util.concurrent.Callable;
+
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.VersionInfo;
+import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 
 public abstract class IdentifierCache implements Cachable {
@@ -15,6 +18,18 @@ public abstract class IdentifierCache implements Cachable {
 
 	abstract protected Identifier getIdentifier(String hostId, String URI);
 
+	/**
+	 * Returns the cached identifier, running the loader once per identifier on a miss.
+	 * Identifiers returned by the loader are cached by id and by host/URI.
+	 */
+	abstract protected Identifier getIdentifier(String identId, Callable<Identifier> loader) throws DotDataException;
+
+	/**
+	 * Returns the cached identifier for the URI, running the loader once per host/URI on a miss.
+	 * Identifiers returned by the loader are cached by id and by host/URI.
+	 */
+	abstract protected Identifier getIdentifier(String URI, String hostId, Callable<Identifier> loader) throws DotDataException;
+
 	abstract protected String getIdentifierFromInode(Versionable versionable);
 
 	abstract protected void removeFromCacheByURI(String URI, String hostId);
@@ -24,12 +39,16 @@ public abstract class IdentifierCache implements Cachable {
 	abstract public void removeFromCacheByIdentifier(String inode);
 	
     abstract protected VersionInfo getVersionInfo(String identifier);    
+
+    abstract protected VersionInfo getVersionInfo(String identifier, Callable<VersionInfo> loader) throws DotDataException;
     
     abstract protected void addVersionInfoToCache(VersionInfo versionInfo);
     
     abstract protected void removeVersionInfoFromCache(String identifier);
     
     abstract protected ContentletVersionInfo getContentVersionInfo(String identifier, long lang);
+
+    abstract protected ContentletVersionInfo getContentVersionInfo(String identifier, long lang, Callable<ContentletVersionInfo> loader) throws DotDataException;
     
     abstract protected void addContentletVersionInfoToCache(ContentletVersionInfo contV);
     
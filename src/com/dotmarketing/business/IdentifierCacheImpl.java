@@ -7,10 +7,12 @@
 package com.dotmarketing.business;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.VersionInfo;
+import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.util.InodeUtils;
 import com.dotmarketing.util.Logger;
@@ -98,6 +100,40 @@ public class IdentifierCacheImpl extends IdentifierCache {
 
 
 
+	protected Identifier getIdentifier(final String identId, final Callable<Identifier> loader) throws DotDataException {
+		try {
+			return (Identifier) cache.get(getPrimaryGroup() + identId, getPrimaryGroup(), new Callable<Identifier>() {
+				public Identifier call() throws Exception {
+					Identifier id = loader.call();
+					if (id == null || !InodeUtils.isSet(id.getInode())) {
+						return null;
+					}
+					cache.put(getPrimaryGroup() + id.getHostId() + "-" + id.getURI(), id, getPrimaryGroup());
+					return id;
+				}
+			});
+		} catch (DotCacheException e) {
+			throw CacheLoadCoalescer.toDataException(e);
+		}
+	}
+
+	protected Identifier getIdentifier(final String URI, final String hostId, final Callable<Identifier> loader) throws DotDataException {
+		try {
+			return (Identifier) cache.get(getPrimaryGroup() + hostId + "-" + URI, getPrimaryGroup(), new Callable<Identifier>() {
+				public Identifier call() throws Exception {
+					Identifier id = loader.call();
+					if (id == null || !InodeUtils.isSet(id.getInode())) {
+						return null;
+					}
+					cache.put(getPrimaryGroup() + id.getInode(), id, getPrimaryGroup());
+					return id;
+				}
+			});
+		} catch (DotCacheException e) {
+			throw CacheLoadCoalescer.toDataException(e);
+		}
+	}
+
 	protected String getIdentifierFromInode(Versionable versionable)  {
 
 		if(versionable ==null || !InodeUtils.isSet(versionable.getInode())){
@@ -207,6 +243,27 @@ public class IdentifierCacheImpl extends IdentifierCache {
         return vi;
     }
 
+    @Override
+    protected ContentletVersionInfo getContentVersionInfo(String identifier, long lang, Callable<ContentletVersionInfo> loader) throws DotDataException {
+        try {
+            String key=identifier+"-lang:"+lang;
+            return (ContentletVersionInfo)cache.get(getVersionInfoGroup()+key, getVersionInfoGroup(), loader);
+        }
+        catch(DotCacheException ex) {
+            throw CacheLoadCoalescer.toDataException(ex);
+        }
+    }
+
+    @Override
+    protected VersionInfo getVersionInfo(String identifier, Callable<VersionInfo> loader) throws DotDataException {
+        try {
+            return (VersionInfo)cache.get(getVersionInfoGroup()+identifier, getVersionInfoGroup(), loader);
+        }
+        catch(DotCacheException ex) {
+            throw CacheLoadCoalescer.toDataException(ex);
+        }
+    }
+
     @Override
     protected void removeContentletVersionInfoToCache(String identifier, long lang) {
         String key=identifier+"-lang:"+lang;
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
@@ -131,13 +132,25 @@ public class IdentifierFactoryImpl extends IdentifierFactory {
 		return findByURI(host.getIdentifier(), uri);
 	}
 
-	protected Identifier findByURI(String hostId, String uri) throws DotHibernateException {
+	protected Identifier findByURI(final String hostId, final String uri) throws DotHibernateException {
 
-		Identifier identifier = ic.getIdentifier(uri, hostId);
-		if (identifier != null) {
-			return identifier;
+		Identifier identifier = null;
+		try {
+			identifier = ic.getIdentifier(uri, hostId, new Callable<Identifier>() {
+				public Identifier call() throws Exception {
+					return loadByURIFromDb(hostId, uri);
+				}
+			});
+		} catch (DotHibernateException e) {
+			throw e;
+		} catch (DotDataException e) {
+			throw new DotHibernateException(e.getMessage(), e);
 		}
 
+		return identifier != null ? identifier : new Identifier();
+	}
+
+	private Identifier loadByURIFromDb(String hostId, String uri) throws DotHibernateException {
 		HibernateUtil dh = new HibernateUtil(Identifier.class);
 		String parentPath = uri.substring(0, uri.lastIndexOf("/") + 1);
 		String assetName = uri.substring(uri.lastIndexOf("/") + 1);
@@ -146,10 +159,7 @@ public class IdentifierFactoryImpl extends IdentifierFactory {
 		dh.setParam(parentPath);
 		dh.setParam(assetName);
 		dh.setParam(hostId);
-		identifier = (Identifier) dh.load();
-
-		ic.addIdentifierToCache(identifier);
-		return identifier;
+		return (Identifier) dh.load();
 	}
 	
 	protected List<Identifier> findByParentPath(String hostId, String parent_path) throws DotHibernateException {
@@ -401,18 +411,19 @@ public class IdentifierFactoryImpl extends IdentifierFactory {
 
 	// http://jira.dotmarketing.net/browse/DOTCMS-4970
 
-	protected Identifier find(String x) throws DotStateException, DotDataException {
+	protected Identifier find(final String x) throws DotStateException, DotDataException {
 
-		Identifier id = ic.getIdentifier(x);
-		if (id != null && UtilMethods.isSet(id.getInode())) {
-			return id;
+		if (x == null) {
+			throw new DotStateException("identifier is null");
 		}
 
-		id = loadFromDb(x);
-
-		ic.addIdentifierToCache(id);
+		Identifier id = ic.getIdentifier(x, new Callable<Identifier>() {
+			public Identifier call() throws Exception {
+				return loadFromDb(x);
+			}
+		});
 
-		return id;
+		return id != null ? id : new Identifier();
 	}
 
 	protected Identifier saveIdentifier(Identifier identifier) throws DotDataException {
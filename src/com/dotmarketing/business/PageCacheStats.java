@@ -0,0 +1,105 @@
+package com.dotmarketing.business;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and stale served counters of the page cache, kept per page identifier for
+ * at most maxPages pages. Pages over that only count in the totals.
+ */
+public class PageCacheStats implements PageCacheStatsMBean {
+
+	private static final int HIT = 0;
+	private static final int MISS = 1;
+	private static final int STALE = 2;
+
+	private final ConcurrentHashMap<String, AtomicLong[]> pages = new ConcurrentHashMap<String, AtomicLong[]>();
+	private final AtomicLong[] totals = newCounters();
+	private final int maxPages;
+
+	public PageCacheStats(int maxPages) {
+		this.maxPages = maxPages;
+	}
+
+	public void hit(String page) {
+		count(page, HIT);
+	}
+
+	public void miss(String page) {
+		count(page, MISS);
+	}
+
+	public void staleServed(String page) {
+		count(page, STALE);
+	}
+
+	public long getHits() {
+		return totals[HIT].get();
+	}
+
+	public long getMisses() {
+		return totals[MISS].get();
+	}
+
+	public long getStaleServed() {
+		return totals[STALE].get();
+	}
+
+	public long getHits(String page) {
+		AtomicLong[] counters = pages.get(page);
+		return (counters == null) ? 0 : counters[HIT].get();
+	}
+
+	public long getMisses(String page) {
+		AtomicLong[] counters = pages.get(page);
+		return (counters == null) ? 0 : counters[MISS].get();
+	}
+
+	public long getStaleServed(String page) {
+		AtomicLong[] counters = pages.get(page);
+		return (counters == null) ? 0 : counters[STALE].get();
+	}
+
+	public String[] getPageStats() {
+		List<String> ret = new ArrayList<String>();
+		for (Map.Entry<String, AtomicLong[]> entry : pages.entrySet()) {
+			AtomicLong[] counters = entry.getValue();
+			ret.add(entry.getKey() + " hits:" + counters[HIT].get() + " misses:" + counters[MISS].get()
+					+ " stale:" + counters[STALE].get());
+		}
+		return ret.toArray(new String[ret.size()]);
+	}
+
+	public void reset() {
+		pages.clear();
+		for (AtomicLong counter : totals) {
+			counter.set(0);
+		}
+	}
+
+	private void count(String page, int counter) {
+		totals[counter].incrementAndGet();
+		if (page == null) {
+			return;
+		}
+		AtomicLong[] counters = pages.get(page);
+		if (counters == null) {
+			if (pages.size() >= maxPages) {
+				return;
+			}
+			AtomicLong[] existing = pages.putIfAbsent(page, counters = newCounters());
+			if (existing != null) {
+				counters = existing;
+			}
+		}
+		counters[counter].incrementAndGet();
+	}
+
+	private static AtomicLong[] newCounters() {
+		return new AtomicLong[] { new AtomicLong(), new AtomicLong(), new AtomicLong() };
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.dotmarketing.business;
+
+public interface PageCacheStatsMBean {
+
+	/**
+	 * Requests served a fresh page from the page cache
+	 */
+	public abstract long getHits();
+
+	/**
+	 * Requests that rendered the page
+	 */
+	public abstract long getMisses();
+
+	/**
+	 * Requests served an expired page while another request was refreshing it
+	 */
+	public abstract long getStaleServed();
+
+	/**
+	 * hits, misses and stale served per page identifier
+	 */
+	public abstract String[] getPageStats();
+
+	public abstract void reset();
+
+}
@@ -9,6 +9,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 
@@ -1175,6 +1176,18 @@ public class PermissionBitFactoryImpl extends PermissionFactory {
         }
     }
 
+	/**
+	 * Returns the cached permissions of the permissionable. On a miss only one thread
+	 * loads them from db while the others wait for the result
+	 */
+	private List<Permission> getPermissionsFromCache(final Permissionable permissionable) throws DotDataException {
+		return permissionCache.getPermissionsFromCache(permissionable.getPermissionId(), new Callable<List<Permission>>() {
+			public List<Permission> call() throws Exception {
+				return loadPermissions(permissionable);
+			}
+		});
+	}
+
 	/* (non-Javadoc)
 	 * @see com.dotmarketing.business.PermissionFactory#getPermissions(com.dotmarketing.beans.Inode)
 	 */
@@ -1184,19 +1197,8 @@ public class PermissionBitFactoryImpl extends PermissionFactory {
 
 		if (!InodeUtils.isSet(permissionable.getPermissionId())) return new ArrayList<Permission>();
 
-		List<Permission> bitPermissionsList = permissionCache.getPermissionsFromCache(permissionable.getPermissionId());
-
 		//No permissions in cache have to look for individual permissions or inherited permissions
-		if(bitPermissionsList == null) {
-			synchronized(permissionable.getPermissionId().intern()){
-				//Checking individual permissions
-				bitPermissionsList = permissionCache.getPermissionsFromCache(permissionable.getPermissionId());
-				if(bitPermissionsList == null) {
-					bitPermissionsList = loadPermissions(permissionable);
-					permissionCache.addToPermissionCache(permissionable.getPermissionId(), bitPermissionsList);
-				}
-			}
-		}
+		List<Permission> bitPermissionsList = getPermissionsFromCache(permissionable);
 
 		bitPermissionsList = filterOnlyNonInheritablePermissions(bitPermissionsList, permissionable.getPermissionId());
 
@@ -1218,21 +1220,13 @@ public class PermissionBitFactoryImpl extends PermissionFactory {
 
 		List<Permission> bitPermissionsList = null;
 
-		if(!forceLoadFromDB)
-			bitPermissionsList = permissionCache.getPermissionsFromCache(permissionable.getPermissionId());
-
-		//No permissions in cache have to look for individual permissions or inherited permissions
-		if(bitPermissionsList == null) {
-			synchronized(permissionable.getPermissionId().intern()){
-
-				if(!forceLoadFromDB)
-					bitPermissionsList = permissionCache.getPermissionsFromCache(permissionable.getPermissionId());
-				//Checking individual permissions
-				if(bitPermissionsList == null) {
-					bitPermissionsList = loadPermissions(permissionable);
-					permissionCache.addToPermissionCache(permissionable.getPermissionId(), bitPermissionsList);
-				}
-			}
+		if(forceLoadFromDB) {
+			bitPermissionsList = loadPermissions(permissionable);
+			permissionCache.addToPermissionCache(permissionable.getPermissionId(), bitPermissionsList);
+		}
+		else {
+			//No permissions in cache have to look for individual permissions or inherited permissions
+			bitPermissionsList = getPermissionsFromCache(permissionable);
 		}
 
 		bitPermissionsList = filterOnlyNonInheritablePermissions(bitPermissionsList, permissionable.getPermissionId());
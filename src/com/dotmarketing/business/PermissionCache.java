@@ -1,8 +1,10 @@
 package com.dotmarketing.business;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.dotmarketing.beans.Permission;
+import com.dotmarketing.exception.DotDataException;
 
 //This interface should have default package access
 public abstract class PermissionCache implements Cachable{
@@ -12,6 +14,11 @@ public abstract class PermissionCache implements Cachable{
 
 	abstract protected List<Permission> getPermissionsFromCache(String key);
 
+	/**
+	 * Returns the cached permissions, running the loader once per key on a miss
+	 */
+	abstract protected List<Permission> getPermissionsFromCache(String key, Callable<List<Permission>> loader) throws DotDataException;
+
 	abstract public void clearCache();
 
 	abstract protected void remove(String key);
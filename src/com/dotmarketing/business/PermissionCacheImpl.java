@@ -7,8 +7,10 @@
 package com.dotmarketing.business;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.dotmarketing.beans.Permission;
+import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.util.Logger;
 
 /**
@@ -57,6 +59,19 @@ public class PermissionCacheImpl extends PermissionCache {
         return perms;
     }
 
+    /* (non-Javadoc)
+	 * @see com.dotmarketing.business.PermissionCache#getPermissionsFromCache(java.lang.String, java.util.concurrent.Callable)
+	 */
+    @SuppressWarnings("unchecked")
+	protected List<Permission> getPermissionsFromCache(String key, Callable<List<Permission>> loader) throws DotDataException {
+    	key = primaryGroup + key;
+    	try{
+    		return (List<Permission>) cache.get(key, primaryGroup, loader);
+    	}catch (DotCacheException e) {
+			throw CacheLoadCoalescer.toDataException(e);
+		}
+    }
+
     /* (non-Javadoc)
 	 * @see com.dotmarketing.business.PermissionCache#clearCache()
 	 */
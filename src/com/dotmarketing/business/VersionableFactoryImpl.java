@@ -3,6 +3,7 @@ package com.dotmarketing.business;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.beanutils.BeanUtils;
 
@@ -114,29 +115,31 @@ public class VersionableFactoryImpl extends VersionableFactory {
 	}
 
     @Override
-    protected VersionInfo getVersionInfo(String identifier) throws DotDataException,
+    protected VersionInfo getVersionInfo(final String identifier) throws DotDataException,
             DotStateException {
-        VersionInfo vi = icache.getVersionInfo(identifier);
-        if(vi==null || vi.getWorkingInode().equals("NOTFOUND")) {
-            Identifier ident = APILocator.getIdentifierAPI().find(identifier);
-            if(ident==null || !UtilMethods.isSet(ident.getId()))
-                return null;
-            Class clazz = UtilMethods.getVersionInfoType(ident.getAssetType());
-            HibernateUtil dh = new HibernateUtil(clazz);
-            dh.setQuery("from "+clazz.getName()+" where identifier=?");
-            dh.setParam(identifier);
-            Logger.debug(this.getClass(), "getVersionInfo query: "+dh.getQuery());
-            vi=(VersionInfo)dh.load(); 
-            if(!UtilMethods.isSet(vi.getIdentifier())) {
-            	vi.setIdentifier(identifier);
-            	vi.setWorkingInode("NOTFOUND");
+        VersionInfo vi = icache.getVersionInfo(identifier, new Callable<VersionInfo>() {
+            public VersionInfo call() throws Exception {
+                return loadVersionInfo(identifier);
             }
-            icache.addVersionInfoToCache(vi);
-        }
-        if(vi.getWorkingInode().equals("NOTFOUND"))
+        });
+        return vi;
+    }
+
+    /**
+     * Loads the versionInfo from db. Returns null, so nothing gets cached, if the identifier
+     * doesn't exists or has no versionInfo yet
+     */
+    private VersionInfo loadVersionInfo(String identifier) throws DotDataException {
+        Identifier ident = APILocator.getIdentifierAPI().find(identifier);
+        if(ident==null || !UtilMethods.isSet(ident.getId()))
             return null;
-        else
-        	return vi;
+        Class clazz = UtilMethods.getVersionInfoType(ident.getAssetType());
+        HibernateUtil dh = new HibernateUtil(clazz);
+        dh.setQuery("from "+clazz.getName()+" where identifier=?");
+        dh.setParam(identifier);
+        Logger.debug(this.getClass(), "getVersionInfo query: "+dh.getQuery());
+        VersionInfo vi=(VersionInfo)dh.load(); 
+        return UtilMethods.isSet(vi.getIdentifier()) ? vi : null;
     }
 
 	/**
@@ -199,19 +202,19 @@ public class VersionableFactoryImpl extends VersionableFactory {
     }
 
     @Override
-    protected ContentletVersionInfo getContentletVersionInfo(String identifier, long lang) throws DotDataException, DotStateException {
-        ContentletVersionInfo contv = icache.getContentVersionInfo(identifier, lang);
-        if(contv==null) {
-            HibernateUtil dh = new HibernateUtil(ContentletVersionInfo.class);
-            dh.setQuery("from "+ContentletVersionInfo.class.getName()+" where identifier=? and lang=?");
-            dh.setParam(identifier);
-            dh.setParam(lang);
-            Logger.debug(this.getClass(), "getContentletVersionInfo query: "+dh.getQuery());
-            contv = (ContentletVersionInfo)dh.load();
-            if(UtilMethods.isSet(contv.getIdentifier()))
-                icache.addContentletVersionInfoToCache(contv);
-        }
-        return contv;
+    protected ContentletVersionInfo getContentletVersionInfo(final String identifier, final long lang) throws DotDataException, DotStateException {
+        ContentletVersionInfo contv = icache.getContentVersionInfo(identifier, lang, new Callable<ContentletVersionInfo>() {
+            public ContentletVersionInfo call() throws Exception {
+                HibernateUtil dh = new HibernateUtil(ContentletVersionInfo.class);
+                dh.setQuery("from "+ContentletVersionInfo.class.getName()+" where identifier=? and lang=?");
+                dh.setParam(identifier);
+                dh.setParam(lang);
+                Logger.debug(VersionableFactoryImpl.class, "getContentletVersionInfo query: "+dh.getQuery());
+                ContentletVersionInfo loaded = (ContentletVersionInfo)dh.load();
+                return UtilMethods.isSet(loaded.getIdentifier()) ? loaded : null;
+            }
+        });
+        return contv!=null ? contv : new ContentletVersionInfo();
     }
 
     @Override
@@ -0,0 +1,283 @@
+package com.dotmarketing.business.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dotmarketing.business.DotCacheAdministrator;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Buffers the cache invalidations that have to be sent to the other servers of the cluster
+ * for a few milliseconds (CACHE_INVALIDATION_BATCH_DELAY, default 10) and ships them as
+ * batches of at most CACHE_INVALIDATION_BATCH_SIZE (default 500) entries.
+ *
+ * Pending invalidations are de-duplicated, a group flush drops every pending key of that
+ * group and a full flush drops everything else, as the receiving servers run them after
+ * the local invalidations they cover.
+ *
+ * Batches are encoded as a header line with the send time followed by one key:group entry
+ * per line. A message without the header is a single legacy key:group entry.
+ */
+public class CacheInvalidationBus implements CacheInvalidationBusMBean {
+
+	/**
+	 * Ships a batch of key:group invalidations to the other servers
+	 */
+	public interface Transport {
+		public void send(List<String> invalidations) throws Exception;
+	}
+
+	public static final String BATCH_HEADER = "#BATCH:";
+	private static final String ENTRY_SEPARATOR = "\n";
+	private static final String FLUSH_KEY = "0";
+
+	private final Transport transport;
+	private final long delay;
+	private final int batchSize;
+	private final ScheduledExecutorService scheduler;
+
+	// pending invalidations, guarded by lock
+	private final Object lock = new Object();
+	private final Map<String, Set<String>> pendingKeys = new LinkedHashMap<String, Set<String>>();
+	private final Set<String> flushedGroups = new LinkedHashSet<String>();
+	private boolean flushAllPending = false;
+	private boolean flushScheduled = false;
+	private int pendingCount = 0;
+	private long oldestPending = 0;
+
+	private final AtomicLong messagesSent = new AtomicLong();
+	private final AtomicLong invalidationsSent = new AtomicLong();
+	private final AtomicLong invalidationsCoalesced = new AtomicLong();
+	private final AtomicLong sendFailures = new AtomicLong();
+	private final AtomicLong sendLagMillis = new AtomicLong();
+	private final AtomicLong messagesReceived = new AtomicLong();
+	private final AtomicLong receiveLagMillis = new AtomicLong();
+
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			flush();
+		}
+	};
+
+	public CacheInvalidationBus(Transport transport) {
+		this.transport = transport;
+		this.delay = Config.getIntProperty("CACHE_INVALIDATION_BATCH_DELAY", 10);
+		this.batchSize = Math.max(1, Config.getIntProperty("CACHE_INVALIDATION_BATCH_SIZE", 500));
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "CacheInvalidationBus");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Queues the invalidation of a key, a key of 0 flushes the whole group
+	 * and a 0 key on the root group flushes everything
+	 * @param key
+	 * @param group
+	 */
+	public void invalidate(String key, String group) {
+		if (key == null || group == null) {
+			return;
+		}
+		boolean flushNow;
+		boolean schedule;
+		synchronized (lock) {
+			if (pendingCount == 0) {
+				oldestPending = System.currentTimeMillis();
+			}
+			if (flushAllPending) {
+				invalidationsCoalesced.incrementAndGet();
+			} else if (FLUSH_KEY.equals(key) && DotCacheAdministrator.ROOT_GOUP.equalsIgnoreCase(group)) {
+				invalidationsCoalesced.addAndGet(pendingCount);
+				pendingKeys.clear();
+				flushedGroups.clear();
+				flushAllPending = true;
+				pendingCount = 1;
+			} else if (FLUSH_KEY.equals(key)) {
+				if (flushedGroups.add(group)) {
+					pendingCount++;
+					Set<String> keys = pendingKeys.remove(group);
+					if (keys != null) {
+						invalidationsCoalesced.addAndGet(keys.size());
+						pendingCount -= keys.size();
+					}
+				} else {
+					invalidationsCoalesced.incrementAndGet();
+				}
+			} else if (flushedGroups.contains(group)) {
+				invalidationsCoalesced.incrementAndGet();
+			} else {
+				Set<String> keys = pendingKeys.get(group);
+				if (keys == null) {
+					keys = new LinkedHashSet<String>();
+					pendingKeys.put(group, keys);
+				}
+				if (keys.add(key)) {
+					pendingCount++;
+				} else {
+					invalidationsCoalesced.incrementAndGet();
+				}
+			}
+			flushNow = pendingCount >= batchSize;
+			schedule = !flushNow && !flushScheduled;
+			if (schedule) {
+				flushScheduled = true;
+			}
+		}
+		try {
+			if (flushNow) {
+				scheduler.execute(flushTask);
+			} else if (schedule) {
+				scheduler.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+			}
+		} catch (RejectedExecutionException e) {
+			// the bus has been shutdown, ship it from the calling thread
+			flush();
+		}
+	}
+
+	/**
+	 * Ships everything that is pending
+	 */
+	public void flush() {
+		List<String> batch = new ArrayList<String>();
+		long queuedAt;
+		synchronized (lock) {
+			flushScheduled = false;
+			if (pendingCount == 0) {
+				return;
+			}
+			queuedAt = oldestPending;
+			if (flushAllPending) {
+				batch.add(FLUSH_KEY + ":" + DotCacheAdministrator.ROOT_GOUP);
+			} else {
+				for (String group : flushedGroups) {
+					batch.add(FLUSH_KEY + ":" + group);
+				}
+				for (Map.Entry<String, Set<String>> entry : pendingKeys.entrySet()) {
+					for (String key : entry.getValue()) {
+						batch.add(key + ":" + entry.getKey());
+					}
+				}
+			}
+			pendingKeys.clear();
+			flushedGroups.clear();
+			flushAllPending = false;
+			pendingCount = 0;
+		}
+
+		for (int from = 0; from < batch.size(); from += batchSize) {
+			List<String> chunk = batch.subList(from, Math.min(batch.size(), from + batchSize));
+			try {
+				transport.send(chunk);
+				messagesSent.incrementAndGet();
+				invalidationsSent.addAndGet(chunk.size());
+			} catch (Exception e) {
+				sendFailures.incrementAndGet();
+				Logger.error(CacheInvalidationBus.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
+			}
+		}
+		sendLagMillis.addAndGet(System.currentTimeMillis() - queuedAt);
+	}
+
+	/**
+	 * Ships what is pending and stops the bus
+	 */
+	public void shutdown() {
+		scheduler.shutdown();
+		flush();
+	}
+
+	/**
+	 * Encodes a batch as a single message
+	 * @param invalidations
+	 * @return
+	 */
+	public static String encode(List<String> invalidations) {
+		StringBuilder sb = new StringBuilder(BATCH_HEADER).append(System.currentTimeMillis());
+		for (String invalidation : invalidations) {
+			sb.append(ENTRY_SEPARATOR).append(invalidation);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Decodes a received message into its key:group entries
+	 * and keeps track of the receiving lag
+	 * @param message
+	 * @return
+	 */
+	public List<String> receive(String message) {
+		if (message == null) {
+			return Collections.emptyList();
+		}
+		if (!message.startsWith(BATCH_HEADER)) {
+			return Collections.singletonList(message);
+		}
+		String[] lines = message.split(ENTRY_SEPARATOR);
+		try {
+			long sentAt = Long.parseLong(lines[0].substring(BATCH_HEADER.length()));
+			messagesReceived.incrementAndGet();
+			receiveLagMillis.addAndGet(Math.max(0, System.currentTimeMillis() - sentAt));
+		} catch (NumberFormatException e) {
+			Logger.debug(CacheInvalidationBus.class, "Invalid batch header " + lines[0]);
+		}
+		List<String> entries = new ArrayList<String>(lines.length - 1);
+		for (int i = 1; i < lines.length; i++) {
+			entries.add(lines[i]);
+		}
+		return entries;
+	}
+
+	public long getMessagesSent() {
+		return messagesSent.get();
+	}
+
+	public long getInvalidationsSent() {
+		return invalidationsSent.get();
+	}
+
+	public long getInvalidationsCoalesced() {
+		return invalidationsCoalesced.get();
+	}
+
+	public long getSendFailures() {
+		return sendFailures.get();
+	}
+
+	public long getAverageSendLagMillis() {
+		long sent = messagesSent.get() + sendFailures.get();
+		return sent == 0 ? 0 : sendLagMillis.get() / sent;
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived.get();
+	}
+
+	public long getAverageReceiveLagMillis() {
+		long received = messagesReceived.get();
+		return received == 0 ? 0 : receiveLagMillis.get() / received;
+	}
+
+	public int getPendingInvalidations() {
+		synchronized (lock) {
+			return pendingCount;
+		}
+	}
+
+}
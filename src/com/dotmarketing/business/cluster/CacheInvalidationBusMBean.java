@@ -0,0 +1,47 @@
+package com.dotmarketing.business.cluster;
+
+public interface CacheInvalidationBusMBean {
+
+	/**
+	 * Number of batches shipped to the cluster
+	 */
+	public abstract long getMessagesSent();
+
+	/**
+	 * Number of key:group invalidations shipped to the cluster
+	 */
+	public abstract long getInvalidationsSent();
+
+	/**
+	 * Number of invalidations that were not shipped because they were duplicated
+	 * or covered by a group or full flush in the same batch
+	 */
+	public abstract long getInvalidationsCoalesced();
+
+	/**
+	 * Number of batches that could not be shipped
+	 */
+	public abstract long getSendFailures();
+
+	/**
+	 * Average time in millis an invalidation waited in this server before being shipped
+	 */
+	public abstract long getAverageSendLagMillis();
+
+	/**
+	 * Number of batches received from the cluster
+	 */
+	public abstract long getMessagesReceived();
+
+	/**
+	 * Average time in millis between a batch being shipped by another server and
+	 * being received here. Depends on the server clocks being in sync
+	 */
+	public abstract long getAverageReceiveLagMillis();
+
+	/**
+	 * Invalidations waiting to be shipped
+	 */
+	public abstract int getPendingInvalidations();
+
+}
@@ -0,0 +1,306 @@
+package com.dotmarketing.cache;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.apache.velocity.context.Context;
+
+import com.dotmarketing.beans.MultiTree;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.business.DotCacheAdministrator;
+import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.factories.MultiTreeFactory;
+import com.dotmarketing.portlets.containers.model.Container;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+import com.dotmarketing.util.WebKeys;
+import com.google.common.hash.Hashing;
+import com.liferay.portal.model.User;
+
+/**
+ * Caches the html of live containers as rendered on a page, so a page can be assembled
+ * from the fragments that did not change instead of rendering every container again.
+ * Turned on with CONTAINER_RENDER_CACHE (default false).
+ *
+ * A fragment is keyed by container, page, the contentlet list the page passes to the
+ * container, language, the logged in front end user and the values of the declared vary-by
+ * set. The user is always part of the key as the container checks the read permission of
+ * every contentlet for the visitor, anonymous visitors share their fragments. The vary-by set is read
+ * from CONTAINER_RENDER_CACHE_VARY_BY.[container identifier] or CONTAINER_RENDER_CACHE_VARY_BY,
+ * a comma separated list of <code>param:name</code>, <code>header:name</code>,
+ * <code>cookie:name</code>, <code>session:name</code> and <code>querystring</code>, or
+ * <code>nocache</code> to render the container every time.
+ *
+ * A cached fragment is only its html, the #set directives of the container code do not
+ * run when it is served, so the page can't rely on variables set by a cached container.
+ *
+ * Keys also hold a token of the container and one of the page/container pair. Publishing a
+ * container or changing one of its structures drops the container token, publishing a
+ * contentlet drops the tokens of the page/container pairs its MultiTree entries point to,
+ * so exactly those fragments are rendered again. The old fragments age out of the region.
+ *
+ * Containers that pick their content themselves, with a lucene query or by pulling it in
+ * their code ($dotcontent, #pullContent...), have no MultiTree entries to be invalidated
+ * through, so they are never cached.
+ *
+ * @author dotCMS
+ */
+public class ContainerRenderCache {
+
+	private static final String NO_CACHE = "nocache";
+	// code that pulls content, lowercased
+	private static final String[] PULLS = { "dotcontent", "#pull", "#{pull" };
+	private static final boolean enabled = Config.getBooleanProperty("CONTAINER_RENDER_CACHE", false);
+	private static final Random random = new Random();
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Builds the fragment key of a live container rendered with the given context
+	 * @param containerIdentifier
+	 * @param ctx
+	 * @param request
+	 * @return the key or null if the container can't be cached in this request
+	 */
+	public static String getKey(String containerIdentifier, Context ctx, HttpServletRequest request) {
+		if (!enabled || !UtilMethods.isSet(containerIdentifier) || ctx == null || request == null) {
+			return null;
+		}
+		if (Boolean.TRUE.equals(ctx.get("EDIT_MODE")) || Boolean.TRUE.equals(ctx.get("PREVIEW_MODE"))) {
+			return null;
+		}
+		HttpSession session = request.getSession(false);
+		if (session != null && session.getAttribute("tm_date") != null) {
+			return null;
+		}
+		Object pageId = ctx.get("HTMLPAGE_IDENTIFIER");
+		if (pageId == null) {
+			return null;
+		}
+		String varyBy = getVaryBy(containerIdentifier);
+		if (NO_CACHE.equalsIgnoreCase(varyBy)) {
+			return null;
+		}
+
+		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
+		if (pullsContent(cache, containerIdentifier)) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder(containerIdentifier);
+		key.append(':').append(pageId);
+		key.append(':').append(getListVersion(ctx.get("contentletList" + containerIdentifier)));
+		key.append(':').append(ctx.get("language"));
+		key.append(':').append(getUserId(request));
+		key.append(':').append(getToken(cache, getContainerTokenKey(containerIdentifier)));
+		key.append(':').append(getToken(cache, getPageTokenKey(pageId.toString(), containerIdentifier)));
+		if (UtilMethods.isSet(varyBy)) {
+			key.append(':').append(Hashing.md5().hashString(getVaryByValues(varyBy, request)));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the cached fragment, rendering it through the loader on a miss. Concurrent
+	 * requests for the same fragment wait for a single render.
+	 * @param key
+	 * @param loader renders the container
+	 * @return
+	 * @throws Exception thrown by the loader
+	 */
+	public static String get(String key, Callable<String> loader) throws Exception {
+		try {
+			return (String) CacheLocator.getCacheAdministrator().get(key, getPrimaryGroup(), loader);
+		} catch (DotCacheException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Drops every fragment of the container
+	 * @param containerIdentifier
+	 */
+	public static void removeContainer(String containerIdentifier) {
+		if (!enabled || containerIdentifier == null) {
+			return;
+		}
+		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
+		cache.remove(getContainerTokenKey(containerIdentifier), getPrimaryGroup());
+		cache.remove(getPullsContentKey(containerIdentifier), getPrimaryGroup());
+	}
+
+	/**
+	 * Drops the fragments of the containers the contentlet was added to
+	 * @param contentletIdentifier
+	 */
+	public static void removeContentlet(String contentletIdentifier) {
+		if (!enabled || contentletIdentifier == null) {
+			return;
+		}
+		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
+		List<MultiTree> trees = MultiTreeFactory.getMultiTreeByChild(contentletIdentifier);
+		for (MultiTree tree : trees) {
+			cache.remove(getPageTokenKey(tree.getParent1(), tree.getParent2()), getPrimaryGroup());
+		}
+	}
+
+	/**
+	 * Drops the fragments of the containers that hold contentlets of the structure
+	 * @param structureInode
+	 */
+	public static void removeStructure(String structureInode) {
+		if (!enabled || structureInode == null) {
+			return;
+		}
+		try {
+			List<Container> containers = APILocator.getContainerAPI().findContainersForStructure(structureInode);
+			for (Container container : containers) {
+				removeContainer(container.getIdentifier());
+			}
+		} catch (DotDataException e) {
+			Logger.warn(ContainerRenderCache.class, "Unable to find the containers of structure " + structureInode + ", clearing the cache", e);
+			clearCache();
+		}
+	}
+
+	public static void clearCache() {
+		CacheLocator.getCacheAdministrator().flushGroup(getPrimaryGroup());
+	}
+
+	public static String[] getGroups() {
+		String[] groups = { getPrimaryGroup() };
+		return groups;
+	}
+
+	public static String getPrimaryGroup() {
+		return "ContainerRenderCache";
+	}
+
+	private static String getVaryBy(String containerIdentifier) {
+		return Config.getStringProperty("CONTAINER_RENDER_CACHE_VARY_BY." + containerIdentifier,
+				Config.getStringProperty("CONTAINER_RENDER_CACHE_VARY_BY", ""));
+	}
+
+	private static String getVaryByValues(String varyBy, HttpServletRequest request) {
+		StringBuilder sb = new StringBuilder();
+		for (String item : varyBy.split(",")) {
+			item = item.trim();
+			String name = (item.indexOf(':') > -1) ? item.substring(item.indexOf(':') + 1) : null;
+			Object value = null;
+			if (item.startsWith("param:")) {
+				value = request.getParameter(name);
+			} else if (item.startsWith("header:")) {
+				value = request.getHeader(name);
+			} else if (item.startsWith("cookie:")) {
+				Cookie[] cookies = request.getCookies();
+				if (cookies != null) {
+					for (Cookie cookie : cookies) {
+						if (cookie.getName().equals(name)) {
+							value = cookie.getValue();
+							break;
+						}
+					}
+				}
+			} else if (item.startsWith("session:")) {
+				HttpSession session = request.getSession(false);
+				value = (session == null) ? null : session.getAttribute(name);
+			} else if ("querystring".equals(item)) {
+				value = request.getQueryString();
+			} else if ("user".equals(item)) {
+				value = getUserId(request);
+			}
+			sb.append(item).append('=').append(value).append('&');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the id of the logged in front end user, empty for anonymous visitors
+	 */
+	private static String getUserId(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		User user = (session == null) ? null : (User) session.getAttribute(WebKeys.CMS_USER);
+		return (user == null) ? "" : user.getUserId();
+	}
+
+	/**
+	 * Whether the live container selects its own content, remembered until the container
+	 * is published again. Containers that can't be loaded are not cached either
+	 */
+	private static boolean pullsContent(DotCacheAdministrator cache, final String containerIdentifier) {
+		try {
+			Object pulls = cache.get(getPullsContentKey(containerIdentifier), getPrimaryGroup(), new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					Container container = APILocator.getContainerAPI().getLiveContainerById(containerIdentifier,
+							APILocator.getUserAPI().getSystemUser(), false);
+					if (container == null || !UtilMethods.isSet(container.getIdentifier())) {
+						return null;
+					}
+					if (UtilMethods.isSet(container.getLuceneQuery())) {
+						return Boolean.TRUE;
+					}
+					String code = (container.getPreLoop() + container.getCode() + container.getPostLoop()).toLowerCase();
+					for (String pull : PULLS) {
+						if (code.indexOf(pull) > -1) {
+							return Boolean.TRUE;
+						}
+					}
+					return Boolean.FALSE;
+				}
+			});
+			return !Boolean.FALSE.equals(pulls);
+		} catch (DotCacheException e) {
+			Logger.debug(ContainerRenderCache.class, "Unable to load container " + containerIdentifier, e);
+			return true;
+		}
+	}
+
+	private static String getListVersion(Object contentletList) {
+		if (!(contentletList instanceof List)) {
+			return "0";
+		}
+		List<?> list = (List<?>) contentletList;
+		return list.size() + "-" + Integer.toHexString(list.hashCode());
+	}
+
+	/**
+	 * Tokens are created on demand, dropping one makes the fragments built with it unreachable
+	 */
+	private static String getToken(DotCacheAdministrator cache, String tokenKey) {
+		String token = null;
+		try {
+			token = (String) cache.get(tokenKey, getPrimaryGroup());
+		} catch (DotCacheException e) {
+			Logger.debug(ContainerRenderCache.class, "Cache Entry not found", e);
+		}
+		if (token == null) {
+			token = Long.toHexString(random.nextLong());
+			cache.put(tokenKey, token, getPrimaryGroup());
+		}
+		return token;
+	}
+
+	private static String getPullsContentKey(String containerIdentifier) {
+		return "d:" + containerIdentifier;
+	}
+
+	private static String getContainerTokenKey(String containerIdentifier) {
+		return "c:" + containerIdentifier;
+	}
+
+	private static String getPageTokenKey(String pageIdentifier, String containerIdentifier) {
+		return "p:" + pageIdentifier + ":" + containerIdentifier;
+	}
+}
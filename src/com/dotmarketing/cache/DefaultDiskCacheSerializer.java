@@ -0,0 +1,79 @@
+package com.dotmarketing.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.dotmarketing.util.Config;
+
+/**
+ * Default {@link DiskCacheSerializer}. Strings and byte arrays, the bulk of the velocity
+ * and page cache entries, are stored as raw bytes behind a one byte type tag, everything
+ * else goes through java serialization (deflated when USE_CACHE_COMPRESSION is set).
+ */
+public class DefaultDiskCacheSerializer implements DiskCacheSerializer {
+
+	private static final byte TYPE_OBJECT = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_BYTES = 2;
+	private static final byte TYPE_OBJECT_DEFLATED = 3;
+
+	private final boolean compress = Config.getBooleanProperty("USE_CACHE_COMPRESSION", false);
+
+	public byte[] serialize(Object value) throws Exception {
+		if (value instanceof String) {
+			return tag(TYPE_STRING, ((String) value).getBytes("UTF-8"));
+		}
+		if (value instanceof byte[]) {
+			return tag(TYPE_BYTES, (byte[]) value);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		bytes.write(compress ? TYPE_OBJECT_DEFLATED : TYPE_OBJECT);
+		OutputStream out = compress ? new DeflaterOutputStream(bytes) : bytes;
+		ObjectOutputStream output = new ObjectOutputStream(out);
+		output.writeObject(value);
+		output.close();
+		return bytes.toByteArray();
+	}
+
+	public Object deserialize(byte[] data) throws Exception {
+		if (data == null || data.length == 0) {
+			return null;
+		}
+		switch (data[0]) {
+		case TYPE_STRING:
+			return new String(data, 1, data.length - 1, "UTF-8");
+		case TYPE_BYTES:
+			byte[] value = new byte[data.length - 1];
+			System.arraycopy(data, 1, value, 0, value.length);
+			return value;
+		case TYPE_OBJECT:
+		case TYPE_OBJECT_DEFLATED:
+			InputStream in = new ByteArrayInputStream(data, 1, data.length - 1);
+			if (data[0] == TYPE_OBJECT_DEFLATED) {
+				in = new InflaterInputStream(in);
+			}
+			ObjectInputStream input = new ObjectInputStream(in);
+			try {
+				return input.readObject();
+			} finally {
+				input.close();
+			}
+		default:
+			throw new IllegalArgumentException("Unknown disk cache entry type " + data[0]);
+		}
+	}
+
+	private byte[] tag(byte type, byte[] data) {
+		byte[] ret = new byte[data.length + 1];
+		ret[0] = type;
+		System.arraycopy(data, 0, ret, 1, data.length);
+		return ret;
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.dotmarketing.cache;
+
+import java.util.Set;
+
+/**
+ * Disk tier used by the cache administrator behind the in memory regions.
+ * Entries are addressed by group (the cache region) and key, both already lowercased
+ * by the caller.
+ */
+public interface DiskCache {
+
+	/**
+	 * Returns the stored value or null if it is not on disk
+	 * @param group
+	 * @param key
+	 * @return
+	 * @throws Exception
+	 */
+	public Object get(String group, String key) throws Exception;
+
+	/**
+	 * Stores the value, replacing any previous value of the key
+	 * @param group
+	 * @param key
+	 * @param value
+	 * @throws Exception
+	 */
+	public void put(String group, String key, Object value) throws Exception;
+
+	public void remove(String group, String key) throws Exception;
+
+	/**
+	 * Removes every entry of the group
+	 * @param group
+	 * @throws Exception
+	 */
+	public void removeGroup(String group) throws Exception;
+
+	public Set<String> getKeys(String group) throws Exception;
+
+	/**
+	 * Groups that have entries on disk
+	 * @return
+	 * @throws Exception
+	 */
+	public Set<String> getGroups() throws Exception;
+
+	/**
+	 * Number of entries of the group on disk, used for the cache stats
+	 * @param group
+	 * @return
+	 */
+	public long getGroupCount(String group);
+
+	/**
+	 * Called when the whole cache is flushed so entries that failed to
+	 * serialize get another chance
+	 */
+	public void reset();
+
+	public void destroy();
+
+}
@@ -0,0 +1,19 @@
+package com.dotmarketing.cache;
+
+/**
+ * Turns cache values into the bytes stored by the {@link MappedDiskCache} and back.
+ * The implementation is set with CACHE_DISK_SERIALIZER, it needs a public no-arg constructor
+ * and must be thread safe.
+ */
+public interface DiskCacheSerializer {
+
+	/**
+	 * @param value
+	 * @return the bytes to store
+	 * @throws Exception if the value can not be serialized, it is then not stored on disk
+	 */
+	public byte[] serialize(Object value) throws Exception;
+
+	public Object deserialize(byte[] data) throws Exception;
+
+}
@@ -0,0 +1,65 @@
+package com.dotmarketing.cache;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.cache.Fqn;
+
+/**
+ * {@link DiskCache} backed by the {@link H2CacheLoader} databases
+ */
+public class H2DiskCache implements DiskCache {
+
+	private final H2CacheLoader loader;
+
+	public H2DiskCache() throws Exception {
+		loader = H2CacheLoader.getInstance();
+	}
+
+	public Object get(String group, String key) throws Exception {
+		Map m = loader.get(new Fqn(group, key));
+		return (m == null) ? null : m.get(key);
+	}
+
+	public void put(String group, String key, Object value) throws Exception {
+		loader.put(new Fqn(group, key), key, value);
+	}
+
+	public void remove(String group, String key) throws Exception {
+		loader.remove(new Fqn(group, key), key);
+	}
+
+	public void removeGroup(String group) throws Exception {
+		loader.remove(new Fqn(group));
+	}
+
+	public Set<String> getKeys(String group) throws Exception {
+		return loader.getKeys(group);
+	}
+
+	public Set<String> getGroups() throws Exception {
+		Set<String> groups = new HashSet<String>();
+		for (String group : H2CacheLoader.getGroups()) {
+			groups.add(group.toLowerCase());
+		}
+		return groups;
+	}
+
+	public long getGroupCount(String group) {
+		try {
+			return Long.parseLong(H2CacheLoader.getGroupCount(group));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	public void reset() {
+		loader.resetCannotCacheCache();
+	}
+
+	public void destroy() {
+		loader.destroy();
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.dotmarketing.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Keeps the bytes of small live assets (ASSET_HOT_CACHE_MAX_FILE_SIZE, default 64KB) in memory,
+ * up to ASSET_HOT_CACHE_MAX_SIZE bytes (default 32MB, 0 disables it) least recently used first,
+ * so they can be served without touching the disk.
+ * Entries are keyed by the asset path, which contains the inode, and are only used while
+ * the asset mod date matches. They are dropped when the asset is published or unpublished.
+ *
+ * @author dotCMS
+ */
+public class HotAssetCache {
+
+	private static final long maxSize = Config.getIntProperty("ASSET_HOT_CACHE_MAX_SIZE", 32 * 1024 * 1024);
+	private static final int maxFileSize = Config.getIntProperty("ASSET_HOT_CACHE_MAX_FILE_SIZE", 64 * 1024);
+	private static final Cache<String, HotAsset> cache = CacheBuilder.newBuilder()
+			.maximumWeight(Math.max(maxSize, 0))
+			.weigher(new Weigher<String, HotAsset>() {
+				public int weigh(String key, HotAsset value) {
+					return key.length() * 2 + value.getWeight();
+				}
+			})
+			.concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32))
+			.build();
+
+	public static boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/**
+	 * True if a file of the given size can be kept in memory
+	 */
+	public static boolean accepts(long length) {
+		return isEnabled() && length <= maxFileSize;
+	}
+
+	/**
+	 * @param path the asset file path
+	 * @return the cached asset or null
+	 */
+	public static HotAsset get(String path) {
+		if (!isEnabled()) {
+			return null;
+		}
+		return cache.getIfPresent(path);
+	}
+
+	/**
+	 * @param path the asset file path
+	 * @param inode the asset inode
+	 * @param modDate the asset mod date
+	 * @return the cached asset or null if there is none or it belongs to another version
+	 */
+	public static HotAsset get(String path, String inode, Date modDate) {
+		HotAsset asset = get(path);
+		if (asset == null) {
+			return null;
+		}
+		if (!asset.getInode().equals(inode) || asset.getModDate() != time(modDate)) {
+			cache.invalidate(path);
+			return null;
+		}
+		return asset;
+	}
+
+	public static HotAsset put(String path, String inode, Date modDate, byte[] bytes, String mimeType, String etag, long lastModified) {
+		if (!accepts(bytes.length)) {
+			return null;
+		}
+		HotAsset asset = new HotAsset(inode, time(modDate), bytes, gzip(bytes, mimeType), mimeType, etag, lastModified);
+		cache.put(path, asset);
+		return asset;
+	}
+
+	/**
+	 * Drops every entry of the given inode
+	 * @param inode
+	 */
+	public static void removeAsset(String inode) {
+		if (!isEnabled() || inode == null) {
+			return;
+		}
+		Iterator<HotAsset> it = cache.asMap().values().iterator();
+		while (it.hasNext()) {
+			if (inode.equals(it.next().getInode())) {
+				it.remove();
+			}
+		}
+	}
+
+	public static void clearCache() {
+		cache.invalidateAll();
+	}
+
+	private static long time(Date date) {
+		return (date == null) ? 0 : date.getTime();
+	}
+
+	/**
+	 * Gzips text like assets, returns null when it is not worth it
+	 */
+	private static byte[] gzip(byte[] data, String mimeType) {
+		if (data.length < Config.getIntProperty("GZIP_MIN_SIZE", 1024) || mimeType == null
+				|| !(mimeType.startsWith("text/") || mimeType.contains("javascript") || mimeType.contains("json")
+						|| mimeType.contains("xml"))) {
+			return null;
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			gzip.write(data);
+			gzip.close();
+			byte[] ret = out.toByteArray();
+			return (ret.length < data.length) ? ret : null;
+		} catch (IOException e) {
+			Logger.debug(HotAssetCache.class, "Unable to gzip asset : " + e.getMessage());
+			return null;
+		}
+	}
+
+	public static class HotAsset {
+
+		private final String inode;
+		private final long modDate;
+		private final byte[] bytes;
+		private final byte[] gzipBytes;
+		private final String mimeType;
+		private final String etag;
+		private final long lastModified;
+
+		private HotAsset(String inode, long modDate, byte[] bytes, byte[] gzipBytes, String mimeType, String etag, long lastModified) {
+			this.inode = inode;
+			this.modDate = modDate;
+			this.bytes = bytes;
+			this.gzipBytes = gzipBytes;
+			this.mimeType = mimeType;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public String getInode() {
+			return inode;
+		}
+
+		public long getModDate() {
+			return modDate;
+		}
+
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * The gzipped bytes or null if the asset is not worth compressing
+		 */
+		public byte[] getGzipBytes() {
+			return gzipBytes;
+		}
+
+		public String getMimeType() {
+			return mimeType;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		/**
+		 * The file last modified date, rounded to the second
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		private int getWeight() {
+			return bytes.length + ((gzipBytes == null) ? 0 : gzipBytes.length) + 128;
+		}
+	}
+}
@@ -47,6 +47,14 @@ public class LiveCache {
      * This method also send a signal to the cluster to invalidate key cluster wide
      */
     public static String addToLiveAssetToCache(Versionable asset){
+    	return addToLiveAssetToCache(asset, true);
+    }
+
+    /**
+     * @param invalidate false when the entry is loaded lazily, nothing changed so the uri
+     * resolutions don't need to be dropped
+     */
+    private static String addToLiveAssetToCache(Versionable asset, boolean invalidate){
     	
     	HostAPI hostAPI = APILocator.getHostAPI();
     	
@@ -55,6 +63,8 @@ public class LiveCache {
         String ext = Config.getStringProperty("VELOCITY_PAGE_EXTENSION");
 		// we use the identifier uri for our mappings.
         String ret = null;
+        if(invalidate)
+        	HotAssetCache.removeAsset(asset.getInode());
         try{
         	Identifier id = APILocator.getIdentifierAPI().find(asset);
         	//Obtain the host of the webassets
@@ -66,6 +76,8 @@ public class LiveCache {
     		String uri = id.getURI();
     		//Obtain the inode value of the host;
     		String hostId = host.getIdentifier();
+    		if(invalidate)
+    			URIResolutionCache.removeURI(hostId, uri);
 
     		//if this is an index page, map its directories to it
     		if (UtilMethods.isSet(uri)) 
@@ -220,7 +232,7 @@ public class LiveCache {
 		    Logger.debug(PublishFactory.class, "Lazy Mapping: " + id.getURI() + " to " + URI);
 		    //The cluster entry doesn't need to be invalidated when loading the entry lazily, 
 		    //if the entry gets invalidated from the cluster in this case causes an invalidation infinite loop
-		   return addToLiveAssetToCache(asset);
+		   return addToLiveAssetToCache(asset, false);
 		} else {
 			//Identifier exists but the asset is not live
 			cache.put(getPrimaryGroup() + hostId + ":" + URI, WebKeys.Cache.CACHE_NOT_FOUND, getPrimaryGroup() + "_" + hostId);
@@ -237,6 +249,7 @@ public class LiveCache {
 	public static void removeAssetFromCache(Versionable asset){
 		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
     	HostAPI hostAPI = APILocator.getHostAPI();
+    	HotAssetCache.removeAsset(asset.getInode());
 
 		try{
 	    	User systemUser = APILocator.getUserAPI().getSystemUser();
@@ -246,6 +259,7 @@ public class LiveCache {
 		    String hostId = host.getIdentifier();
 			Identifier identifier = APILocator.getIdentifierAPI().find(asset);
 			cache.remove(getPrimaryGroup() + hostId + ":" + identifier.getURI(),getPrimaryGroup() + "_" + hostId);
+			URIResolutionCache.removeURI(hostId, identifier.getURI());
 		}catch (Exception e) {
 			Logger.error(LiveCache.class, "Unable to remove asset from live cache", e);
 		}
@@ -255,6 +269,8 @@ public class LiveCache {
 		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
 	    //clear the cache
 	    cache.flushGroup(getPrimaryGroup() + "_" + hostId);
+	    HotAssetCache.clearCache();
+	    URIResolutionCache.clearCache(hostId);
 	}
 	public static String[] getGroups() {
     	String[] groups = {getPrimaryGroup()};
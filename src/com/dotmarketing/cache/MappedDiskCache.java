@@ -0,0 +1,538 @@
+package com.dotmarketing.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.ConfigUtils;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.RegEX;
+import com.dotmarketing.velocity.ResourceWrapper;
+import com.liferay.util.FileUtil;
+
+/**
+ * {@link DiskCache} that appends entries to memory mapped segment files, one directory
+ * of segments per group under [dynamic content path]/mmapcache.
+ *
+ * Every record is [key length][value length][key][value], a value length of -1 marks a removed
+ * key. The location of the live record of every key is kept in an in memory index that is
+ * rebuilt by scanning the segments the first time a group is used, so a restart only reads
+ * the keys back and values are deserialized on demand.
+ *
+ * Overwritten and removed records are dead space, once a full segment has more than
+ * CACHE_DISK_COMPACTION_RATIO (default 0.5) of dead space its live records are copied
+ * to the active segment and the file is deleted. Segments are CACHE_DISK_SEGMENT_SIZE MB
+ * (default 32) and values are serialized with the CACHE_DISK_SERIALIZER class,
+ * {@link DefaultDiskCacheSerializer} by default.
+ *
+ * Writes compact inline, the cache administrator does them through a {@link WriteBehindDiskCache}.
+ */
+public class MappedDiskCache implements DiskCache {
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+	private static final int HEADER = 8;
+	private static final int TOMBSTONE = -1;
+
+	private final File root;
+	private final int segmentSize;
+	private final float compactionRatio;
+	private final DiskCacheSerializer serializer;
+	private final ConcurrentHashMap<String, Region> regions = new ConcurrentHashMap<String, Region>();
+
+	private final String templateExtension = Config.getStringProperty("VELOCITY_TEMPLATE_EXTENSION");
+	private final String containerExtension = Config.getStringProperty("VELOCITY_CONTAINER_EXTENSION");
+	private final String fieldExtension = Config.getStringProperty("VELOCITY_FIELD_EXTENSION");
+
+	public MappedDiskCache() throws Exception {
+		this(new File(ConfigUtils.getDynamicContentPath() + File.separator + "mmapcache"));
+	}
+
+	public MappedDiskCache(File root) throws Exception {
+		this.root = root;
+		this.segmentSize = Config.getIntProperty("CACHE_DISK_SEGMENT_SIZE", 32) * 1024 * 1024;
+		this.compactionRatio = Config.getFloatProperty("CACHE_DISK_COMPACTION_RATIO", 0.5f);
+		this.serializer = (DiskCacheSerializer) Class.forName(
+				Config.getStringProperty("CACHE_DISK_SERIALIZER", DefaultDiskCacheSerializer.class.getName())).newInstance();
+
+		if (Config.getBooleanProperty("DIST_INDEXATION_ENABLED", false) && Config.getBooleanProperty("CACHE_DISK_SHOULD_DELETE", false)) {
+			FileUtil.deltree(root, false);
+		}
+		if (!root.exists() && !root.mkdirs()) {
+			throw new IOException("Unable to create disk cache directory " + root.getAbsolutePath());
+		}
+		Logger.info(this, "Memory mapped disk cache in " + root.getAbsolutePath() + ", segment size:" + segmentSize
+				+ ", serializer:" + serializer.getClass().getName());
+	}
+
+	public Object get(String group, String key) throws Exception {
+		Region region = getRegion(group, false);
+		if (region == null) {
+			return null;
+		}
+		byte[] data;
+		region.lock.readLock().lock();
+		try {
+			Location location = region.index.get(key);
+			if (location == null) {
+				return null;
+			}
+			data = location.readValue();
+		} finally {
+			region.lock.readLock().unlock();
+		}
+		try {
+			return serializer.deserialize(data);
+		} catch (Exception e) {
+			Logger.debug(this, "Unable to deserialize " + key + " in group " + group, e);
+			remove(group, key);
+			return null;
+		}
+	}
+
+	public void put(String group, String key, Object value) throws Exception {
+		if (value == null || !canCacheToDisk(group, key, value)) {
+			return;
+		}
+		byte[] data;
+		try {
+			data = serializer.serialize(value);
+		} catch (Exception e) {
+			Logger.debug(this, "Unable to serialize " + key + " in group " + group, e);
+			remove(group, key);
+			return;
+		}
+		byte[] keyBytes = key.getBytes("UTF-8");
+		if (HEADER + keyBytes.length + data.length > segmentSize) {
+			Logger.debug(this, "Not caching " + key + " in group " + group + " to disk, " + data.length + " bytes is over the segment size");
+			remove(group, key);
+			return;
+		}
+
+		Region region = getRegion(group, true);
+		region.lock.writeLock().lock();
+		try {
+			Location location = region.append(keyBytes, data);
+			Location old = region.index.put(key, location);
+			if (old != null) {
+				old.segment.deadBytes += old.length;
+			}
+			region.compact();
+		} finally {
+			region.lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String group, String key) throws Exception {
+		Region region = getRegion(group, false);
+		if (region == null) {
+			return;
+		}
+		region.lock.writeLock().lock();
+		try {
+			Location old = region.index.remove(key);
+			if (old != null) {
+				old.segment.deadBytes += old.length;
+				// older segments still hold the value, persist the removal for the next restart
+				Location tombstone = region.append(key.getBytes("UTF-8"), null);
+				tombstone.segment.deadBytes += tombstone.length;
+				region.compact();
+			}
+		} finally {
+			region.lock.writeLock().unlock();
+		}
+	}
+
+	public void removeGroup(String group) throws Exception {
+		Region region = getRegion(group, false);
+		if (region == null) {
+			return;
+		}
+		region.lock.writeLock().lock();
+		try {
+			region.index.clear();
+			for (Segment segment : region.segments.values()) {
+				segment.delete();
+			}
+			region.segments.clear();
+			region.active = null;
+			region.dir.delete();
+		} finally {
+			region.lock.writeLock().unlock();
+		}
+	}
+
+	public Set<String> getKeys(String group) throws Exception {
+		Region region = getRegion(group, false);
+		if (region == null) {
+			return new HashSet<String>();
+		}
+		return new HashSet<String>(region.index.keySet());
+	}
+
+	public Set<String> getGroups() throws Exception {
+		Set<String> groups = new HashSet<String>(regions.keySet());
+		File[] dirs = root.listFiles();
+		if (dirs != null) {
+			for (File dir : dirs) {
+				if (dir.isDirectory()) {
+					groups.add(URLDecoder.decode(dir.getName(), "UTF-8"));
+				}
+			}
+		}
+		return groups;
+	}
+
+	public long getGroupCount(String group) {
+		try {
+			Region region = getRegion(group, false);
+			return (region == null) ? 0 : region.index.size();
+		} catch (IOException e) {
+			Logger.debug(this, e.getMessage(), e);
+			return -1;
+		}
+	}
+
+	public void reset() {
+
+	}
+
+	public void destroy() {
+		for (Region region : regions.values()) {
+			region.lock.writeLock().lock();
+			try {
+				for (Segment segment : region.segments.values()) {
+					segment.close(true);
+				}
+				region.segments.clear();
+				region.index.clear();
+				region.active = null;
+			} finally {
+				region.lock.writeLock().unlock();
+			}
+		}
+		regions.clear();
+	}
+
+	/**
+	 * Returns the region of the group, opening it from disk the first time
+	 * @param group
+	 * @param create create the region if there is nothing on disk for it
+	 * @return
+	 * @throws IOException
+	 */
+	private Region getRegion(String group, boolean create) throws IOException {
+		Region region = regions.get(group);
+		if (region != null) {
+			return region;
+		}
+		synchronized (regions) {
+			region = regions.get(group);
+			if (region == null) {
+				File dir = new File(root, URLEncoder.encode(group, "UTF-8"));
+				if (!create && !dir.isDirectory()) {
+					return null;
+				}
+				region = new Region(group, dir);
+				regions.put(group, region);
+			}
+		}
+		return region;
+	}
+
+	/**
+	 * Velocity menus and velocity resources that define macros need to be parsed
+	 * every time they are loaded so they are never stored on disk
+	 */
+	private boolean canCacheToDisk(String group, String key, Object value) {
+		if (group.startsWith("velocitymenucache")) {
+			return false;
+		}
+		if (group.startsWith("velocitycache")) {
+			if (!(key.contains("live") || key.contains("working"))) {
+				return false;
+			}
+			if (Config.getBooleanProperty("SKIP_MACRO_CACHE", true) && value instanceof ResourceWrapper
+					&& (key.endsWith(containerExtension) || key.endsWith(templateExtension) || key.endsWith(fieldExtension))) {
+				return !RegEX.contains(((ResourceWrapper) value).getResource().getData().toString(), "\\[#macro\\]");
+			}
+		}
+		return true;
+	}
+
+	private static String segmentName(int id) {
+		return SEGMENT_PREFIX + id + SEGMENT_SUFFIX;
+	}
+
+	/**
+	 * Segments and index of a group. The index can be read without the lock, the segments
+	 * and their buffers are only touched with the read lock held and changed with the write lock
+	 */
+	private class Region {
+
+		private final String group;
+		private final File dir;
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+		private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+		private Segment active;
+
+		Region(String group, File dir) throws IOException {
+			this.group = group;
+			this.dir = dir;
+			long start = System.currentTimeMillis();
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					String name = file.getName();
+					if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+						try {
+							int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+							segments.put(id, new Segment(id, file, file.length()));
+						} catch (NumberFormatException e) {
+							Logger.warn(MappedDiskCache.class, "Ignoring unknown file in disk cache " + file.getAbsolutePath());
+						}
+					}
+				}
+			}
+			// segments are replayed oldest first so later records win
+			for (Segment segment : segments.values()) {
+				scan(segment);
+				active = segment;
+			}
+			if (!segments.isEmpty()) {
+				Logger.info(MappedDiskCache.class, "Loaded disk cache " + group + ": " + index.size() + " entries in "
+						+ segments.size() + " segments in " + (System.currentTimeMillis() - start) + "ms");
+			}
+		}
+
+		/**
+		 * Adds the records of the segment to the index and sets its write position after the
+		 * last complete record
+		 */
+		private void scan(Segment segment) throws UnsupportedEncodingException {
+			ByteBuffer buffer = segment.buffer.duplicate();
+			int position = 0;
+			while (position + HEADER <= segment.capacity) {
+				int keyLength = buffer.getInt(position);
+				int valueLength = buffer.getInt(position + 4);
+				int length = HEADER + keyLength + Math.max(valueLength, 0);
+				if (keyLength <= 0 || valueLength < TOMBSTONE || position + length > segment.capacity) {
+					break;
+				}
+				String key = readKey(buffer, position, keyLength);
+				Location old;
+				if (valueLength == TOMBSTONE) {
+					old = index.remove(key);
+					segment.deadBytes += length;
+				} else {
+					old = index.put(key, new Location(segment, position, keyLength, valueLength));
+				}
+				if (old != null) {
+					old.segment.deadBytes += old.length;
+				}
+				position += length;
+			}
+			segment.position = position;
+		}
+
+		/**
+		 * Appends a record to the active segment, rolling to a new one when full
+		 * @param key
+		 * @param value null for a removal
+		 * @return
+		 */
+		private Location append(byte[] key, byte[] value) throws IOException {
+			int valueLength = (value == null) ? TOMBSTONE : value.length;
+			int length = HEADER + key.length + Math.max(valueLength, 0);
+			if (active == null || active.position + length > active.capacity) {
+				if (!dir.exists() && !dir.mkdirs()) {
+					throw new IOException("Unable to create disk cache directory " + dir.getAbsolutePath());
+				}
+				int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+				active = new Segment(id, new File(dir, segmentName(id)), segmentSize);
+				segments.put(id, active);
+			}
+			int position = active.position;
+			ByteBuffer buffer = active.buffer.duplicate();
+			buffer.position(position + HEADER);
+			buffer.put(key);
+			if (value != null) {
+				buffer.put(value);
+			}
+			// the key length goes last so a half written record ends the segment on restart
+			buffer.putInt(position + 4, valueLength);
+			buffer.putInt(position, key.length);
+			active.position += length;
+			return new Location(active, position, key.length, valueLength);
+		}
+
+		/**
+		 * Rewrites the full segments that are mostly dead space
+		 */
+		private void compact() throws IOException {
+			List<Segment> candidates = new ArrayList<Segment>();
+			for (Segment segment : segments.values()) {
+				if (segment != active && segment.deadBytes >= segment.position * compactionRatio) {
+					candidates.add(segment);
+				}
+			}
+			for (Segment segment : candidates) {
+				compact(segment);
+			}
+		}
+
+		private void compact(Segment segment) throws IOException {
+			long start = System.currentTimeMillis();
+			boolean hasOlder = segments.firstKey() < segment.id;
+			ByteBuffer buffer = segment.buffer.duplicate();
+			int position = 0;
+			int moved = 0;
+			while (position < segment.position) {
+				int keyLength = buffer.getInt(position);
+				int valueLength = buffer.getInt(position + 4);
+				int length = HEADER + keyLength + Math.max(valueLength, 0);
+				String key = readKey(buffer, position, keyLength);
+				if (valueLength == TOMBSTONE) {
+					// only needed while an older segment may still have a value for the key
+					if (hasOlder && !index.containsKey(key)) {
+						Location tombstone = append(key.getBytes("UTF-8"), null);
+						tombstone.segment.deadBytes += tombstone.length;
+					}
+				} else {
+					Location location = index.get(key);
+					if (location != null && location.segment == segment && location.offset == position) {
+						byte[] record = new byte[length - HEADER - keyLength];
+						buffer.position(position + HEADER + keyLength);
+						buffer.get(record);
+						index.put(key, append(key.getBytes("UTF-8"), record));
+						moved++;
+					}
+				}
+				position += length;
+			}
+			segments.remove(segment.id);
+			segment.delete();
+			Logger.debug(MappedDiskCache.class, "Compacted disk cache segment " + segment.file.getAbsolutePath() + ", moved "
+					+ moved + " entries in " + (System.currentTimeMillis() - start) + "ms");
+		}
+
+		private String readKey(ByteBuffer buffer, int position, int keyLength) throws UnsupportedEncodingException {
+			byte[] key = new byte[keyLength];
+			ByteBuffer b = buffer.duplicate();
+			b.position(position + HEADER);
+			b.get(key);
+			return new String(key, "UTF-8");
+		}
+	}
+
+	/**
+	 * A memory mapped segment file, written only by the region holding its write lock
+	 */
+	private static class Segment {
+
+		private final int id;
+		private final File file;
+		private final int capacity;
+		private final RandomAccessFile raf;
+		private final MappedByteBuffer buffer;
+		private int position = 0;
+		private long deadBytes = 0;
+
+		Segment(int id, File file, long size) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.capacity = (int) Math.min(size, Integer.MAX_VALUE);
+			this.raf = new RandomAccessFile(file, "rw");
+			try {
+				if (raf.length() < capacity) {
+					raf.setLength(capacity);
+				}
+				this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+			} catch (IOException e) {
+				raf.close();
+				throw e;
+			}
+		}
+
+		void close(boolean force) {
+			try {
+				if (force) {
+					buffer.force();
+				}
+				raf.close();
+			} catch (IOException e) {
+				Logger.debug(MappedDiskCache.class, "Unable to close " + file.getAbsolutePath(), e);
+			}
+			unmap(buffer);
+		}
+
+		void delete() {
+			close(false);
+			if (!file.delete()) {
+				Logger.warn(MappedDiskCache.class, "Unable to delete disk cache segment " + file.getAbsolutePath());
+			}
+		}
+
+		/**
+		 * Releases the mapping now instead of waiting for the buffer to be garbage
+		 * collected, which keeps the file from being deleted on windows
+		 */
+		private static void unmap(MappedByteBuffer buffer) {
+			try {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			} catch (Throwable t) {
+				Logger.debug(MappedDiskCache.class, "Unable to unmap disk cache segment : " + t.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Where the live record of a key is
+	 */
+	private static class Location {
+
+		private final Segment segment;
+		private final int offset;
+		private final int keyLength;
+		private final int valueLength;
+		private final int length;
+
+		Location(Segment segment, int offset, int keyLength, int valueLength) {
+			this.segment = segment;
+			this.offset = offset;
+			this.keyLength = keyLength;
+			this.valueLength = valueLength;
+			this.length = HEADER + keyLength + Math.max(valueLength, 0);
+		}
+
+		byte[] readValue() {
+			byte[] value = new byte[valueLength];
+			ByteBuffer buffer = segment.buffer.duplicate();
+			buffer.position(offset + HEADER + keyLength);
+			buffer.get(value);
+			return value;
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.dotmarketing.cache;
+
+import java.io.Serializable;
+
+import com.dotmarketing.beans.Host;
+import com.dotmarketing.beans.Identifier;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.business.DotCacheAdministrator;
+import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.business.DotStateException;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.InodeUtils;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+
+/**
+ * Caches what a live uri resolves to on a host for a language: a page, a file asset, a link
+ * or nothing. With it, routing a request is a single cache lookup instead of going through
+ * the LiveCache, the identifier and the content version info.
+ * Not found answers are kept for URI_RESOLUTION_NOT_FOUND_TTL seconds (default 60), the
+ * rest until the asset is published, unpublished or moved, see {@link LiveCache}.
+ *
+ * @author dotCMS
+ */
+public class URIResolutionCache {
+
+	public static final int NOT_FOUND = 0;
+	public static final int PAGE = 1;
+	public static final int FILE = 2;
+	public static final int LINK = 3;
+
+	private static final long notFoundTTL = Config.getIntProperty("URI_RESOLUTION_NOT_FOUND_TTL", 60) * 1000L;
+
+	/**
+	 * Resolves the given uri the way the LiveCache does, remembering the answer
+	 * @param uri
+	 * @param host
+	 * @param languageId
+	 * @return the resolved uri, type NOT_FOUND if it is not live
+	 * @throws DotStateException
+	 * @throws DotDataException
+	 * @throws DotSecurityException
+	 */
+	public static ResolvedURI resolve(String uri, Host host, long languageId) throws DotStateException, DotDataException, DotSecurityException {
+		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
+		String key = getKey(host.getIdentifier(), uri, languageId);
+		String group = getPrimaryGroup();
+		ResolvedURI resolved = null;
+		try {
+			resolved = (ResolvedURI) cache.get(key, group);
+		} catch (DotCacheException e) {
+			Logger.debug(URIResolutionCache.class, "Cache Entry not found", e);
+		}
+		if (resolved != null && !resolved.isExpired()) {
+			return resolved;
+		}
+
+		String pointer = LiveCache.getPathFromCache(uri, host);
+		if (!UtilMethods.isSet(pointer)) {
+			resolved = new ResolvedURI(NOT_FOUND, null, null, null, null);
+		} else if (pointer.startsWith("http://") || pointer.startsWith("https://")) {
+			resolved = new ResolvedURI(LINK, pointer, null, null, null);
+		} else {
+			String ext = Config.getStringProperty("VELOCITY_PAGE_EXTENSION");
+			boolean page = 0 < pointer.indexOf("." + ext);
+			Identifier ident = APILocator.getIdentifierAPI().find(host, page ? pointer : uri);
+			if (ident == null || !InodeUtils.isSet(ident.getInode())) {
+				resolved = new ResolvedURI(page ? PAGE : FILE, pointer, null, null, null);
+			} else {
+				String liveInode = null;
+				if ("contentlet".equals(ident.getAssetType())) {
+					ContentletVersionInfo cinfo = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), languageId);
+					if (cinfo != null) {
+						liveInode = cinfo.getLiveInode();
+					}
+				}
+				resolved = new ResolvedURI(page ? PAGE : FILE, pointer, ident.getId(), ident.getAssetType(), liveInode);
+			}
+		}
+		cache.put(key, resolved, group);
+		return resolved;
+	}
+
+	/**
+	 * Forgets the uri on the host for every language, for an index page the folder
+	 * uris are forgotten as well
+	 * @param hostId
+	 * @param uri
+	 */
+	public static void removeURI(String hostId, String uri) {
+		if (!UtilMethods.isSet(uri)) {
+			return;
+		}
+		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
+		String group = getPrimaryGroup();
+		String index = "/index." + Config.getStringProperty("VELOCITY_PAGE_EXTENSION");
+		String folder = uri.endsWith(index) ? uri.substring(0, uri.length() - index.length()) : null;
+		for (Language language : APILocator.getLanguageAPI().getLanguages()) {
+			cache.remove(getKey(hostId, uri, language.getId()), group);
+			if (folder != null) {
+				if (folder.length() > 0) {
+					cache.remove(getKey(hostId, folder, language.getId()), group);
+				}
+				cache.remove(getKey(hostId, folder + "/", language.getId()), group);
+			}
+		}
+	}
+
+	/**
+	 * Entries of every host share the region so the whole of it is flushed
+	 * @param hostId
+	 */
+	public static void clearCache(String hostId) {
+		CacheLocator.getCacheAdministrator().flushGroup(getPrimaryGroup());
+	}
+
+	/**
+	 * The language id passed as language_id or the default one
+	 * @param languageId
+	 * @return
+	 */
+	public static long getLanguageId(String languageId) {
+		if (UtilMethods.isSet(languageId)) {
+			try {
+				return Long.parseLong(languageId);
+			} catch (NumberFormatException e) {
+				Logger.debug(URIResolutionCache.class, "Invalid language id " + languageId);
+			}
+		}
+		return APILocator.getLanguageAPI().getDefaultLanguage().getId();
+	}
+
+	private static String getKey(String hostId, String uri, long languageId) {
+		return hostId + ":" + languageId + ":" + uri;
+	}
+
+	public static String[] getGroups() {
+		String[] groups = { getPrimaryGroup() };
+		return groups;
+	}
+
+	public static String getPrimaryGroup() {
+		return "URIResolutionCache";
+	}
+
+	public static class ResolvedURI implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int type;
+		private final String pointer;
+		private final String identifier;
+		private final String assetType;
+		private final String liveInode;
+		private final long created = System.currentTimeMillis();
+
+		private ResolvedURI(int type, String pointer, String identifier, String assetType, String liveInode) {
+			this.type = type;
+			this.pointer = pointer;
+			this.identifier = identifier;
+			this.assetType = assetType;
+			this.liveInode = liveInode;
+		}
+
+		/**
+		 * One of NOT_FOUND, PAGE, FILE or LINK
+		 */
+		public int getType() {
+			return type;
+		}
+
+		/**
+		 * What the LiveCache maps the uri to, null when not found
+		 */
+		public String getPointer() {
+			return pointer;
+		}
+
+		/**
+		 * The identifier of the page or file, null for links
+		 */
+		public String getIdentifier() {
+			return identifier;
+		}
+
+		public String getAssetType() {
+			return assetType;
+		}
+
+		/**
+		 * The live inode of a file asset in the requested language
+		 */
+		public String getLiveInode() {
+			return liveInode;
+		}
+
+		public boolean isNotFound() {
+			return type == NOT_FOUND;
+		}
+
+		private boolean isExpired() {
+			return type == NOT_FOUND && System.currentTimeMillis() - created > notFoundTTL;
+		}
+	}
+}
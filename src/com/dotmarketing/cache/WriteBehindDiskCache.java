@@ -0,0 +1,269 @@
+package com.dotmarketing.cache;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Wraps a {@link DiskCache} so puts and removes are written by a small pool of background
+ * threads (CACHE_DISK_WRITER_THREADS, default 2) instead of the calling one. Pending writes
+ * are kept by group/key, so a key written several times before a writer gets to it is only
+ * written once, and reads see pending writes before the wrapped store is updated.
+ *
+ * At most CACHE_DISK_WRITE_QUEUE_SIZE (default 10000) keys wait to be written. Puts over
+ * that are dropped and counted as the value is still in memory, but the older value of the
+ * key is removed from disk by the calling thread, as removes over that are, so the disk
+ * never serves a value older than the one in memory.
+ */
+public class WriteBehindDiskCache implements DiskCache, WriteBehindDiskCacheMBean {
+
+	private static final Object REMOVED = new Object();
+
+	private final DiskCache store;
+	private final ConcurrentHashMap<PendingKey, Object> pending = new ConcurrentHashMap<PendingKey, Object>();
+	private final LinkedBlockingQueue<PendingKey> queue;
+	// writes hold the read lock, group flushes the write lock so no pending write lands after them
+	private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+	private final Thread[] writers;
+	private volatile boolean running = true;
+
+	private final AtomicLong writes = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	public WriteBehindDiskCache(DiskCache store) {
+		this(store, Config.getIntProperty("CACHE_DISK_WRITE_QUEUE_SIZE", 10000), Config.getIntProperty("CACHE_DISK_WRITER_THREADS", 2));
+	}
+
+	WriteBehindDiskCache(DiskCache store, int queueSize, int writerThreads) {
+		this.store = store;
+		this.queue = new LinkedBlockingQueue<PendingKey>(Math.max(1, queueSize));
+		this.writers = new Thread[Math.max(1, writerThreads)];
+		Runnable writeLoop = new Runnable() {
+			public void run() {
+				while (running) {
+					try {
+						PendingKey key = queue.poll(1, TimeUnit.SECONDS);
+						if (key != null) {
+							write(key);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		};
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = new Thread(writeLoop, "DiskCacheWriter-" + i);
+			writers[i].setDaemon(true);
+			writers[i].start();
+		}
+	}
+
+	public Object get(String group, String key) throws Exception {
+		Object value = pending.get(new PendingKey(group, key));
+		if (value == REMOVED) {
+			return null;
+		}
+		return (value != null) ? value : store.get(group, key);
+	}
+
+	public void put(String group, String key, Object value) throws Exception {
+		if (value == null) {
+			return;
+		}
+		enqueue(new PendingKey(group, key), value);
+	}
+
+	public void remove(String group, String key) throws Exception {
+		enqueue(new PendingKey(group, key), REMOVED);
+	}
+
+	public void removeGroup(String group) throws Exception {
+		flushLock.writeLock().lock();
+		try {
+			// the keys stay pending as removes, they are still queued and a key must never be
+			// queued twice or two writers could write it at once
+			for (PendingKey key : pending.keySet()) {
+				if (key.group.equals(group)) {
+					pending.put(key, REMOVED);
+				}
+			}
+			store.removeGroup(group);
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	public Set<String> getKeys(String group) throws Exception {
+		Set<String> keys = new HashSet<String>(store.getKeys(group));
+		for (Map.Entry<PendingKey, Object> entry : pending.entrySet()) {
+			if (entry.getKey().group.equals(group)) {
+				if (entry.getValue() == REMOVED) {
+					keys.remove(entry.getKey().key);
+				} else {
+					keys.add(entry.getKey().key);
+				}
+			}
+		}
+		return keys;
+	}
+
+	public Set<String> getGroups() throws Exception {
+		Set<String> groups = new HashSet<String>(store.getGroups());
+		for (PendingKey key : pending.keySet()) {
+			groups.add(key.group);
+		}
+		return groups;
+	}
+
+	public long getGroupCount(String group) {
+		return store.getGroupCount(group);
+	}
+
+	public void reset() {
+		store.reset();
+	}
+
+	/**
+	 * Writes what is pending and destroys the wrapped store
+	 */
+	public void destroy() {
+		running = false;
+		for (Thread writer : writers) {
+			try {
+				writer.join(2000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		Logger.info(this, "Writing " + queue.size() + " pending disk cache entries");
+		PendingKey key;
+		while ((key = queue.poll()) != null) {
+			write(key);
+		}
+		store.destroy();
+	}
+
+	public int getPendingWrites() {
+		return pending.size();
+	}
+
+	public int getQueueCapacity() {
+		return queue.size() + queue.remainingCapacity();
+	}
+
+	public long getWrites() {
+		return writes.get();
+	}
+
+	public long getCoalescedWrites() {
+		return coalesced.get();
+	}
+
+	public long getDroppedWrites() {
+		return dropped.get();
+	}
+
+	public long getFailedWrites() {
+		return failures.get();
+	}
+
+	private void enqueue(PendingKey key, Object value) {
+		// the key is already queued if something was pending for it
+		if (pending.put(key, value) != null) {
+			coalesced.incrementAndGet();
+			return;
+		}
+		while (!queue.offer(key)) {
+			Object current = pending.get(key);
+			if (current == null) {
+				return;
+			}
+			if (current == REMOVED) {
+				write(key);
+				return;
+			}
+			// the value is dropped but the older one on disk must go with it, a concurrent
+			// put may have replaced the value, it has to be dropped as well
+			if (pending.replace(key, current, REMOVED)) {
+				dropped.incrementAndGet();
+				write(key);
+				return;
+			}
+		}
+	}
+
+	private void write(PendingKey key) {
+		flushLock.readLock().lock();
+		try {
+			Object value = pending.get(key);
+			if (value == null) {
+				return;
+			}
+			try {
+				if (value == REMOVED) {
+					store.remove(key.group, key.key);
+				} else {
+					store.put(key.group, key.key, value);
+				}
+				writes.incrementAndGet();
+			} catch (Exception e) {
+				failures.incrementAndGet();
+				Logger.debug(WriteBehindDiskCache.class, "Unable to write " + key.key + " in group " + key.group + " to disk : " + e.getMessage(), e);
+				if (value != REMOVED) {
+					// do not leave the older value readable from disk
+					try {
+						store.remove(key.group, key.key);
+					} catch (Exception ex) {
+						Logger.debug(WriteBehindDiskCache.class, "Unable to remove " + key.key + " in group " + key.group + " from disk : " + ex.getMessage(), ex);
+					}
+				}
+			}
+			// the entry stays pending until written so reads never see the older value on disk
+			if (!pending.remove(key, value) && !queue.offer(key)) {
+				// no room to queue the newer value, write it now
+				write(key);
+			}
+		} finally {
+			flushLock.readLock().unlock();
+		}
+	}
+
+	private static class PendingKey {
+
+		private final String group;
+		private final String key;
+
+		PendingKey(String group, String key) {
+			this.group = group;
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * group.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PendingKey)) {
+				return false;
+			}
+			PendingKey other = (PendingKey) obj;
+			return group.equals(other.group) && key.equals(other.key);
+		}
+	}
+
+}
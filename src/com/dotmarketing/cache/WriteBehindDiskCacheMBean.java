@@ -0,0 +1,35 @@
+package com.dotmarketing.cache;
+
+public interface WriteBehindDiskCacheMBean {
+
+	/**
+	 * Keys waiting to be written to disk
+	 */
+	public abstract int getPendingWrites();
+
+	/**
+	 * Max number of keys waiting to be written before puts are dropped
+	 */
+	public abstract int getQueueCapacity();
+
+	/**
+	 * Puts and removes written to disk
+	 */
+	public abstract long getWrites();
+
+	/**
+	 * Puts and removes that replaced a pending write of the same key
+	 */
+	public abstract long getCoalescedWrites();
+
+	/**
+	 * Puts not written to disk because the queue was full
+	 */
+	public abstract long getDroppedWrites();
+
+	/**
+	 * Writes that failed in the disk store
+	 */
+	public abstract long getFailedWrites();
+
+}
@@ -2,6 +2,7 @@ package com.dotmarketing.common.business.journal;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import com.dotmarketing.beans.Host;
@@ -30,6 +31,14 @@ public interface DistributedJournalAPI<T> {
 	 * @throws DotDataException
 	 */
 	public void addCacheEntry(String key, String group) throws DotDataException; 
+
+	/**
+	 * Will add a batch of cache entries for all servers other then himself in the process table
+	 * using a single connection and a batched insert
+	 * @param entries key:group entries
+	 * @throws DotDataException
+	 */
+	public void addCacheEntries(Collection<String> entries) throws DotDataException;
 	
 	/**
 	 * Will return only the reindex entries for the specific server the code is executed on
@@ -38,6 +47,22 @@ public interface DistributedJournalAPI<T> {
 	 * @throws DotDataException
 	 */
 	public List<IndexJournal<T>> findContentReindexEntriesToReindex() throws DotDataException;
+
+	/**
+	 * Claims up to recordsToFetch reindex entries for the server the code is executed on.
+	 * Entries are claimed by a single server so cluster nodes never get the same ones
+	 * @param recordsToFetch
+	 * @return
+	 * @throws DotDataException
+	 */
+	public List<IndexJournal<T>> findContentReindexEntriesToReindex(int recordsToFetch) throws DotDataException;
+
+	/**
+	 * Gives claimed reindex entries back so they can be claimed again by any server
+	 * @param records
+	 * @throws DotDataException
+	 */
+	public void releaseReindexEntryForServer(List<IndexJournal<T>> records) throws DotDataException;
 	
 	/**
 	 * Moves/process records from the dist_process table to the dist_journal table for all servers
@@ -51,6 +76,13 @@ public interface DistributedJournalAPI<T> {
 	 * @throws DotDataException
 	 */
 	public void addStructureReindexEntries(T structureInode) throws DotDataException;
+
+	/**
+	 * Adds reindex entries for the identifiers, so they are indexed by the reindex thread
+	 * @param identifiers
+	 * @throws DotDataException
+	 */
+	public void addIdentifierReindexEntries(Collection<T> identifiers) throws DotDataException;
 	
 	/**
 	 * Will add reindex enteries for all content on all servers in the cluster including this one
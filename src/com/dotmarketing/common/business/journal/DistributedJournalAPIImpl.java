@@ -4,6 +4,7 @@
 package com.dotmarketing.common.business.journal;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 
 import com.dotmarketing.beans.Host;
@@ -35,6 +36,13 @@ public class DistributedJournalAPIImpl<T> implements DistributedJournalAPI<T> {
 		distFac.addCacheEntry(key, group);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.dotmarketing.common.business.journal.DistributedJournalAPI#addCacheEntries(java.util.Collection)
+	 */
+	public void addCacheEntries(Collection<String> entries) throws DotDataException {
+		distFac.addCacheEntries(entries);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.dotmarketing.business.DistributedJournalAPI#findCacheEntriesToRemove()
 	 */
@@ -45,6 +53,10 @@ public class DistributedJournalAPIImpl<T> implements DistributedJournalAPI<T> {
 	public void addStructureReindexEntries(T structureInode) throws DotDataException {
 		distFac.addStructureReindexEntries(structureInode);
 	}
+
+	public void addIdentifierReindexEntries(Collection<T> identifiers) throws DotDataException {
+		distFac.addIdentifierReindexEntries(identifiers);
+	}
 	
 	public synchronized void addBuildNewIndexEntries() throws DotDataException {
 		distFac.addBuildNewIndexEntries();
@@ -53,6 +65,14 @@ public class DistributedJournalAPIImpl<T> implements DistributedJournalAPI<T> {
 	public List<IndexJournal<T>> findContentReindexEntriesToReindex() throws DotDataException {
 		return distFac.findContentReindexEntriesToReindex();
 	}
+
+	public List<IndexJournal<T>> findContentReindexEntriesToReindex(int recordsToFetch) throws DotDataException {
+		return distFac.findContentReindexEntriesToReindex(recordsToFetch);
+	}
+
+	public void releaseReindexEntryForServer(List<IndexJournal<T>> records) throws DotDataException {
+		distFac.releaseReindexEntryForServer(records);
+	}
 	
 	public void processJournalEntries() throws DotDataException {
 		distFac.processJournalEntries();
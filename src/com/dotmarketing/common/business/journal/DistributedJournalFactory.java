@@ -1,6 +1,7 @@
 package com.dotmarketing.common.business.journal;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 
 import com.dotmarketing.beans.Host;
@@ -45,6 +46,13 @@ public abstract class DistributedJournalFactory<T> {
 	 * @throws DotDataException
 	 */
 	protected abstract void addCacheEntry(String key, String group) throws DotDataException; 
+
+	/**
+	 * Will add a batch of key:group cache entries for all servers other then himself
+	 * @param entries
+	 * @throws DotDataException
+	 */
+	protected abstract void addCacheEntries(Collection<String> entries) throws DotDataException;
 	
 	/**
 	 * Will return only the reindex entries for the specific server the code is executed on
@@ -52,6 +60,21 @@ public abstract class DistributedJournalFactory<T> {
 	 * @throws DotDataException
 	 */
 	protected abstract List<IndexJournal<T>> findContentReindexEntriesToReindex() throws DotDataException;
+
+	/**
+	 * Will claim up to recordsToFetch reindex entries for the specific server the code is executed on
+	 * @param recordsToFetch
+	 * @return
+	 * @throws DotDataException
+	 */
+	protected abstract List<IndexJournal<T>> findContentReindexEntriesToReindex(int recordsToFetch) throws DotDataException;
+
+	/**
+	 * Will clear the server of the reindex entries so they can be claimed again
+	 * @param records
+	 * @throws DotDataException
+	 */
+	protected abstract void releaseReindexEntryForServer(List<IndexJournal<T>> records) throws DotDataException;
 	
 	/**
 	 * Will delete all content reindex entries for a specific serverId less then the id passed in 
@@ -94,6 +117,13 @@ public abstract class DistributedJournalFactory<T> {
 	 */
 	protected abstract void addStructureReindexEntries(T structureInode) throws DotDataException;
 
+	/**
+	 * Adds reindex entries for the identifiers
+	 * @param identifiers
+	 * @throws DotDataException
+	 */
+	protected abstract void addIdentifierReindexEntries(Collection<T> identifiers) throws DotDataException;
+
 	/**
 	 * Deletes the specific build new index entry for the local server.  
 	 * This is intended to be called after a switch of the index.
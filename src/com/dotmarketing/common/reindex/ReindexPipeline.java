@@ -0,0 +1,457 @@
+package com.dotmarketing.common.reindex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+
+import com.dotcms.content.elasticsearch.business.ContentletIndexAPI;
+import com.dotcms.content.elasticsearch.business.LiveIndexGeneration;
+import com.dotcms.content.elasticsearch.util.ESClient;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.common.business.journal.DistributedJournalAPI;
+import com.dotmarketing.common.business.journal.IndexJournal;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+
+/**
+ * Indexes the batches of journal records claimed by the {@link ReindexThread}.
+ *
+ * Each batch is handed to one of REINDEX_THREADS workers (default the number of processors),
+ * REINDEX_QUEUE_SIZE batches (default twice the workers) can wait for one. A worker loads the
+ * contentlets of the whole batch with one version info query and one contentlet query, maps
+ * them to index requests and submits them in bulks of up to REINDEX_BULK_ACTIONS actions.
+ *
+ * At most REINDEX_MAX_BULK_REQUESTS bulks (default the number of workers) are waiting for
+ * elasticsearch, workers block until one completes. When elasticsearch rejects a bulk because
+ * it is too busy its records are given back to the journal and no new batches are accepted
+ * for a while, doubling up to 30 seconds while the rejections go on.
+ *
+ * An identifier is indexed by one batch at a time, from the moment its batch is accepted until
+ * elasticsearch answered the bulk holding it. Otherwise a bulk carrying an older version could
+ * be applied after the one carrying the newer version. Records of an identifier that is still
+ * in flight are given back to the journal and claimed again later.
+ */
+public class ReindexPipeline {
+
+	private static final ContentletIndexAPI indexAPI = APILocator.getContentletIndexAPI();
+	private static final long MAX_BACKOFF = 30000;
+	private static final int MAPPING_BATCH = 100;
+
+	private final DistributedJournalAPI<String> jAPI = APILocator.getDistributedJournalAPI();
+	private final ReindexThread owner;
+	private final ThreadPoolExecutor workers;
+	private final Semaphore batches;
+	private final Semaphore bulks;
+	private final int bulkActions;
+
+	private final ConcurrentHashMap<String, IndexJournal<String>> identifiersInFlight = new ConcurrentHashMap<String, IndexJournal<String>>();
+	private final AtomicInteger batchesInFlight = new AtomicInteger();
+	private final AtomicLong recordsIndexed = new AtomicLong();
+	private final AtomicLong bulkRequests = new AtomicLong();
+	private final AtomicLong bulkFailures = new AtomicLong();
+	private final AtomicLong bulkRejections = new AtomicLong();
+
+	private volatile long backoff = 0;
+	private volatile long backoffUntil = 0;
+	private volatile int sleepBetweenRecords = 0;
+
+	private long rateWindowStart = System.currentTimeMillis();
+	private long rateWindowCount = 0;
+	private double throughput = 0;
+
+	ReindexPipeline(ReindexThread owner) {
+		this.owner = owner;
+		int threads = Math.max(Config.getIntProperty("REINDEX_THREADS", Runtime.getRuntime().availableProcessors()), 1);
+		int queue = Math.max(Config.getIntProperty("REINDEX_QUEUE_SIZE", threads * 2), 1);
+		this.batches = new Semaphore(threads + queue);
+		this.bulks = new Semaphore(Math.max(Config.getIntProperty("REINDEX_MAX_BULK_REQUESTS", threads), 1));
+		this.bulkActions = Math.max(Config.getIntProperty("REINDEX_BULK_ACTIONS", 1000), 1);
+		this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queue),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "ReindexWorker-" + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		this.workers.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * True if a new batch would be accepted right away
+	 */
+	public boolean hasCapacity() {
+		return batches.availablePermits() > 0 && System.currentTimeMillis() >= backoffUntil;
+	}
+
+	/**
+	 * Hands the batch to the workers. Records whose identifier is still being indexed by an
+	 * earlier batch are given back to the journal
+	 * @param records
+	 * @return false if the workers are busy or every identifier is in flight, the batch is left to the caller
+	 */
+	public boolean submit(List<IndexJournal<String>> records) {
+		if (System.currentTimeMillis() < backoffUntil || !batches.tryAcquire()) {
+			return false;
+		}
+		final List<IndexJournal<String>> accepted = new ArrayList<IndexJournal<String>>();
+		List<IndexJournal<String>> deferred = new ArrayList<IndexJournal<String>>();
+		Set<String> claimed = new HashSet<String>();
+		for (IndexJournal<String> idx : records) {
+			String identifier = idx.getIdentToIndex();
+			if (identifier == null || claimed.contains(identifier) || identifiersInFlight.putIfAbsent(identifier, idx) == null) {
+				claimed.add(identifier);
+				accepted.add(idx);
+			} else {
+				deferred.add(idx);
+			}
+		}
+		if (accepted.isEmpty()) {
+			batches.release();
+			return false;
+		}
+		batchesInFlight.incrementAndGet();
+		try {
+			workers.execute(new Runnable() {
+				public void run() {
+					try {
+						indexBatch(accepted);
+					} catch (Exception e) {
+						Logger.error(ReindexPipeline.class, "Unable to index records", e);
+						release(accepted);
+					} finally {
+						batchesInFlight.decrementAndGet();
+						try {
+							HibernateUtil.closeSession();
+						} catch (Exception e) {
+							Logger.debug(ReindexPipeline.class, e.getMessage(), e);
+						}
+						try {
+							DbConnectionFactory.closeConnection();
+						} catch (Exception e) {
+							Logger.debug(ReindexPipeline.class, "Unable to close connection : " + e.getMessage(), e);
+						}
+						// last, so the next batch finds this worker nearly done
+						batches.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// the worker that gave back the permit has not taken the next queued batch yet
+			Logger.debug(ReindexPipeline.class, "Reindex workers are busy", e);
+			batchesInFlight.decrementAndGet();
+			inFlightDone(accepted);
+			batches.release();
+			return false;
+		}
+		if (!deferred.isEmpty()) {
+			release(deferred);
+		}
+		return true;
+	}
+
+	void setSleepBetweenRecords(int sleepBetweenRecords) {
+		this.sleepBetweenRecords = sleepBetweenRecords;
+	}
+
+	private void indexBatch(List<IndexJournal<String>> records) throws DotDataException, DotSecurityException {
+		System.setProperty("IN_FULL_REINDEX", "true");
+		Map<String, List<Contentlet>> contentlets = loadContentlets(records);
+		boolean inFullReindex = indexAPI.isInFullReindex();
+
+		Client client = new ESClient().getClient();
+		BulkRequestBuilder bulk = client.prepareBulk();
+		List<IndexJournal<String>> bulkRecords = new ArrayList<IndexJournal<String>>();
+		// contentlets waiting to be mapped together, see ESMappingAPIImpl.toMaps
+		List<Contentlet> toMap = new ArrayList<Contentlet>();
+		for (int i = 0; i < records.size(); i++) {
+			IndexJournal<String> idx = records.get(i);
+			Logger.debug(this, "Indexing document " + idx.getIdentToIndex());
+			List<Contentlet> cons = contentlets.get(idx.getIdentToIndex());
+			if (cons != null) {
+				for (Contentlet con : cons) {
+					try {
+						if (idx.isDelete() && idx.getIdentToIndex().equals(con.getIdentifier()))
+							// we delete contentlets from the identifier pointed on index journal record
+							// its dependencies are reindexed in order to update its relationships fields
+							indexAPI.removeContentFromIndex(con);
+						else
+							toMap.add(con);
+					} catch (Exception e) {
+						Logger.error(this, "Unable to index " + con.getInode(), e);
+					}
+				}
+			}
+			bulkRecords.add(idx);
+			// the pending contentlets are mapped before the bulk is sent, they belong to its records
+			boolean full = bulk.numberOfActions() + toMap.size() >= bulkActions;
+			if (toMap.size() >= MAPPING_BATCH || i == records.size() - 1 || full) {
+				boolean mapped = mapContentlets(toMap, inFullReindex, bulk);
+				toMap = new ArrayList<Contentlet>();
+				if (!mapped) {
+					// the bulk may hold part of the failed contentlets, its records go back to the journal
+					release(bulkRecords);
+					bulk = client.prepareBulk();
+					bulkRecords = new ArrayList<IndexJournal<String>>();
+				}
+			}
+			if (bulk.numberOfActions() >= bulkActions) {
+				HibernateUtil.closeSession();
+				submitBulk(bulk, bulkRecords, !inFullReindex);
+				bulk = client.prepareBulk();
+				bulkRecords = new ArrayList<IndexJournal<String>>();
+			}
+			if (sleepBetweenRecords > 0) {
+				try {
+					Thread.sleep(sleepBetweenRecords);
+				} catch (InterruptedException e) {
+					Logger.error(this, e.getMessage(), e);
+				}
+			}
+		}
+		HibernateUtil.closeSession();
+		if (bulk.numberOfActions() > 0) {
+			submitBulk(bulk, bulkRecords, !inFullReindex);
+		} else if (!bulkRecords.isEmpty()) {
+			recordsIndexed.addAndGet(bulkRecords.size());
+			indexed(bulkRecords);
+		}
+	}
+
+	/**
+	 * Adds the index requests of the contentlets to the bulk
+	 * @return false if they could not be mapped
+	 */
+	private boolean mapContentlets(List<Contentlet> cons, boolean inFullReindex, BulkRequestBuilder bulk) {
+		if (cons.isEmpty()) {
+			return true;
+		}
+		try {
+			indexAPI.addContentToIndex(cons, inFullReindex, bulk);
+			return true;
+		} catch (Exception e) {
+			Logger.error(this, "Unable to index " + cons.size() + " contentlets", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Loads the working and live versions of the identifiers of the records, in every language
+	 * @return the contentlets by identifier
+	 */
+	private Map<String, List<Contentlet>> loadContentlets(List<IndexJournal<String>> records) throws DotDataException, DotSecurityException {
+		Map<String, List<Contentlet>> contentlets = new HashMap<String, List<Contentlet>>();
+		if (records.isEmpty()) {
+			return contentlets;
+		}
+		// oracle takes up to 1000 expressions in a list, same as ESContentFactoryImpl.findContentlets
+		StringBuilder sql = new StringBuilder("select working_inode,live_inode from contentlet_version_info where ");
+		DotConnect dc = new DotConnect();
+		for (int i = 0; i < records.size(); i++) {
+			if (i % 1000 == 0) {
+				sql.append(i == 0 ? "identifier in (?" : ") or identifier in (?");
+			} else {
+				sql.append(",?");
+			}
+		}
+		sql.append(')');
+		dc.setSQL(sql.toString());
+		for (IndexJournal<String> idx : records) {
+			dc.addParam(idx.getIdentToIndex());
+		}
+		List<Map<String, String>> ret = dc.loadResults();
+		List<String> inodes = new ArrayList<String>();
+		for (Map<String, String> m : ret) {
+			String workingInode = m.get("working_inode");
+			String liveInode = m.get("live_inode");
+			inodes.add(workingInode);
+			if (UtilMethods.isSet(liveInode) && !workingInode.equals(liveInode)) {
+				inodes.add(liveInode);
+			}
+		}
+		if (inodes.isEmpty()) {
+			return contentlets;
+		}
+		for (Contentlet con : APILocator.getContentletAPI().findContentlets(inodes)) {
+			List<Contentlet> cons = contentlets.get(con.getIdentifier());
+			if (cons == null) {
+				cons = new ArrayList<Contentlet>();
+				contentlets.put(con.getIdentifier(), cons);
+			}
+			cons.add(con);
+		}
+		return contentlets;
+	}
+
+	/**
+	 * Sends the bulk to elasticsearch, waiting while REINDEX_MAX_BULK_REQUESTS are already
+	 * waiting for it. The records are deleted from the journal once it answers, or given
+	 * back if it rejected the bulk.
+	 */
+	private void submitBulk(BulkRequestBuilder bulk, final List<IndexJournal<String>> records, final boolean live) {
+		try {
+			bulks.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			release(records);
+			return;
+		}
+		bulkRequests.incrementAndGet();
+		try {
+			bulk.execute(new ActionListener<BulkResponse>() {
+				public void onResponse(BulkResponse resp) {
+					bulks.release();
+					if (live)
+						LiveIndexGeneration.changed();
+					if (resp.hasFailures()) {
+						if (isRejection(resp)) {
+							rejected(records);
+							return;
+						}
+						bulkFailures.incrementAndGet();
+						Logger.warn(ReindexPipeline.class, resp.buildFailureMessage());
+					}
+					backoff = 0;
+					recordsIndexed.addAndGet(records.size());
+					indexed(records);
+				}
+
+				public void onFailure(Throwable ex) {
+					bulks.release();
+					if (live)
+						LiveIndexGeneration.changed();
+					if (isRejection(ex)) {
+						rejected(records);
+						return;
+					}
+					bulkFailures.incrementAndGet();
+					Logger.error(ReindexPipeline.class, "Error indexing records", ex);
+					indexed(records);
+				}
+			});
+		} catch (RuntimeException e) {
+			bulks.release();
+			throw e;
+		}
+	}
+
+	private boolean isRejection(BulkResponse resp) {
+		for (BulkItemResponse item : resp.items()) {
+			if (item.failed() && item.failureMessage() != null && item.failureMessage().contains("RejectedExecution")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isRejection(Throwable ex) {
+		for (Throwable t = ex; t != null; t = t.getCause()) {
+			if (t.getClass().getSimpleName().contains("RejectedExecution")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void rejected(List<IndexJournal<String>> records) {
+		bulkRejections.incrementAndGet();
+		backoff = Math.min(Math.max(backoff * 2, 1000), MAX_BACKOFF);
+		backoffUntil = System.currentTimeMillis() + backoff;
+		Logger.warn(ReindexPipeline.class, "Elasticsearch rejected " + records.size() + " records, backing off for " + backoff + " millis");
+		release(records);
+	}
+
+	private void release(List<IndexJournal<String>> records) {
+		try {
+			jAPI.releaseReindexEntryForServer(records);
+		} catch (DotDataException e) {
+			Logger.warn(ReindexPipeline.class, "can't release dist_reindex records", e);
+		}
+		inFlightDone(records);
+	}
+
+	private void indexed(List<IndexJournal<String>> records) {
+		owner.addRecordsToDelete(records);
+		inFlightDone(records);
+	}
+
+	/**
+	 * Lets other batches take the identifiers these records claimed, records that did not
+	 * claim theirs are ignored
+	 */
+	private void inFlightDone(List<IndexJournal<String>> records) {
+		for (IndexJournal<String> idx : records) {
+			if (idx.getIdentToIndex() != null) {
+				identifiersInFlight.remove(idx.getIdentToIndex(), idx);
+			}
+		}
+	}
+
+	/**
+	 * Batches being indexed or waiting for a worker
+	 */
+	public int getBatchesInFlight() {
+		return batchesInFlight.get();
+	}
+
+	/**
+	 * Journal records indexed since startup
+	 */
+	public long getRecordsIndexed() {
+		return recordsIndexed.get();
+	}
+
+	public long getBulkRequests() {
+		return bulkRequests.get();
+	}
+
+	public long getBulkFailures() {
+		return bulkFailures.get();
+	}
+
+	public long getBulkRejections() {
+		return bulkRejections.get();
+	}
+
+	/**
+	 * Journal records indexed per second, measured over windows of at least 10 seconds
+	 */
+	public synchronized double getThroughput() {
+		long now = System.currentTimeMillis();
+		if (now - rateWindowStart >= 10000) {
+			long count = recordsIndexed.get();
+			throughput = (count - rateWindowCount) * 1000d / (now - rateWindowStart);
+			rateWindowStart = now;
+			rateWindowCount = count;
+		}
+		return throughput;
+	}
+
+}
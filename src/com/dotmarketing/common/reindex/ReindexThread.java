@@ -6,37 +6,32 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-
-import org.elasticsearch.action.ActionListener;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
-import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.client.Client;
 
 import com.dotcms.content.elasticsearch.business.ContentletIndexAPI;
-import com.dotcms.content.elasticsearch.util.ESClient;
 import com.dotcms.content.elasticsearch.util.ESReindexationProcessStatus;
 import com.dotmarketing.business.APILocator;
-import com.dotmarketing.business.FactoryLocator;
 import com.dotmarketing.common.business.journal.DistributedJournalAPI;
 import com.dotmarketing.common.business.journal.IndexJournal;
-import com.dotmarketing.common.db.DotConnect;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotHibernateException;
-import com.dotmarketing.exception.DotSecurityException;
-import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
-import com.dotmarketing.util.UtilMethods;
 
+/**
+ * Claims the records of dist_reindex_journal for this server, REINDEX_RECORDS_TO_FETCH
+ * (default 100) at a time while the {@link ReindexPipeline} has room for them, deletes the
+ * records once indexed and runs the switchover at the end of a full reindex.
+ */
 public class ReindexThread extends Thread {
 
 	private static final ContentletIndexAPI indexAPI = APILocator.getContentletIndexAPI();
     private final LinkedList<IndexJournal<String>> remoteQ = new LinkedList<IndexJournal<String>>();
     private final LinkedList<IndexJournal<String>> remoteDelQ = new LinkedList<IndexJournal<String>>();
 	private final DistributedJournalAPI<String> jAPI = APILocator.getDistributedJournalAPI();
+	private final ReindexPipeline pipeline = new ReindexPipeline(this);
+	private final int recordsToFetch = Config.getIntProperty("REINDEX_RECORDS_TO_FETCH", 100);
 
 	private static ReindexThread instance;
 
@@ -52,7 +47,7 @@ public class ReindexThread extends Thread {
 		start = false;
 	}
 
-	private void addRecordsToDelete(List<IndexJournal<String>> records) {
+	void addRecordsToDelete(List<IndexJournal<String>> records) {
 	    synchronized(remoteDelQ) {
 	        remoteDelQ.addAll(records);
 	    }
@@ -87,9 +82,14 @@ public class ReindexThread extends Thread {
 			}
 			if (work) {
 			    boolean wait=true;
+			    boolean busy=false;
 				try {
-					if(remoteQ.size()==0)
-					    fillRemoteQ();
+					if(remoteQ.size()==0) {
+					    if(pipeline.hasCapacity())
+					        fillRemoteQ();
+					    else
+					        busy=true;
+					}
 					
 					if(remoteQ.size()==0 && ESReindexationProcessStatus.inFullReindexation() && jAPI.recordsLeftToIndexForServer()==0) {
 					    Connection conn=DbConnectionFactory.getDataSource().getConnection();
@@ -132,8 +132,8 @@ public class ReindexThread extends Thread {
 					    }
 					}    
 					
-					if(!remoteDelQ.isEmpty()) {
-					    synchronized(remoteDelQ) {
+					synchronized(remoteDelQ) {
+					    while(!remoteDelQ.isEmpty()) {
 				            try {
 				                List<IndexJournal<String>> toDelete=remoteDelQ;
 				                if(toDelete.size()>=200) {
@@ -150,46 +150,21 @@ public class ReindexThread extends Thread {
 				            }
 				            catch(Exception ex) {
 				                Logger.warn(ReindexThread.class,"can't dele dist_reindex records. Will try again later", ex);
+				                break;
 				            }
 				        }
 					}
-					else if(!remoteQ.isEmpty()) {
+
+					if(!remoteQ.isEmpty()) {
+					    // the workers load, map and send the batch while we claim the next one
 					    wait=false;
-					    Client client=new ESClient().getClient();
-						BulkRequestBuilder bulk=client.prepareBulk();
-						final ArrayList<IndexJournal<String>> recordsToDelete=new ArrayList<IndexJournal<String>>();
-						while(!remoteQ.isEmpty()) {
-    					    IndexJournal<String> idx = remoteQ.removeFirst();
-    				        writeDocumentToIndex(bulk,idx);
-    				        recordsToDelete.add(idx);
-    				        if(reindexSleepDuringIndex){
-	    				        try {
-	    							Thread.sleep(delay);
-	    						} catch (InterruptedException e) {
-	    							Logger.error(this, e.getMessage(), e);
-	    						}
-    				        }
-						}
-						HibernateUtil.closeSession();
-				        if(bulk.numberOfActions()>0) {
-				            bulk.execute(new ActionListener<BulkResponse>() {
-				                void deleteRecords() {
-				                    addRecordsToDelete(recordsToDelete);
-				                }
-                                public void onResponse(BulkResponse resp) {
-                                    deleteRecords();
-                                    if(resp.hasFailures())
-                                        Logger.warn(this, resp.buildFailureMessage());
-                                }
-                                public void onFailure(Throwable ex) {
-                                    Logger.error(ReindexThread.class,"Error indexing records", ex);
-                                    deleteRecords();
-                                }
-                            });
-				        }
-				        else if(recordsToDelete.size()>0) {
-				            addRecordsToDelete(recordsToDelete);
-				        }
+					    pipeline.setSleepBetweenRecords(reindexSleepDuringIndex ? delay : 0);
+					    if(pipeline.submit(new ArrayList<IndexJournal<String>>(remoteQ))) {
+					        remoteQ.clear();
+					    }
+					    else {
+					        busy=true;
+					    }
 					}
 					
 				} catch (Exception ex) {
@@ -215,13 +190,21 @@ public class ReindexThread extends Thread {
 				
 				// if we have no records and are just waiting to check if we
 				// are in a full reindex fired by another server
-				if (wait && remoteQ.isEmpty()) {
+				if (wait && !busy && remoteQ.isEmpty()) {
 					try {
 						Thread.sleep(delay);
 					} catch (InterruptedException e) {
 						Logger.error(this, e.getMessage(), e);
 					}
 				}
+				// the workers are all busy, give them some time
+				else if (busy) {
+					try {
+						Thread.sleep(sleep);
+					} catch (InterruptedException e) {
+						Logger.error(this, e.getMessage(), e);
+					}
+				}
 			} else {
 				try {
 					Thread.sleep(sleep);
@@ -353,7 +336,7 @@ public class ReindexThread extends Thread {
 	private void fillRemoteQ() throws DotDataException {
 	    try {
 	        HibernateUtil.startTransaction();
-	        remoteQ.addAll(jAPI.findContentReindexEntriesToReindex());
+	        remoteQ.addAll(jAPI.findContentReindexEntriesToReindex(recordsToFetch));
 	        HibernateUtil.commitTransaction();
 	    }
 	    catch(Exception ex) {
@@ -364,44 +347,6 @@ public class ReindexThread extends Thread {
 	    }
 	}
 
-	@SuppressWarnings("unchecked")
-	private void writeDocumentToIndex(BulkRequestBuilder bulk, IndexJournal<String> idx) throws DotDataException, DotSecurityException {
-	    Logger.debug(this, "Indexing document "+idx.getIdentToIndex());
-	    System.setProperty("IN_FULL_REINDEX", "true");
-//	    String sql = "select distinct inode from contentlet join contentlet_version_info " +
-//                " on (inode=live_inode or inode=working_inode) and contentlet.identifier=?";
-	    
-	    String sql = "select working_inode,live_inode from contentlet_version_info where identifier=?";
-	    
-        DotConnect dc = new DotConnect();
-        dc.setSQL(sql);
-        dc.addParam(idx.getIdentToIndex());
-        List<Map<String,String>> ret = dc.loadResults();
-        List<String> inodes = new ArrayList<String>(); 
-        for(Map<String,String> m : ret) {
-        	String workingInode = m.get("working_inode");
-        	String liveInode = m.get("live_inode");
-        	inodes.add(workingInode);
-        	if(UtilMethods.isSet(liveInode) && !workingInode.equals(liveInode)){
-        		inodes.add(liveInode);
-        	}
-        }
-        
-        for(String inode : inodes) {
-        				
-            Contentlet con = FactoryLocator.getContentletFactory().convertFatContentletToContentlet(
-                    (com.dotmarketing.portlets.contentlet.business.Contentlet)
-                        HibernateUtil.load(com.dotmarketing.portlets.contentlet.business.Contentlet.class, inode));
-            
-            if(idx.isDelete() && idx.getIdentToIndex().equals(con.getIdentifier()))
-                // we delete contentlets from the identifier pointed on index journal record
-                // its dependencies are reindexed in order to update its relationships fields
-                indexAPI.removeContentFromIndex(con);
-            else
-                indexAPI.addContentToIndex(con,false,true,indexAPI.isInFullReindex(),bulk);
-        }
-	}
-	
 	int threadsPausing = 0;
 
 	public synchronized void pause() {
@@ -420,6 +365,13 @@ public class ReindexThread extends Thread {
 	public boolean isWorking() {
 		return work;
 	}
+
+	/**
+	 * The workers indexing the claimed records, with their throughput and counters
+	 */
+	public ReindexPipeline getPipeline() {
+		return pipeline;
+	}
 	
 	public void stopFullReindexation() throws DotDataException {
 	    HibernateUtil.startTransaction();
@@ -7,6 +7,7 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -29,6 +30,7 @@ import com.dotmarketing.business.PermissionAPI;
 import com.dotmarketing.business.web.HostWebAPI;
 import com.dotmarketing.business.web.WebAPILocator;
 import com.dotmarketing.cache.LiveCache;
+import com.dotmarketing.cache.URIResolutionCache;
 import com.dotmarketing.cache.VirtualLinksCache;
 import com.dotmarketing.cache.WorkingCache;
 import com.dotmarketing.cms.factories.PublicCompanyFactory;
@@ -45,6 +47,8 @@ import com.dotmarketing.util.JBossRulesUtils;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.RegEX;
 import com.dotmarketing.util.UtilMethods;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.liferay.portal.PortalException;
 import com.liferay.portal.SystemException;
 import com.liferay.portal.language.LanguageException;
@@ -210,6 +214,8 @@ public class CMSFilter implements Filter {
         }
 
         String pointer = null;
+        URIResolutionCache.ResolvedURI resolved = null;
+        long langId = URIResolutionCache.getLanguageId(req.getParameter("language_id"));
 
 
         if(!uri.equals(pointer) && !uri.endsWith("/") && ! RegEX.contains(uri, folderPathRegEx) && uri.indexOf("/dotCMS/") == -1) {
@@ -253,7 +259,8 @@ public class CMSFilter implements Filter {
         } else {
 
 			try {
-				pointer = LiveCache.getPathFromCache(uri, host);
+				resolved = URIResolutionCache.resolve(uri, host, langId);
+				pointer = resolved.getPointer();
 			} catch (Exception e) {
 				Logger.debug(this.getClass(), "Can't find pointer " + uri);
 			}
@@ -426,36 +433,41 @@ public class CMSFilter implements Filter {
                     signedIn = true;
                 }
 
-                Identifier ident = null;
-
                 try {
-                	ident =APILocator.getIdentifierAPI().find(host,uri);
+                	// the live uri resolution already knows the identifier and live version
+                	String identifier;
+                	String assetType;
+                	String liveInode = null;
+                	if(resolved != null && resolved.getIdentifier() != null && pointer.equals(resolved.getPointer())){
+                		identifier = resolved.getIdentifier();
+                		assetType = resolved.getAssetType();
+                		liveInode = resolved.getLiveInode();
+                	}else{
+                		Identifier ident =APILocator.getIdentifierAPI().find(host,uri);
+                		identifier = ident.getId();
+                		assetType = ident.getAssetType();
+                	}
                 	/**
                 	 * Build a fake proxy file object so we
                 	 * can get inheritable permissions on it
                 	 * without having to hit cache or db
                 	 */
                 	boolean canRead = false;
-                	if(ident.getAssetType().equals("contentlet")){
-                		long langId;
-            			String langIdReq = req.getParameter("language_id");
-            			if(!UtilMethods.isSet(langIdReq)){
-            				langId = APILocator.getLanguageAPI().getDefaultLanguage().getId();
-            			}else{
-            				langId = Long.parseLong(langIdReq);
-            			}
-
+                	if(assetType.equals("contentlet")){
                 		try{
-                			ContentletVersionInfo cinfo = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), langId);
-                			Contentlet proxy  = APILocator.getContentletAPI().find(cinfo.getLiveInode(), user, true);
+                			if(liveInode == null){
+                				ContentletVersionInfo cinfo = APILocator.getVersionableAPI().getContentletVersionInfo(identifier, langId);
+                				liveInode = cinfo.getLiveInode();
+                			}
+                			Contentlet proxy  = APILocator.getContentletAPI().find(liveInode, user, true);
                 			canRead = UtilMethods.isSet(proxy.getInode());
                 		}catch(Exception e){
-    						Logger.warn(this, "Unable to find file asset contentlet with identifier " + ident.getId(), e);
+    						Logger.warn(this, "Unable to find file asset contentlet with identifier " + identifier, e);
                 		}
 
                 	}else{
                 		com.dotmarketing.portlets.files.model.File f = new com.dotmarketing.portlets.files.model.File();
-                        (f).setIdentifier(ident.getInode());
+                        (f).setIdentifier(identifier);
                         canRead = permissionAPI.doesUserHavePermission(f, PermissionAPI.PERMISSION_READ, user, true);
     					f = null;
                 	}
@@ -534,8 +546,14 @@ public class CMSFilter implements Filter {
 
     }
 
-    private static Set<String> excludeList=null;
+    private static volatile URIExclusionTable excludeList=null;
     private static final Integer mutex=new Integer(0);
+    // webapp files existence, misses expire so files written at runtime get picked up
+    private static final Cache<String, Boolean> webappFiles = CacheBuilder.newBuilder()
+            .maximumSize(Config.getIntProperty("CMSFILTER_FILE_CACHE_SIZE", 10000))
+            .expireAfterWrite(Config.getIntProperty("CMSFILTER_FILE_CACHE_TTL", 300), TimeUnit.SECONDS)
+            .build();
+
     private static void buildExcludeList() {
         synchronized(mutex) {
          if(excludeList!=null) return;
@@ -608,7 +626,7 @@ public class CMSFilter implements Filter {
 
  	        }
          }
-         excludeList=set;
+         excludeList=new URIExclusionTable(set);
         }
     }
 
@@ -616,17 +634,32 @@ public class CMSFilter implements Filter {
     	if(excludeList== null){
     		buildExcludeList();
     	}
-    	synchronized(excludeList){
-    		excludeList.add(URLPattern);
+    	synchronized(mutex){
+    		Set<String> set=new HashSet<String>(excludeList.getPatterns());
+    		set.add(URLPattern);
+    		excludeList=new URIExclusionTable(set);
     	}
+    	// whatever got deployed with the new mapping
+    	webappFiles.invalidateAll();
     }
 
 	public static void removeExclude(String URLPattern){
 		if(excludeList!= null){
-			synchronized(excludeList){
-				excludeList.remove(URLPattern);
+			synchronized(mutex){
+				Set<String> set=new HashSet<String>(excludeList.getPatterns());
+				set.remove(URLPattern);
+				excludeList=new URIExclusionTable(set);
 			}
     	}
+		webappFiles.invalidateAll();
+    }
+
+    /**
+     * Forgets the webapp files existence answers, called when OSGi bundles copy or remove
+     * their files and when all the caches are flushed
+     */
+    public static void clearWebappFileCache(){
+    	webappFiles.invalidateAll();
     }
     
     public static boolean excludeURI(String uri) {
@@ -634,23 +667,26 @@ public class CMSFilter implements Filter {
                 || uri.endsWith(".php")
         		|| uri.trim().startsWith("/c/")
         		|| (uri.indexOf("/ajaxfileupload/upload") != -1)
-        		||  new File(Config.CONTEXT.getRealPath(uri)).exists()
+        		||  webappFileExists(uri)
         		&& !"/".equals(uri)) {
         	return true;
         }
         
         if(excludeList==null) buildExcludeList();
 
-        if(excludeList.contains(uri)) return true;
-
-        for ( String exclusion : excludeList ) {
-            if ( RegEX.contains( uri, exclusion ) ) {
-                return true;
-            }
-        }
-        return false;
+        return excludeList.matches(uri);
    }
 
+    private static boolean webappFileExists(String uri) {
+    	Boolean exists = webappFiles.getIfPresent(uri);
+    	if (exists == null) {
+    		String path = Config.CONTEXT.getRealPath(uri);
+    		exists = (path != null && new File(path).exists());
+    		webappFiles.put(uri, exists);
+    	}
+    	return exists;
+    }
+
     private boolean endInTheVelocityPageExtension(String URI) {
         boolean returnValue = false;
         if (URI.indexOf("?") != -1) {
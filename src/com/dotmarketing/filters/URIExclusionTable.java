@@ -0,0 +1,153 @@
+package com.dotmarketing.filters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * The CMSFilter exclusions compiled once so a uri can be classified without walking the
+ * whole list. Patterns like <code>^/dwr/</code> and <code>^/icon$</code> go to a prefix
+ * trie and an exact match set, the rest are joined into a single regular expression.
+ * Instances are immutable, a new one is built when the exclusions change.
+ */
+public class URIExclusionTable {
+
+	private static final String REGEX_CHARS = "\\.[]{}()*+?|^$";
+
+	private final Set<String> patterns;
+	private final Set<String> exact = new HashSet<String>();
+	private final Node prefixes = new Node();
+	private final Pattern regex;
+	private final ThreadLocal<Matcher> matcher = new ThreadLocal<Matcher>() {
+		protected Matcher initialValue() {
+			return (regex == null) ? null : regex.matcher("");
+		}
+	};
+
+	public URIExclusionTable(Collection<String> exclusions) {
+		patterns = new HashSet<String>(exclusions);
+		List<String> others = new ArrayList<String>();
+		for (String pattern : patterns) {
+			if (!pattern.startsWith("^")) {
+				others.add(pattern);
+				continue;
+			}
+			boolean anchored = pattern.endsWith("$") && !pattern.endsWith("\\$");
+			String literal = pattern.substring(1, anchored ? pattern.length() - 1 : pattern.length());
+			if (!isLiteral(literal)) {
+				others.add(pattern);
+			} else if (anchored) {
+				exact.add(literal);
+			} else {
+				prefixes.add(literal);
+			}
+		}
+		regex = compile(others);
+	}
+
+	/**
+	 * @return the exclusions this table was built from
+	 */
+	public Set<String> getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * True if the uri is one of the exclusions or is matched by one of them
+	 * @param uri
+	 * @return
+	 */
+	public boolean matches(String uri) {
+		if (patterns.contains(uri) || exact.contains(uri) || prefixes.matchesPrefix(uri)) {
+			return true;
+		}
+		Matcher m = matcher.get();
+		return m != null && m.reset(uri).find();
+	}
+
+	private static boolean isLiteral(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (REGEX_CHARS.indexOf(s.charAt(i)) > -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Pattern compile(List<String> others) {
+		StringBuilder sb = new StringBuilder();
+		for (String pattern : others) {
+			try {
+				Pattern.compile(pattern);
+			} catch (PatternSyntaxException e) {
+				Logger.error(URIExclusionTable.class, "Unable to compile CMSFilter exclusion " + pattern + " : " + e.getMessage());
+				continue;
+			}
+			if (sb.length() > 0) {
+				sb.append('|');
+			}
+			sb.append("(?:").append(pattern).append(')');
+		}
+		return (sb.length() == 0) ? null : Pattern.compile(sb.toString());
+	}
+
+	/**
+	 * Character trie node, children are kept sorted by char
+	 */
+	private static class Node {
+
+		private char[] chars = new char[0];
+		private Node[] children = new Node[0];
+		private boolean end = false;
+
+		void add(String prefix) {
+			Node node = this;
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.child(prefix.charAt(i));
+			}
+			node.end = true;
+		}
+
+		private Node child(char c) {
+			int idx = Arrays.binarySearch(chars, c);
+			if (idx >= 0) {
+				return children[idx];
+			}
+			idx = -idx - 1;
+			char[] newChars = new char[chars.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(chars, 0, newChars, 0, idx);
+			System.arraycopy(children, 0, newChildren, 0, idx);
+			newChars[idx] = c;
+			newChildren[idx] = new Node();
+			System.arraycopy(chars, idx, newChars, idx + 1, chars.length - idx);
+			System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+			chars = newChars;
+			children = newChildren;
+			return newChildren[idx];
+		}
+
+		boolean matchesPrefix(String uri) {
+			Node node = this;
+			for (int i = 0; i < uri.length(); i++) {
+				if (node.end) {
+					return true;
+				}
+				int idx = Arrays.binarySearch(node.chars, uri.charAt(i));
+				if (idx < 0) {
+					return false;
+				}
+				node = node.children[idx];
+			}
+			return node.end;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.dotmarketing.filters.compression;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps up to maxSize idle raw (nowrap) deflaters of the given level so responses do
+ * not allocate a new native zlib stream each time
+ */
+public class DeflaterPool {
+
+	private static final DeflaterPool DEFAULT = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, 32);
+
+	private final int level;
+	private final int maxSize;
+	private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<Deflater>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	public DeflaterPool(int level, int maxSize) {
+		this.level = level;
+		this.maxSize = maxSize;
+	}
+
+	public static DeflaterPool getDefault() {
+		return DEFAULT;
+	}
+
+	public Deflater acquire() {
+		Deflater deflater = idle.poll();
+		if (deflater == null) {
+			return new Deflater(level, true);
+		}
+		idleCount.decrementAndGet();
+		return deflater;
+	}
+
+	public void release(Deflater deflater) {
+		deflater.reset();
+		if (idleCount.incrementAndGet() <= maxSize) {
+			idle.offer(deflater);
+		} else {
+			idleCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+}
@@ -11,27 +11,92 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 
+/**
+ * Streams gzipped responses to the clients that accept it.
+ * GZIP_COMPRESSION_LEVEL sets the deflate level (1-9, default 6), responses under
+ * GZIP_MIN_SIZE bytes (default 1024) and the content types starting with one of
+ * GZIP_SKIP_CONTENT_TYPES are sent uncompressed.
+ */
 public class GZIPFilter implements Filter {
 
+  private static final String DEFAULT_SKIP_CONTENT_TYPES = "image/,video/,audio/,application/zip,application/x-gzip,"
+      + "application/gzip,application/x-compress,application/x-rar-compressed,application/x-7z-compressed,application/pdf";
+
+  private DeflaterPool deflaterPool = DeflaterPool.getDefault();
+  private int minSize = 1024;
+  private String[] skipContentTypes = new String[0];
+
   public void doFilter(ServletRequest req, ServletResponse res,FilterChain chain) throws IOException, ServletException {
     if (req instanceof HttpServletRequest) {
       HttpServletRequest request = (HttpServletRequest) req;
       HttpServletResponse response = (HttpServletResponse) res;
-      String ae = request.getHeader("accept-encoding");
-      if (ae != null && ae.indexOf("gzip") != -1) {
+      if (acceptsGzip(request)) {
         Logger.debug(this, "GZIP supported, compressing.");
-        GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response);
-        chain.doFilter(req, wrappedResponse);
-        wrappedResponse.finishResponse();
+        GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response, deflaterPool, minSize, skipContentTypes);
+        try {
+          chain.doFilter(req, wrappedResponse);
+        } finally {
+          // closes the stream, which hands the deflater back to the pool
+          wrappedResponse.finishResponse();
+        }
         return;
       }
       chain.doFilter(req, res);
     }
   }
 
+  /**
+   * True if the Accept-Encoding header of the request allows gzip, either by name or
+   * through *, with a q-value above 0
+   * @param request
+   * @return
+   */
+  public static boolean acceptsGzip(HttpServletRequest request) {
+    String ae = request.getHeader("Accept-Encoding");
+    if (ae == null) {
+      return false;
+    }
+    float gzip = -1;
+    float any = -1;
+    for (String coding : ae.split(",")) {
+      String[] params = coding.split(";");
+      String name = params[0].trim().toLowerCase();
+      float q = 1;
+      for (int i = 1; i < params.length; i++) {
+        String param = params[i].trim().toLowerCase();
+        if (param.startsWith("q=")) {
+          try {
+            q = Float.parseFloat(param.substring(2).trim());
+          } catch (NumberFormatException e) {
+            q = 0;
+          }
+        }
+      }
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzip = Math.max(gzip, q);
+      } else if (name.equals("*")) {
+        any = Math.max(any, q);
+      }
+    }
+    return (gzip >= 0) ? gzip > 0 : any > 0;
+  }
+
   public void init(FilterConfig filterConfig) {
+    int level = Config.getIntProperty("GZIP_COMPRESSION_LEVEL", 6);
+    if (level < 1 || level > 9) {
+      Logger.warn(this, "Invalid GZIP_COMPRESSION_LEVEL " + level + ", using 6");
+      level = 6;
+    }
+    deflaterPool = new DeflaterPool(level, Config.getIntProperty("GZIP_DEFLATER_POOL_SIZE", 32));
+    minSize = Config.getIntProperty("GZIP_MIN_SIZE", 1024);
+    String[] types = Config.getStringProperty("GZIP_SKIP_CONTENT_TYPES", DEFAULT_SKIP_CONTENT_TYPES).split(",");
+    for (int i = 0; i < types.length; i++) {
+      types[i] = types[i].trim().toLowerCase();
+    }
+    skipContentTypes = types;
   }
 
   public void destroy() {
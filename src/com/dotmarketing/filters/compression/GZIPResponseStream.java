@@ -1,60 +1,97 @@
 package com.dotmarketing.filters.compression;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import com.dotmarketing.util.Logger;
 
+/**
+ * Gzips the response as it is written. The first minSize bytes are held back to decide
+ * whether compressing is worth it: smaller responses and the content types starting with
+ * one of skipContentTypes (already compressed formats) are written as they are.
+ */
 public class GZIPResponseStream extends ServletOutputStream {
-  protected ByteArrayOutputStream baos = null;
-  protected GZIPOutputStream gzipstream = null;
+
+  // magic, deflate, no flags, no mtime, no extra flags, unknown OS
+  private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
   protected boolean closed = false;
   protected HttpServletResponse response = null;
   protected ServletOutputStream output = null;
 
+  private final DeflaterPool deflaterPool;
+  private final String[] skipContentTypes;
+  private final byte[] pending;
+  private int pendingCount = 0;
+  // null until we know if the response is compressed
+  private Boolean compress = null;
+  private Deflater deflater = null;
+  // the servlet's Content-Length, passed through when the response is not compressed
+  private int contentLength = -1;
+  private final CRC32 crc = new CRC32();
+  private final byte[] deflateBuffer = new byte[8192];
+
   public GZIPResponseStream(HttpServletResponse response) throws IOException {
+    this(response, DeflaterPool.getDefault(), 0, new String[0]);
+  }
+
+  public GZIPResponseStream(HttpServletResponse response, DeflaterPool deflaterPool, int minSize, String[] skipContentTypes) throws IOException {
     super();
     closed = false;
     this.response = response;
     this.output = response.getOutputStream();
-    baos = new ByteArrayOutputStream();
-    gzipstream = new GZIPOutputStream(baos);
+    this.deflaterPool = deflaterPool;
+    this.skipContentTypes = skipContentTypes;
+    this.pending = new byte[Math.max(0, minSize)];
   }
 
   public void close() throws IOException {
     if (closed) {
-      throw new IOException("This output stream has already been closed");
+      return;
     }
-    gzipstream.finish();
-
-    byte[] bytes = baos.toByteArray();
-
-
-    response.addHeader("Content-Length", 
-                       Integer.toString(bytes.length)); 
-    response.addHeader("Content-Encoding", "gzip");
-    output.write(bytes);
-    output.flush();
-    output.close();
     closed = true;
+    try {
+      if (compress == null) {
+        // the whole response is under the minimum size
+        compress = Boolean.FALSE;
+        if (pendingCount > 0) {
+          response.setContentLength(pendingCount);
+          output.write(pending, 0, pendingCount);
+        }
+      } else if (compress) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          deflate();
+        }
+        writeTrailer();
+      }
+      output.flush();
+      output.close();
+    } finally {
+      if (deflater != null) {
+        deflaterPool.release(deflater);
+        deflater = null;
+      }
+    }
   }
 
   public void flush() throws IOException {
     if (closed) {
       throw new IOException("Cannot flush a closed output stream");
     }
-    gzipstream.flush();
+    // an explicit flush wants the bytes out, no point in waiting for the min size
+    if (compress == null && pendingCount > 0) {
+      start();
+    }
+    output.flush();
   }
 
   public void write(int b) throws IOException {
-    if (closed) {
-      throw new IOException("Cannot write to a closed output stream");
-    }
-    gzipstream.write((byte)b);
+    write(new byte[] { (byte) b }, 0, 1);
   }
 
   public void write(byte b[]) throws IOException {
@@ -62,17 +99,107 @@ public class GZIPResponseStream extends ServletOutputStream {
   }
 
   public void write(byte b[], int off, int len) throws IOException {
-    Logger.debug(this, "writing bytes to gzip stream gzip");
     if (closed) {
       throw new IOException("Cannot write to a closed output stream");
     }
-    gzipstream.write(b, off, len);
+    if (len == 0) {
+      return;
+    }
+    if (compress == null) {
+      if (pendingCount + len < pending.length) {
+        System.arraycopy(b, off, pending, pendingCount, len);
+        pendingCount += len;
+        return;
+      }
+      start();
+    }
+    if (compress) {
+      crc.update(b, off, len);
+      deflater.setInput(b, off, len);
+      while (!deflater.needsInput()) {
+        deflate();
+      }
+    } else {
+      output.write(b, off, len);
+    }
   }
 
   public boolean closed() {
     return (this.closed);
   }
-  
+
+  public boolean isCompressing() {
+    return Boolean.TRUE.equals(compress);
+  }
+
+  /**
+   * Keeps the length set by the servlet, it is only sent when the response is not compressed
+   */
+  public void setContentLength(int length) {
+    contentLength = length;
+    if (Boolean.FALSE.equals(compress) && length >= 0) {
+      response.setContentLength(length);
+    }
+  }
+
   public void reset() {
   }
+
+  /**
+   * Decides if the response is compressed and writes what was held back
+   */
+  private void start() throws IOException {
+    compress = shouldCompress();
+    if (compress) {
+      Logger.debug(this, "gzipping response");
+      response.setHeader("Content-Encoding", "gzip");
+      response.addHeader("Vary", "Accept-Encoding");
+      deflater = deflaterPool.acquire();
+      output.write(GZIP_HEADER);
+    } else if (contentLength >= 0) {
+      response.setContentLength(contentLength);
+    }
+    if (pendingCount > 0) {
+      int count = pendingCount;
+      pendingCount = 0;
+      write(pending, 0, count);
+    }
+  }
+
+  private boolean shouldCompress() {
+    if (response.containsHeader("Content-Encoding")) {
+      return false;
+    }
+    String contentType = response.getContentType();
+    if (contentType != null) {
+      contentType = contentType.toLowerCase();
+      for (String skip : skipContentTypes) {
+        if (contentType.startsWith(skip)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void deflate() throws IOException {
+    int count = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+    if (count > 0) {
+      output.write(deflateBuffer, 0, count);
+    }
+  }
+
+  private void writeTrailer() throws IOException {
+    byte[] trailer = new byte[8];
+    writeInt((int) crc.getValue(), trailer, 0);
+    writeInt((int) deflater.getBytesRead(), trailer, 4);
+    output.write(trailer);
+  }
+
+  private static void writeInt(int value, byte[] buf, int offset) {
+    buf[offset] = (byte) value;
+    buf[offset + 1] = (byte) (value >> 8);
+    buf[offset + 2] = (byte) (value >> 16);
+    buf[offset + 3] = (byte) (value >> 24);
+  }
 }
@@ -12,14 +12,47 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
   protected HttpServletResponse origResponse = null;
   protected ServletOutputStream stream = null;
   protected PrintWriter writer = null;
+  // set when the servlet writes an already encoded body, e.g. a gzipped cached page
+  protected boolean encoded = false;
+  private final DeflaterPool deflaterPool;
+  private final int minSize;
+  private final String[] skipContentTypes;
+  // length set by the servlet, only sent if the body ends up not being compressed
+  private int contentLength = -1;
 
   public GZIPResponseWrapper(HttpServletResponse response) {
+    this(response, DeflaterPool.getDefault(), 0, new String[0]);
+  }
+
+  public GZIPResponseWrapper(HttpServletResponse response, DeflaterPool deflaterPool, int minSize, String[] skipContentTypes) {
     super(response);
     origResponse = response;
+    this.deflaterPool = deflaterPool;
+    this.minSize = minSize;
+    this.skipContentTypes = skipContentTypes;
   }
 
   public ServletOutputStream createOutputStream() throws IOException {
-    return (new GZIPResponseStream(origResponse));
+    if (encoded) {
+      return origResponse.getOutputStream();
+    }
+    GZIPResponseStream gzipStream = new GZIPResponseStream(origResponse, deflaterPool, minSize, skipContentTypes);
+    gzipStream.setContentLength(contentLength);
+    return gzipStream;
+  }
+
+  public void setHeader(String name, String value) {
+    if ("Content-Encoding".equalsIgnoreCase(name)) {
+      encoded = true;
+    }
+    super.setHeader(name, value);
+  }
+
+  public void addHeader(String name, String value) {
+    if ("Content-Encoding".equalsIgnoreCase(name)) {
+      encoded = true;
+    }
+    super.addHeader(name, value);
   }
 
   public void finishResponse() {
@@ -35,7 +68,13 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
   }
 
   public void flushBuffer() throws IOException {
-    stream.flush();
+    if (writer != null) {
+      writer.flush();
+    } else if (stream != null) {
+      stream.flush();
+    } else {
+      super.flushBuffer();
+    }
   }
 
   public ServletOutputStream getOutputStream() throws IOException {
@@ -58,9 +97,19 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
     }
 
    stream = createOutputStream();
-   writer = new PrintWriter(new OutputStreamWriter(stream, "UTF-8"));
+   String charset = origResponse.getCharacterEncoding();
+   writer = new PrintWriter(new OutputStreamWriter(stream, charset != null ? charset : "UTF-8"));
    return (writer);
   }
 
-  public void setContentLength(int length) {}
+  public void setContentLength(int length) {
+    if (encoded) {
+      super.setContentLength(length);
+      return;
+    }
+    contentLength = length;
+    if (stream instanceof GZIPResponseStream) {
+      ((GZIPResponseStream) stream).setContentLength(length);
+    }
+  }
 }
@@ -0,0 +1,135 @@
+package com.dotmarketing.image.filter;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.business.DotCacheAdministrator;
+import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+
+/**
+ * Remembers the images generated by the filter chains, keyed by source file (which holds
+ * the inode), chain and filter parameters, see {@link ImageFilterChain#getKey(File, Map)}.
+ * A hit gives the generated file with its size, date and mime type, so it can be served
+ * without working out the result file name or creating the dotGenerated folders.
+ *
+ * Entries live in the derivativeimagecache region, which is kept on disk so they survive
+ * restarts. A hit only costs an exists() on the generated file, an entry whose file is
+ * gone (the dotGenerated folder was cleaned up) is dropped so the image is generated
+ * again. Checkin purges the entries of the inode whose binaries changed, see
+ * {@link #removeInode(String)}.
+ */
+public class DerivativeImageIndex {
+
+	/**
+	 * @param chain
+	 * @param source the source image
+	 * @param parameters
+	 * @return the generated image or null if it is not known or its file is gone
+	 */
+	public static Derivative get(ImageFilterChain chain, File source, Map<String, String[]> parameters) {
+		if (parameters.get("overwrite") != null) {
+			return null;
+		}
+		String key = chain.getKey(source, parameters);
+		Derivative derivative;
+		try {
+			derivative = (Derivative) CacheLocator.getCacheAdministrator().get(key, getPrimaryGroup());
+		} catch (DotCacheException e) {
+			Logger.debug(DerivativeImageIndex.class, "Cache Entry not found", e);
+			return null;
+		}
+		if (derivative != null && !derivative.getFile().exists()) {
+			CacheLocator.getCacheAdministrator().remove(key, getPrimaryGroup());
+			return null;
+		}
+		return derivative;
+	}
+
+	/**
+	 * Records the image the chain generated
+	 * @param chain
+	 * @param source the source image
+	 * @param parameters
+	 * @param result the generated image
+	 * @return the recorded entry or null if the result does not exist
+	 */
+	public static Derivative put(ImageFilterChain chain, File source, Map<String, String[]> parameters, File result) {
+		long length = result.length();
+		if (length == 0) {
+			return null;
+		}
+		Derivative derivative = new Derivative(result, length, APILocator.getFileAPI().getMimeType(result.getName()));
+		CacheLocator.getCacheAdministrator().put(chain.getKey(source, parameters), derivative, getPrimaryGroup());
+		return derivative;
+	}
+
+	/**
+	 * Drops the images generated from the binaries of the given inode. The keys start
+	 * with the source path, which holds the inode as a folder name
+	 * @param inode the contentlet inode
+	 */
+	public static void removeInode(String inode) {
+		if (!UtilMethods.isSet(inode)) {
+			return;
+		}
+		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
+		Set<String> keys = cache.getKeys(getPrimaryGroup());
+		if (keys == null) {
+			return;
+		}
+		String folder = (File.separator + inode + File.separator).toLowerCase();
+		for (String key : keys) {
+			int end = key.indexOf('|');
+			if (key.substring(0, end < 0 ? key.length() : end).toLowerCase().contains(folder)) {
+				cache.remove(key, getPrimaryGroup());
+			}
+		}
+	}
+
+	public static void clearCache() {
+		CacheLocator.getCacheAdministrator().flushGroup(getPrimaryGroup());
+	}
+
+	public static String getPrimaryGroup() {
+		return "DerivativeImageCache";
+	}
+
+	public static class Derivative implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String path;
+		private final long length;
+		private final long lastModified;
+		private final String mimeType;
+
+		private Derivative(File result, long length, String mimeType) {
+			this.path = result.getPath();
+			this.length = length;
+			this.lastModified = result.lastModified();
+			this.mimeType = mimeType;
+		}
+
+		public File getFile() {
+			return new File(path);
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public String getMimeType() {
+			return mimeType;
+		}
+	}
+}
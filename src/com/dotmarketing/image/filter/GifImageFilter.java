@@ -4,7 +4,6 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
@@ -13,11 +12,8 @@ import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
-import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
 
-import com.dotmarketing.util.Logger;
-
 public class GifImageFilter extends ImageFilter {
 	public String[] getAcceptedParameters(){
 		return  new String[] {
@@ -26,53 +22,42 @@ public class GifImageFilter extends ImageFilter {
 		};
 	}
 	public File runFilter(File file,   Map<String, String[]> parameters) {
+		return runFilterInMemory(file, parameters);
+	}
 
-		File resultFile = getResultsFile(file, parameters, "gif");
+	public boolean canFilterInMemory() {
+		return true;
+	}
 
-		if(!overwrite(resultFile,parameters)){
-			return resultFile;
-		}
-		
-		resultFile.delete();
+	public String getFileExtension() {
+		return "gif";
+	}
 
-		try {
-			Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("gif");
-			ImageWriter writer = iter.next();
-			ImageWriteParam iwp = writer.getDefaultWriteParam();
+	public BufferedImage filter(BufferedImage src, Map<String, String[]> parameters) {
+		BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics2D graphics = dst.createGraphics();  
 
-			BufferedImage src = ImageIO.read(file);
-			BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-			Graphics2D graphics = dst.createGraphics();  
+		graphics.setPaint ( new Color ( 255, 255, 255 ) );
 
-			graphics.setPaint ( new Color ( 255, 255, 255 ) );
+		graphics.fillRect(0, 0, src.getWidth(), src.getHeight());
+		graphics.drawImage(src, 0, 0, src.getWidth(), src.getHeight(),null);
+		graphics.dispose();
+		return dst;
+	}
 
-			graphics.fillRect(0, 0, src.getWidth(), src.getHeight());
-			graphics.drawImage(src, 0, 0, src.getWidth(), src.getHeight(),null);
-			ImageOutputStream ios = ImageIO.createImageOutputStream(resultFile);
+	public void write(BufferedImage image, File resultFile, Map<String, String[]> parameters) throws IOException {
+		Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("gif");
+		ImageWriter writer = iter.next();
+		ImageWriteParam iwp = writer.getDefaultWriteParam();
+		ImageOutputStream ios = ImageIO.createImageOutputStream(resultFile);
+		try {
 			writer.setOutput(ios);
-			writer.write(null,new IIOImage(dst,null,null),iwp);
+			writer.write(null,new IIOImage(image,null,null),iwp);
 			ios.flush();
+		} finally {
 			writer.dispose();
 			ios.close();
-			//writer.setOutput(output);
-
-		//	IIOImage image = new IIOImage(src, null, null);
-		//	writer.write(null, image, iwp);
-		//	writer.dispose();
-			
-
-		} catch (FileNotFoundException e) {
-			Logger.error(this.getClass(), e.getMessage());
-		} catch (IOException e) {
-			Logger.error(this.getClass(), e.getMessage());
 		}
-		
-		
-		
-		
-		
-		return resultFile;
 	}
-	
 
 }
@@ -2,12 +2,8 @@ package com.dotmarketing.image.filter;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 import java.util.Map;
 
-import javax.imageio.ImageIO;
-
-import com.dotmarketing.util.Logger;
 import com.dotmarketing.jhlabs.image.GrayscaleFilter;
 
 public class GrayscaleImageFilter extends ImageFilter {
@@ -17,24 +13,16 @@ public class GrayscaleImageFilter extends ImageFilter {
 	}
 
 	public File runFilter(File file,  Map<String, String[]> parameters) {
+		return runFilterInMemory(file, parameters);
+	}
 
-		File resultFile = getResultsFile(file, parameters);
-		GrayscaleFilter filter = new GrayscaleFilter();
-
-		if (!overwrite(resultFile, parameters)) {
-			return resultFile;
-		}
-
-		try {
-			BufferedImage src = ImageIO.read(file);
-
-			BufferedImage dst = filter.filter(src, null);
-			ImageIO.write(dst, "png", resultFile);
-		} catch (IOException e) {
-			Logger.error(this.getClass(), e.getMessage());
-		}
+	public boolean canFilterInMemory() {
+		return true;
+	}
 
-		return resultFile;
+	public BufferedImage filter(BufferedImage src, Map<String, String[]> parameters) {
+		GrayscaleFilter filter = new GrayscaleFilter();
+		return filter.filter(src, null);
 	}
 
 }
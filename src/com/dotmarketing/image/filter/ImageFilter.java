@@ -1,5 +1,7 @@
 package com.dotmarketing.image.filter;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.security.MessageDigest;
@@ -10,6 +12,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.imageio.ImageIO;
+
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.DotStateException;
 import com.dotmarketing.exception.DotRuntimeException;
@@ -108,6 +112,83 @@ public abstract class ImageFilter implements ImageFilterIf {
 		return buf.toString();
 	}
 
+	/**
+	 * True if the filter implements {@link #filter(BufferedImage, Map)}, so it can be
+	 * fused with the other filters of a chain, see {@link ImageFilterChain}
+	 * @return
+	 */
+	public boolean canFilterInMemory() {
+		return false;
+	}
+
+	/**
+	 * Applies the filter to an image already decoded
+	 * @param src
+	 * @param parameters
+	 * @return the filtered image, or src itself when there is nothing to do
+	 * @throws IOException
+	 */
+	public BufferedImage filter(BufferedImage src, Map<String, String[]> parameters) throws IOException {
+		throw new UnsupportedOperationException(getClass().getName() + " can't filter in memory");
+	}
+
+	/**
+	 * The size the filter scales the image to, used to decode large sources subsampled
+	 * when the filter is the first of the chain
+	 * @param width source width
+	 * @param height source height
+	 * @param parameters
+	 * @return the target size or null if the filter does not scale
+	 */
+	public Dimension getTargetSize(int width, int height, Map<String, String[]> parameters) {
+		return null;
+	}
+
+	/**
+	 * Extension of the files the filter writes
+	 * @return
+	 */
+	public String getFileExtension() {
+		return FILE_EXT;
+	}
+
+	/**
+	 * Encodes the image to the file, filters that produce another format override it
+	 * @param image
+	 * @param resultFile
+	 * @param parameters
+	 * @throws IOException
+	 */
+	public void write(BufferedImage image, File resultFile, Map<String, String[]> parameters) throws IOException {
+		ImageIO.write(image, FILE_EXT, resultFile);
+	}
+
+	/**
+	 * runFilter for the filters that work in memory: decodes the file, filters it and
+	 * writes the result unless it is already there
+	 * @param file
+	 * @param parameters
+	 * @return
+	 */
+	protected File runFilterInMemory(File file, Map<String, String[]> parameters) {
+		File resultFile = getResultsFile(file, parameters, getFileExtension());
+		if (!overwrite(resultFile, parameters)) {
+			return resultFile;
+		}
+		resultFile.delete();
+		try {
+			BufferedImage src = ImageIO.read(file);
+			BufferedImage dst = filter(src, parameters);
+			if (dst == src) {
+				return file;
+			}
+			write(dst, resultFile, parameters);
+		} catch (IOException e) {
+			Logger.error(this.getClass(), e.getMessage());
+		}
+		return resultFile;
+	}
+
 	protected String getFilterName() {
 		return this.getClass().getSimpleName().replaceAll("ImageFilter", "").toLowerCase();
 	}
@@ -0,0 +1,277 @@
+package com.dotmarketing.image.filter;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A chain of image filters, as given by the "filter=" parameter, compiled once and reused.
+ *
+ * When every filter of the chain works in memory the source is decoded once, subsampled
+ * if the first filter scales it to less than half its size, the filters are applied to
+ * the decoded image and only the result of the last one is encoded and written to
+ * dotGenerated. Otherwise each filter runs through {@link ImageFilter#runFilter(File, Map)}
+ * reading the file the previous one wrote.
+ *
+ * Filter instances are kept in a registry, they must not hold per request state.
+ */
+public class ImageFilterChain {
+
+	private static final String FILTER_PACKAGE = "com.dotmarketing.image.filter.";
+
+	private static final ConcurrentHashMap<String, ImageFilter> registry = new ConcurrentHashMap<String, ImageFilter>();
+	private static final Cache<String, ImageFilterChain> chains = CacheBuilder.newBuilder()
+			.maximumSize(Config.getIntProperty("IMAGE_FILTER_CHAIN_CACHE_SIZE", 1000))
+			.build();
+
+	private final String name;
+	private final List<ImageFilter> filters;
+	private final boolean inMemory;
+
+	private ImageFilterChain(String name, List<ImageFilter> filters) {
+		this.name = name;
+		this.filters = Collections.unmodifiableList(filters);
+		boolean inMemory = Config.getBooleanProperty("IMAGE_FILTER_IN_MEMORY", true) && !filters.isEmpty();
+		Set<String> names = new HashSet<String>();
+		for (ImageFilter filter : filters) {
+			// the result file name of a repeated filter only accounts for its first occurrence
+			inMemory &= filter.canFilterInMemory() && names.add(filter.getFilterName());
+		}
+		this.inMemory = inMemory;
+	}
+
+	/**
+	 * Returns the compiled chain for the filter names, unknown filters are left out
+	 * @param chain comma separated filter names, i.e. Resize,Crop,Jpeg
+	 * @return
+	 */
+	public static ImageFilterChain getChain(String chain) {
+		ImageFilterChain compiled = chains.getIfPresent(chain);
+		if (compiled == null) {
+			List<ImageFilter> filters = new ArrayList<ImageFilter>();
+			for (String name : chain.split(",")) {
+				ImageFilter filter = getFilter(name);
+				if (filter != null) {
+					filters.add(filter);
+				}
+			}
+			compiled = new ImageFilterChain(chain, filters);
+			chains.put(chain, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * @param name the filter name, i.e. Resize for the ResizeImageFilter
+	 * @return the filter or null if there is no such filter
+	 */
+	public static ImageFilter getFilter(String name) {
+		ImageFilter filter = registry.get(name);
+		if (filter != null) {
+			return filter;
+		}
+		String clazz = FILTER_PACKAGE + name + "ImageFilter";
+		try {
+			filter = (ImageFilter) Class.forName(clazz).newInstance();
+		} catch (ClassNotFoundException e) {
+			Logger.error(ImageFilterChain.class, "Unable to instanciate : " + clazz);
+			return null;
+		} catch (InstantiationException e) {
+			Logger.error(ImageFilterChain.class, "InstantiationException : " + clazz);
+			return null;
+		} catch (IllegalAccessException e) {
+			Logger.error(ImageFilterChain.class, "IllegalAccessException : " + clazz);
+			return null;
+		} catch (ClassCastException e) {
+			Logger.error(ImageFilterChain.class, "Not an image filter : " + clazz);
+			return null;
+		}
+		ImageFilter existing = registry.putIfAbsent(name, filter);
+		return (existing != null) ? existing : filter;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<ImageFilter> getFilters() {
+		return filters;
+	}
+
+	/**
+	 * True if the chain is run decoding the source once
+	 */
+	public boolean isInMemory() {
+		return inMemory;
+	}
+
+	/**
+	 * Returns the result of the chain if it was already generated. Chains that run in memory
+	 * only write the result of their last filter, the others write the result of each filter
+	 * from the result of the previous one and all of them have to be there.
+	 * @param file
+	 * @param parameters
+	 * @return the resulting file or null
+	 */
+	public File getExistingResult(File file, Map<String, String[]> parameters) {
+		if (filters.isEmpty()) {
+			return file;
+		}
+		if (inMemory) {
+			ImageFilter last = filters.get(filters.size() - 1);
+			File resultFile = last.getResultsFile(file, parameters, last.getFileExtension());
+			return last.overwrite(resultFile, parameters) ? null : resultFile;
+		}
+		File resultFile = file;
+		try {
+			for (ImageFilter filter : filters) {
+				resultFile = filter.getResultsFile(resultFile, parameters, filter.getFileExtension());
+				if (filter.overwrite(resultFile, parameters)) {
+					return null;
+				}
+			}
+		} catch (DotRuntimeException e) {
+			// let the run find out
+			return null;
+		}
+		return resultFile;
+	}
+
+	/**
+	 * Identifies a run of the chain on the file: the file, the chain and the parameters
+	 * the filters of the chain read
+	 * @param file
+	 * @param parameters
+	 * @return
+	 */
+	public String getKey(File file, Map<String, String[]> parameters) {
+		StringBuilder key = new StringBuilder(file.getAbsolutePath()).append('|').append(name);
+		for (Map.Entry<String, String[]> entry : new TreeMap<String, String[]>(parameters).entrySet()) {
+			String param = entry.getKey();
+			boolean used = "overwrite".equals(param) || "fieldVarName".equals(param) || "assetInodeOrIdentifier".equals(param);
+			for (int i = 0; !used && i < filters.size(); i++) {
+				used = param.toLowerCase().startsWith(filters.get(i).getFilterName());
+			}
+			if (used && entry.getValue() != null && entry.getValue().length > 0) {
+				key.append('|').append(param).append('=').append(entry.getValue()[0]);
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Runs the chain on the file
+	 * @param file
+	 * @param parameters
+	 * @return the resulting file
+	 */
+	public File run(File file, Map<String, String[]> parameters) {
+		if (inMemory) {
+			try {
+				return runInMemory(file, parameters);
+			} catch (Exception e) {
+				Logger.warn(ImageFilterChain.class, "Unable to run the filters in memory on " + file.getName() + " : " + e.getMessage());
+			}
+		}
+		for (ImageFilter filter : filters) {
+			try {
+				file = filter.runFilter(file, parameters);
+			} catch (Exception e) {
+				Logger.error(ImageFilterChain.class, "Exception in " + filter.getClass().getName() + " :" + e.getMessage());
+			}
+		}
+		return file;
+	}
+
+	private File runInMemory(File file, Map<String, String[]> parameters) throws IOException {
+		ImageFilter last = filters.get(filters.size() - 1);
+		File resultFile = last.getResultsFile(file, parameters, last.getFileExtension());
+		if (!last.overwrite(resultFile, parameters)) {
+			return resultFile;
+		}
+
+		BufferedImage src = read(file, parameters);
+		BufferedImage image = src;
+		for (ImageFilter filter : filters) {
+			image = filter.filter(image, parameters);
+		}
+		if (image == src) {
+			return file;
+		}
+
+		File tmp = new File(resultFile.getPath() + ".tmp" + Thread.currentThread().getId());
+		try {
+			last.write(image, tmp, parameters);
+			if (!tmp.renameTo(resultFile)) {
+				resultFile.delete();
+				if (!tmp.renameTo(resultFile)) {
+					throw new IOException("Unable to move " + tmp + " to " + resultFile);
+				}
+			}
+		} finally {
+			tmp.delete();
+		}
+		return resultFile;
+	}
+
+	/**
+	 * Decodes the image, subsampled when the first filter scales it down to less than
+	 * half its size. The filters work out their sizes from the decoded image so the
+	 * result is the same, scaled from fewer pixels.
+	 */
+	private BufferedImage read(File file, Map<String, String[]> parameters) throws IOException {
+		ImageInputStream in = ImageIO.createImageInputStream(file);
+		if (in == null) {
+			throw new IOException("Unable to read " + file.getName());
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) {
+				throw new IOException("No image reader for " + file.getName());
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				if (Config.getBooleanProperty("IMAGE_FILTER_SUBSAMPLING", true)) {
+					int width = reader.getWidth(0);
+					int height = reader.getHeight(0);
+					Dimension target = filters.get(0).getTargetSize(width, height, parameters);
+					if (target != null && target.width > 0 && target.height > 0) {
+						int factor = Math.min(width / (target.width * 2), height / (target.height * 2));
+						if (factor > 1) {
+							param.setSourceSubsampling(factor, factor, 0, 0);
+						}
+					}
+				}
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+}
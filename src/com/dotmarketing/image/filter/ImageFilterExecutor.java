@@ -0,0 +1,134 @@
+package com.dotmarketing.image.filter;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dotmarketing.business.CacheLoadCoalescer;
+import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotHibernateException;
+import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Generates image derivatives on a bounded pool of IMAGE_FILTER_THREADS workers (default
+ * the number of processors) instead of the request threads. Requests for the same file,
+ * chain and filter parameters wait for a single run. When IMAGE_FILTER_QUEUE_SIZE runs
+ * (default 100) are already waiting for a worker, or a run takes longer than
+ * IMAGE_FILTER_TIMEOUT seconds (default 60), an {@link ImageFilterOverloadException} is
+ * thrown so the request can be answered with a 503. Derivatives already on disk are
+ * returned without going through the pool.
+ */
+public class ImageFilterExecutor {
+
+	private static final int timeout = Config.getIntProperty("IMAGE_FILTER_TIMEOUT", 60);
+	private static final CacheLoadCoalescer runs = new CacheLoadCoalescer();
+	private static final ThreadPoolExecutor pool;
+
+	static {
+		int threads = Config.getIntProperty("IMAGE_FILTER_THREADS", Runtime.getRuntime().availableProcessors());
+		pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(Config.getIntProperty("IMAGE_FILTER_QUEUE_SIZE", 100), 1)),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "ImageFilterWorker-" + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				}, new ThreadPoolExecutor.AbortPolicy());
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Runs the chain on the file, returning the existing result right away when there is one
+	 * @param chain
+	 * @param file
+	 * @param parameters
+	 * @return the resulting file
+	 * @throws ImageFilterOverloadException if the workers are too busy
+	 */
+	public static File run(final ImageFilterChain chain, final File file, final Map<String, String[]> parameters) throws ImageFilterOverloadException {
+		File result = chain.getExistingResult(file, parameters);
+		if (result != null) {
+			return result;
+		}
+
+		try {
+			return (File) runs.load(chain.getKey(file, parameters), new Callable<File>() {
+				public File call() throws Exception {
+					return generate(chain, file, parameters);
+				}
+			});
+		} catch (DotCacheException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+				throw new ImageFilterOverloadException("Interrupted waiting for " + file.getName() + " to be generated", e);
+			}
+			throw new DotRuntimeException("Unable to generate " + file.getName() + " : " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Hands the run to a worker and waits for it
+	 */
+	private static File generate(final ImageFilterChain chain, final File file, final Map<String, String[]> parameters) {
+		final FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+			public File call() throws Exception {
+				return chain.run(file, parameters);
+			}
+		});
+		try {
+			pool.execute(new Runnable() {
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						try {
+							HibernateUtil.closeSession();
+						} catch (DotHibernateException e) {
+							Logger.debug(ImageFilterExecutor.class, e.getMessage(), e);
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			throw new ImageFilterOverloadException("Too many images waiting to be generated, rejecting " + file.getName());
+		}
+
+		try {
+			return task.get(timeout, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			throw new ImageFilterOverloadException("Timed out waiting for " + file.getName() + " to be generated");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageFilterOverloadException("Interrupted waiting for " + file.getName() + " to be generated", e);
+		} catch (ExecutionException e) {
+			throw new DotRuntimeException("Unable to generate " + file.getName() + " : " + e.getCause().getMessage(), e);
+		}
+	}
+
+	/**
+	 * Number of runs waiting for a worker
+	 */
+	public static int getQueueSize() {
+		return pool.getQueue().size();
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.dotmarketing.image.filter;
+
+import com.dotmarketing.exception.DotRuntimeException;
+
+/**
+ * Thrown when an image can't be generated because the image filter workers are busy,
+ * the request should be answered with a 503
+ */
+public class ImageFilterOverloadException extends DotRuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ImageFilterOverloadException(String x) {
+		super(x);
+	}
+
+	public ImageFilterOverloadException(String x, Exception e) {
+		super(x, e);
+	}
+
+}
@@ -3,6 +3,7 @@ package com.dotmarketing.osgi;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.Interceptor;
 import com.dotmarketing.cms.factories.PublicCompanyFactory;
+import com.dotmarketing.filters.CMSFilter;
 import com.dotmarketing.filters.DotUrlRewriteFilter;
 import com.dotmarketing.portlets.workflows.actionlet.WorkFlowActionlet;
 import com.dotmarketing.portlets.workflows.business.WorkflowAPI;
@@ -863,6 +864,9 @@ public abstract class GenericBundleActivator implements BundleActivator {
             if ( resources.exists() ) {
                 FileUtil.deltree( resources );
             }
+
+            //The CMSFilter must stop treating the removed files as webapp files
+            CMSFilter.clearWebappFileCache();
         }
 
         /**
@@ -949,6 +953,8 @@ public abstract class GenericBundleActivator implements BundleActivator {
 
             }
 
+            //The CMSFilter must see the new files as webapp files
+            CMSFilter.clearWebappFileCache();
         }
 
         /**
@@ -36,6 +36,43 @@ public interface BinaryContentExporter {
 		public File getDataFile() {
 			return dataFile;
 		}
+
+		private long length = -1;
+		private long lastModified = -1;
+		private String mimeType;
+
+		/**
+		 * Size of the data file, -1 if the exporter didn't tell
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		public void setLength(long length) {
+			this.length = length;
+		}
+
+		/**
+		 * Last modified date of the data file, -1 if the exporter didn't tell
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public void setLastModified(long lastModified) {
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * Mime type of the data file, null if the exporter didn't tell
+		 */
+		public String getMimeType() {
+			return mimeType;
+		}
+
+		public void setMimeType(String mimeType) {
+			this.mimeType = mimeType;
+		}
 		
 	}
 
@@ -1,5 +1,6 @@
 package com.dotmarketing.portlets.contentlet.business;
 
+import com.dotcms.content.elasticsearch.business.ESContentFactoryImpl.IndexSearchResult;
 import com.dotcms.content.elasticsearch.business.ESContentFactoryImpl.TranslatedQuery;
 import com.dotmarketing.business.Cachable;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
@@ -22,6 +23,10 @@ public abstract class ContentletCache implements Cachable {
     public abstract void addTranslatedQuery(String key, TranslatedQuery translatedQuery);
 
     public abstract TranslatedQuery getTranslatedQuery(String key);
+
+    public abstract void addIndexSearch(String key, IndexSearchResult result);
+
+    public abstract IndexSearchResult getIndexSearch(String key);
     
     public abstract String getMetadata(String key);
 
@@ -1,5 +1,6 @@
 package com.dotmarketing.portlets.contentlet.business;
 
+import com.dotcms.content.elasticsearch.business.ESContentFactoryImpl.IndexSearchResult;
 import com.dotcms.content.elasticsearch.business.ESContentFactoryImpl.TranslatedQuery;
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.business.APILocator;
@@ -24,8 +25,9 @@ public class ContentletCacheImpl extends ContentletCache {
 	private String primaryGroup = "ContentletCache";
 	private String metadataGroup = "FileAssetMetadataCache";
 	private String translatedQueryGroup = "TranslatedQueryCache";
+	private String indexSearchGroup = "IndexSearchCache";
     // region's name for the cache
-    private String[] groupNames = {primaryGroup, HostCache.PRIMARY_GROUP, metadataGroup,translatedQueryGroup};
+    private String[] groupNames = {primaryGroup, HostCache.PRIMARY_GROUP, metadataGroup,translatedQueryGroup,indexSearchGroup};
 
 	public ContentletCacheImpl() {
         cache = CacheLocator.getCacheAdministrator();
@@ -51,6 +53,21 @@ public class ContentletCacheImpl extends ContentletCache {
 		} 
 	}
 	
+	@Override
+	public void addIndexSearch(String key, IndexSearchResult result) {
+		cache.put(key, result, indexSearchGroup);
+	}
+
+	@Override
+	public IndexSearchResult getIndexSearch(String key) {
+		try {
+			return (IndexSearchResult) cache.get(key, indexSearchGroup);
+		} catch (DotCacheException e) {
+			Logger.debug(this, "Cache Entry not found", e);
+			return null;
+		}
+	}
+
 	@Override
 	public void addMetadata(String key, String metadata) {
 	    key = metadataGroup + key;
@@ -5,7 +5,11 @@ import java.util.Map;
 
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.UserAPI;
-import com.dotmarketing.image.filter.ImageFilter;
+import com.dotmarketing.image.filter.DerivativeImageIndex;
+import com.dotmarketing.image.filter.DerivativeImageIndex.Derivative;
+import com.dotmarketing.image.filter.ImageFilterChain;
+import com.dotmarketing.image.filter.ImageFilterExecutor;
+import com.dotmarketing.image.filter.ImageFilterOverloadException;
 import com.dotmarketing.portlets.contentlet.business.BinaryContentExporter;
 import com.dotmarketing.portlets.contentlet.business.BinaryContentExporterException;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
@@ -17,7 +21,8 @@ import com.dotmarketing.util.Logger;
  * 
  * the chain is provided by the "filter=" parameter
  * You can chain filters so that you resize then crop to 
- * produce the resulting image
+ * produce the resulting image, see {@link ImageFilterChain}
+ * The generated images are looked up in the {@link DerivativeImageIndex}
  * 
  * 
  */
@@ -32,36 +37,36 @@ public class ImageFilterExporter implements BinaryContentExporter {
 		
 		try {
 
-			String[] filter=new String[0];
+			String filter=null;
 			if(parameters.get("filter") != null){
-				filter= parameters.get("filter")[0].split(","); 
+				filter= parameters.get("filter")[0]; 
 			}
 			else if(parameters.get("filters") != null){
-				filter= parameters.get("filters")[0].split(","); 
+				filter= parameters.get("filters")[0]; 
 			}
 
-			for(String s : filter){
-				String clazz =null;
-				try {
-					clazz ="com.dotmarketing.image.filter." + s + "ImageFilter";
-					Class<ImageFilter> iFilter = (Class<ImageFilter>) Class.forName( clazz );
-					ImageFilter i=	iFilter.newInstance();
-					file = i.runFilter(file,   parameters);
-				} catch (ClassNotFoundException e) {
-					Logger.error(ImageFilterExporter.class, "Unable to instanciate : " +  clazz );
-				} catch (InstantiationException e) {
-					Logger.error(ImageFilterExporter.class, "InstantiationException : " +  clazz );
-				} catch (IllegalAccessException e) {
-					Logger.error(ImageFilterExporter.class, "IllegalAccessException : " +  clazz );
+			if(filter != null){
+				ImageFilterChain chain = ImageFilterChain.getChain(filter);
+				Derivative derivative = DerivativeImageIndex.get(chain, file, parameters);
+				if(derivative == null){
+					File result = ImageFilterExecutor.run(chain, file, parameters);
+					derivative = (result != file) ? DerivativeImageIndex.put(chain, file, parameters, result) : null;
+					file = result;
 				}
-				catch (Exception e) {
-					Logger.error(ImageFilterExporter.class, "Exception in " +  clazz + " :" + e.getMessage() );
+				if(derivative != null){
+					data = new BinaryContentExporterData(derivative.getFile());
+					data.setLength(derivative.getLength());
+					data.setLastModified(derivative.getLastModified());
+					data.setMimeType(derivative.getMimeType());
+					return data;
 				}
 			}
 
 
 			data = new BinaryContentExporterData(file);
 			
+		} catch (ImageFilterOverloadException e) {
+			throw e;
 		} catch (Exception e) {
 			Logger.error(ImageFilterExporter.class, e.getMessage(), e);
 			throw new BinaryContentExporterException(e.getMessage(), e);
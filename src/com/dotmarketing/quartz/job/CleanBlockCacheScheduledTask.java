@@ -46,7 +46,8 @@ public class CleanBlockCacheScheduledTask implements Job {
 		long x = 0;
 		for(String key : keys){
 			BlockDirectiveCacheObject bo = bdc.get(key);
-			if(bo != null && bo.getCreated() + (bo.getTtl() * 1000) < System.currentTimeMillis()) {
+			// expired entries are kept for a while to be served stale during a refresh
+			if(bo != null && bo.getCreated() + (bo.getTtl() * 1000L) + bdc.getMaxStaleMillis() < System.currentTimeMillis()) {
 				bdc.remove(key);
 				x++;
 			}
@@ -14,6 +14,7 @@ import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotStateException;
+import com.dotmarketing.cache.ContainerRenderCache;
 import com.dotmarketing.cache.StructureCache;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotSecurityException;
@@ -345,5 +346,8 @@ public class ContainerServices {
         f.delete();
         DotResourceCache vc = CacheLocator.getVeloctyResourceCache();
         vc.remove(ResourceManager.RESOURCE_TEMPLATE + filePath );
+        if (!EDIT_MODE) {
+            ContainerRenderCache.removeContainer(identifier.getInode());
+        }
     }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotStateException;
+import com.dotmarketing.cache.ContainerRenderCache;
 import com.dotmarketing.cache.FieldsCache;
 import com.dotmarketing.comparators.ContentComparator;
 import com.dotmarketing.comparators.WebAssetSortOrderComparator;
@@ -534,6 +535,9 @@ public class ContentletServices {
 				Logger.error(ContentletServices.class,e.getMessage(),e);
 			}
 		}
+		if (!EDIT_MODE) {
+			ContainerRenderCache.removeContentlet(identifier.getInode());
+		}
 	}
 
 	private static void saveToDisk(String folderPath, String filePath, String data) throws IOException {
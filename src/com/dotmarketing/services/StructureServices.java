@@ -10,6 +10,7 @@ import java.util.List;
 import org.apache.velocity.runtime.resource.ResourceManager;
 
 import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.cache.ContainerRenderCache;
 import com.dotmarketing.portlets.structure.model.Field;
 import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.util.Config;
@@ -185,5 +186,6 @@ public class StructureServices {
 		f.delete();
 		DotResourceCache vc = CacheLocator.getVeloctyResourceCache();
         vc.remove(ResourceManager.RESOURCE_TEMPLATE + filePath );
+        ContainerRenderCache.removeStructure(structure.getInode());
 	}
 }
\ No newline at end of file
@@ -1,9 +1,8 @@
 package com.dotmarketing.servlets;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,7 +14,6 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -39,6 +37,7 @@ import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotHibernateException;
 import com.dotmarketing.exception.DotRuntimeException;
 import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.image.filter.ImageFilterOverloadException;
 import com.dotmarketing.portlets.contentlet.business.BinaryContentExporter;
 import com.dotmarketing.portlets.contentlet.business.BinaryContentExporterException;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
@@ -48,7 +47,6 @@ import com.dotmarketing.portlets.fileassets.business.IFileAsset;
 import com.dotmarketing.portlets.files.business.FileAPI;
 import com.dotmarketing.portlets.structure.model.Field;
 import com.dotmarketing.util.Config;
-import com.dotmarketing.util.Constants;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.WebKeys;
@@ -372,7 +370,8 @@ public class BinaryExporterServlet extends HttpServlet {
 			 *******************************/
 
 
-			String mimeType = fileAPI.getMimeType(data.getDataFile().getName());
+			// exporters that already know the file tell its mime type, size and date
+			String mimeType = (data.getMimeType() != null) ? data.getMimeType() : fileAPI.getMimeType(data.getDataFile().getName());
 
 			if (mimeType == null)
 				mimeType = "application/octet-stream";
@@ -395,7 +394,7 @@ public class BinaryExporterServlet extends HttpServlet {
 			expiration.add(java.util.Calendar.DAY_OF_MONTH, _daysCache);
 			int seconds = (_daysCache * 24 * 60 * 60);
 
-			long _lastModified = data.getDataFile().lastModified();
+			long _lastModified = (data.getLastModified() >= 0) ? data.getLastModified() : data.getDataFile().lastModified();
 			if(_lastModified < 0) {
 			    _lastModified = 0;
 			}
@@ -405,59 +404,40 @@ public class BinaryExporterServlet extends HttpServlet {
 			Date _lastModifiedDate = new java.util.Date(_lastModified);
 
 
-			long _fileLength = data.getDataFile().length();
+			long _fileLength = (data.getLength() >= 0) ? data.getLength() : data.getDataFile().length();
 			String _eTag = "dot:" + assetInode + ":" + _lastModified + ":" + _fileLength;
 
-			SimpleDateFormat httpDate = new SimpleDateFormat(Constants.RFC2822_FORMAT);
-			httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+			SimpleDateFormat httpDate = SpeedyAssetServletUtil.getHttpDate();
             /* Setting cache friendly headers */
             resp.setHeader("Expires", httpDate.format(expiration.getTime()));
             resp.setHeader("Cache-Control", "public, max-age="+seconds);
 
-            String ifModifiedSince = req.getHeader("If-Modified-Since");
-            String ifNoneMatch = req.getHeader("If-None-Match");
-
-            /*
-             * If the etag matches then the file is the same
-             *
-            */
-            if(ifNoneMatch != null){
-                if(_eTag.equals(ifNoneMatch) || ifNoneMatch.equals("*")){
-                    resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED );
-                    return;
-                }
+            /* If-None-Match and If-Modified-Since */
+            if(SpeedyAssetServletUtil.isNotModified(req, _eTag, _lastModified)){
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED );
+                return;
             }
 
-            /* Using the If-Modified-Since Header */
-             if(ifModifiedSince != null){
-			    try{
-			        Date ifModifiedSinceDate = httpDate.parse(ifModifiedSince);
-			        if(_lastModifiedDate.getTime() <= ifModifiedSinceDate.getTime()){
-			            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED );
-			            return;
-			        }
-			    }
-			    catch(Exception e){}
-			}
-
             resp.setHeader("Last-Modified", httpDate.format(_lastModifiedDate));
-            resp.setHeader("Content-Length", String.valueOf(_fileLength));
             resp.setHeader("ETag", _eTag);
             //resp.setHeader("Content-Disposition", "attachment; filename=" + data.getDataFile().getName());
 
-            FileInputStream is = new FileInputStream(data.getDataFile());
-
-            int count = 0;
-            byte[] buffer = new byte[4096];
-            OutputStream servletOutput = resp.getOutputStream();
-            while((count = is.read(buffer)) > 0)
-            	servletOutput.write(buffer, 0, count);
-
-            servletOutput.close();
+            /* Range requests and zero copy transfer of the file, shared with the SpeedyAssetServlet */
+            FileChannelCache.CachedChannel cached = FileChannelCache.getInstance().open(data.getDataFile());
+            try {
+                SpeedyAssetServletUtil.writeFile(req, resp, data.getDataFile(), cached.getChannel(), cached.getLength(),
+                        mimeType, _eTag, _lastModified);
+            } finally {
+                cached.release();
+            }
 
 		} catch (DotContentletStateException e) {
 			Logger.debug(BinaryExporterServlet.class, e.getMessage(),e);
 			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+		} catch (ImageFilterOverloadException e) {
+			Logger.warn(BinaryExporterServlet.class, e.getMessage());
+			resp.setHeader("Retry-After", String.valueOf(Config.getIntProperty("IMAGE_FILTER_RETRY_AFTER", 5)));
+			resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
 		} catch (DotRuntimeException e) {
 			//Logger.error(BinaryExporterServlet.class, e.getMessage());
 			Logger.debug(BinaryExporterServlet.class, e.getMessage(),e);
@@ -489,6 +469,10 @@ public class BinaryExporterServlet extends HttpServlet {
 			Logger.debug(BinaryExporterServlet.class, e.getMessage(),e);
 			Logger.error(BinaryExporterServlet.class, e.getMessage());
 			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+		} catch (FileNotFoundException e) {
+			// the generated file was deleted after the exporter handed it over, the next request generates it again
+			Logger.debug(BinaryExporterServlet.class, e.getMessage(),e);
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
 		}
 
 	}
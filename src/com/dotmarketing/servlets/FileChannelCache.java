@@ -0,0 +1,165 @@
+package com.dotmarketing.servlets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Keeps up to ASSET_CHANNEL_CACHE_SIZE (default 64) served files open so hot assets are
+ * not reopened on every request. Channels are only read with positional transfers so they
+ * can be shared by concurrent requests, a channel evicted while in use is closed once the
+ * last request using it releases it.
+ * A file is reopened when its last modified date or length change.
+ *
+ * Lookups and releases take no lock: channels are reference counted and the cache holds
+ * one reference. Once the cache is over its size the least recently used channel is evicted.
+ */
+public class FileChannelCache {
+
+	private static final FileChannelCache instance = new FileChannelCache(Config.getIntProperty("ASSET_CHANNEL_CACHE_SIZE", 64));
+
+	private final int maxSize;
+	private final ConcurrentHashMap<String, CachedChannel> channels = new ConcurrentHashMap<String, CachedChannel>();
+
+	public FileChannelCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public static FileChannelCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns an open channel on the file, it has to be released once done
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public CachedChannel open(File file) throws IOException {
+		String path = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		long length = file.length();
+		if (maxSize <= 0) {
+			return new CachedChannel(file, lastModified, length, 1);
+		}
+		while (true) {
+			CachedChannel channel = channels.get(path);
+			if (channel != null && channel.lastModified == lastModified && channel.length == length) {
+				if (channel.retain()) {
+					channel.lastUsed = System.currentTimeMillis();
+					return channel;
+				}
+				// evicted and closed since we got it
+				channels.remove(path, channel);
+				continue;
+			}
+			// one reference for the cache, one for the caller
+			CachedChannel opened = new CachedChannel(file, lastModified, length, 2);
+			boolean stored = (channel == null)
+					? channels.putIfAbsent(path, opened) == null
+					: channels.replace(path, channel, opened);
+			if (!stored) {
+				// another request cached the file first, use theirs
+				opened.close();
+				continue;
+			}
+			if (channel != null) {
+				channel.release();
+			}
+			if (channels.size() > maxSize) {
+				evictEldest();
+			}
+			return opened;
+		}
+	}
+
+	/**
+	 * Closes every cached channel not in use
+	 */
+	public void clear() {
+		for (Map.Entry<String, CachedChannel> entry : channels.entrySet()) {
+			if (channels.remove(entry.getKey(), entry.getValue())) {
+				entry.getValue().release();
+			}
+		}
+	}
+
+	private void evictEldest() {
+		Map.Entry<String, CachedChannel> eldest = null;
+		for (Map.Entry<String, CachedChannel> entry : channels.entrySet()) {
+			if (eldest == null || entry.getValue().lastUsed < eldest.getValue().lastUsed) {
+				eldest = entry;
+			}
+		}
+		if (eldest != null && channels.remove(eldest.getKey(), eldest.getValue())) {
+			eldest.getValue().release();
+		}
+	}
+
+	public class CachedChannel {
+
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final long lastModified;
+		private final long length;
+		private final AtomicInteger references;
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		private CachedChannel(File f, long lastModified, long length, int references) throws IOException {
+			this.file = new RandomAccessFile(f, "r");
+			this.channel = file.getChannel();
+			this.lastModified = lastModified;
+			this.length = length;
+			this.references = new AtomicInteger(references);
+		}
+
+		public FileChannel getChannel() {
+			return channel;
+		}
+
+		/**
+		 * Size of the file when it was opened
+		 * @return
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		public void release() {
+			if (references.decrementAndGet() == 0) {
+				close();
+			}
+		}
+
+		/**
+		 * Adds a reference unless the channel was already closed
+		 */
+		private boolean retain() {
+			while (true) {
+				int current = references.get();
+				if (current <= 0) {
+					return false;
+				}
+				if (references.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		private void close() {
+			try {
+				file.close();
+			} catch (IOException e) {
+				Logger.debug(FileChannelCache.class, "Unable to close file : " + e.getMessage(), e);
+			}
+		}
+	}
+
+}
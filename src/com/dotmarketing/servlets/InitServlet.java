@@ -56,6 +56,7 @@ import com.dotmarketing.util.ConfigUtils;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.VelocityUtil;
+import com.dotmarketing.velocity.VelocitySourceCache;
 import com.liferay.portal.model.Company;
 import com.liferay.portal.util.ReleaseInfo;
 
@@ -277,6 +278,9 @@ public class InitServlet extends HttpServlet {
 			//Just get the Engine to make sure it gets inited on time before the first request
 			VelocityUtil.getEngine();
 
+			//Parse the templates stored by the velocity source cache in the background
+			VelocitySourceCache.getInstance().warmUp();
+
 
 
 			
@@ -3,18 +3,12 @@ package com.dotmarketing.servlets;
 import static com.dotmarketing.business.PermissionAPI.PERMISSION_READ;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.WritableByteChannel;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.StringTokenizer;
-import java.util.TimeZone;
 import java.util.regex.Pattern;
 
 import javax.servlet.ServletConfig;
@@ -29,16 +23,16 @@ import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.PermissionAPI;
 import com.dotmarketing.business.web.WebAPILocator;
+import com.dotmarketing.cache.HotAssetCache;
 import com.dotmarketing.cache.LiveCache;
 import com.dotmarketing.cache.WorkingCache;
 import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.filters.compression.GZIPFilter;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.fileassets.business.IFileAsset;
 import com.dotmarketing.util.Config;
-import com.dotmarketing.util.Constants;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
-import com.google.common.io.Files;
 import com.liferay.portal.PortalException;
 import com.liferay.portal.SystemException;
 import com.liferay.portal.model.User;
@@ -48,16 +42,6 @@ public class SpeedyAssetServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	private static String realPath = null;
 	private static String assetPath = "/assets";
-	private static class ThreadLocalHTTPDate extends ThreadLocal<java.text.SimpleDateFormat>{
-		@Override
-		protected SimpleDateFormat initialValue() {
-			SimpleDateFormat sdf = new java.text.SimpleDateFormat(Constants.RFC2822_FORMAT);
-			sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-			return sdf;
-		}
-	}
-
-	private static final ThreadLocalHTTPDate httpDate = new SpeedyAssetServlet.ThreadLocalHTTPDate();
 
 	private static PermissionAPI permissionAPI = APILocator.getPermissionAPI();
 
@@ -69,7 +53,6 @@ public class SpeedyAssetServlet extends HttpServlet {
         try {
             assetPath = Config.getStringProperty("ASSET_PATH");
         } catch (Exception e) { }
-        httpDate.get().setTimeZone(TimeZone.getTimeZone("GMT"));
     }
 
 
@@ -86,6 +69,7 @@ public class SpeedyAssetServlet extends HttpServlet {
 
 
 		File f;
+		HotAssetCache.HotAsset hot = null;
 		boolean PREVIEW_MODE = false;
 		boolean EDIT_MODE = false;
 		HttpSession session = request.getSession(false);
@@ -173,7 +157,11 @@ public class SpeedyAssetServlet extends HttpServlet {
 						}else{
 							f = new File(realPath + uri);
 						}
-						if(uri == null || !f.exists() || !f.canRead()) {
+						// small assets served from memory don't need to hit the disk
+						if(uri != null){
+							hot = HotAssetCache.get(f.getPath());
+						}
+						if(uri == null || (hot == null && (!f.exists() || !f.canRead()))) {
 							if(uri == null){
 								Logger.warn(SpeedyAssetServlet.class, "URI is null");
 							}
@@ -262,7 +250,7 @@ public class SpeedyAssetServlet extends HttpServlet {
 //			Identifier identifier = APILocator.getIdentifierAPI().findFromInode(Long.parseLong(inode));
 			
 
-			String mimeType = APILocator.getFileAPI().getMimeType(f.getName());
+			String mimeType = (hot != null) ? hot.getMimeType() : APILocator.getFileAPI().getMimeType(f.getName());
 			if (mimeType == null)
 				mimeType = "application/octet-stream";
 
@@ -287,6 +275,11 @@ public class SpeedyAssetServlet extends HttpServlet {
             	}
            		return;
             }
+
+            // the cached bytes have to belong to the version we just looked up
+            if (hot != null) {
+            	hot = HotAssetCache.get(f.getPath(), file.getInode(), file.getModDate());
+            }
             
             response.setHeader("Content-Disposition","filename=\"" + file.getFileName() + "\"");
 
@@ -315,177 +308,122 @@ public class SpeedyAssetServlet extends HttpServlet {
 					expiration.add(java.util.Calendar.DAY_OF_MONTH, _daysCache);
 					int seconds = (_daysCache * 24 * 60 * 60);
 
-					long _lastModified = f.lastModified();
-					if(_lastModified < 0) {
-					    _lastModified = 0;
-					}
-					// we need to round the _lastmodified to get rid of the milliseconds.
-					_lastModified = _lastModified / 1000;
-					_lastModified = _lastModified * 1000;
+					long _lastModified = (hot != null) ? hot.getLastModified() : lastModified(f);
 					Date _lastModifiedDate = new java.util.Date(_lastModified);
 
 
-					long _fileLength = f.length();
-					String _eTag = "dot:" + inode + ":" + _lastModified + ":" + _fileLength;
+					long _fileLength = (hot != null) ? hot.getBytes().length : f.length();
+					String _eTag = (hot != null) ? hot.getETag() : "dot:" + inode + ":" + _lastModified + ":" + _fileLength;
 
 
 	                /* Setting cache friendly headers */
-                    response.setHeader("Expires", httpDate.get().format(expiration.getTime()));
+                    response.setHeader("Expires", SpeedyAssetServletUtil.getHttpDate().format(expiration.getTime()));
                     response.setHeader("Cache-Control", "public, max-age="+seconds);
 
-
-                    String ifModifiedSince = request.getHeader("If-Modified-Since");
-                    String ifNoneMatch = request.getHeader("If-None-Match");
-
-                    /*
-                     * If the etag matches then the file is the same
-                     *
-                    */
-                    if(ifNoneMatch != null){
-                        if(_eTag.equals(ifNoneMatch) || ifNoneMatch.equals("*")){
-                            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED );
-                            f = null;
-                            return;
-                        }
+                    /* If-None-Match and If-Modified-Since */
+                    if(SpeedyAssetServletUtil.isNotModified(request, _eTag, _lastModified)){
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED );
+                        f = null;
+                        return;
                     }
 
-                    /* Using the If-Modified-Since Header */
-                     if(ifModifiedSince != null){
-					    try{
-					        Date ifModifiedSinceDate = httpDate.get().parse(ifModifiedSince);
-
-					        if(_lastModifiedDate.getTime() <= ifModifiedSinceDate.getTime()){
-
-					            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED );
-					            f = null;
-					            return;
-					        }
-					    }
-					    catch(Exception e){}
-
-					}
-
-                    response.setHeader("Last-Modified", httpDate.get().format(_lastModifiedDate));
+                    response.setHeader("Last-Modified", SpeedyAssetServletUtil.getHttpDate().format(_lastModifiedDate));
                     response.setHeader("ETag", _eTag);
 
                 /* if we are in ADMIN MODE, don't cache */
 				}else{
 				    GregorianCalendar expiration = new GregorianCalendar();
 					expiration.add(java.util.Calendar.MONTH, -1);
-					response.setHeader("Expires", httpDate.get().format(expiration.getTime()));
+					response.setHeader("Expires", SpeedyAssetServletUtil.getHttpDate().format(expiration.getTime()));
 					response.setHeader("Cache-Control", "max-age=-1");
 				}
 
 			}
 
 
+			FileChannelCache.CachedChannel cached = null;
 			ServletOutputStream out = null;
-			FileChannel from = null;
-			WritableByteChannel to = null;
-			RandomAccessFile input = null;
 			try {
-				out = response.getOutputStream();
-				from = new FileInputStream(f).getChannel();
-				to = Channels.newChannel(out);
-				//DOTCMS-5716
-				//32 MB at a time	
-				int maxTransferSize = (32 * 1024 * 1024) ;
-				long size = from.size();
-				long position = 0;
-				
-				boolean responseSent = false;
-				byte[] data = Files.toByteArray(f);
-	            //ServletOutputStream sos = response.getOutputStream();
 				//extract range header
 				String rangeHeader = request.getHeader("range");
-				if(UtilMethods.isSet(rangeHeader)){
-					 response.setHeader("Accept-Ranges", "bytes");
-					// Range header should match format "bytes=n-n,n-n,n-n...". If not, then return 416.
-					if (!rangeHeader.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
-						response.setHeader("Content-Range", "bytes */" + data.length); // Required in 416.
-						response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-						return;
-					}
-					//parse multiple range bytes
-					ArrayList<SpeedyAssetServletUtil.ByteRange> ranges = SpeedyAssetServletUtil.parseRange(rangeHeader, data.length);
-					if (ranges != null){
-						SpeedyAssetServletUtil.ByteRange full = new SpeedyAssetServletUtil.ByteRange(0, f.length() - 1, f.length());
-						if (ranges.isEmpty() || ranges.get(0).equals(full)) {
-							// Return full file.
-							input = new RandomAccessFile(f, "r");
-							SpeedyAssetServletUtil.ByteRange r = full;
-							response.setContentType(file.getMimeType());
-							response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
-							response.setHeader("Content-Length", String.valueOf(r.length));
-							// Copy full range.
-							SpeedyAssetServletUtil.copy(input, out, r.start, r.length);
-						} else if (ranges.size() == 1){
-							SpeedyAssetServletUtil.ByteRange range = ranges.get(0);
-							input = new RandomAccessFile(f, "r");
-							// Check if Range is syntactically valid. If not, then return 416.
-							if (range.start > range.end) {
-								response.setHeader("Content-Range", "bytes */" + data.length); // Required in 416.
-								response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-								return;
-							}
-							response.setContentType(file.getMimeType());
-							response.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + range.total);
-							response.setHeader("Content-Length", String.valueOf(range.length));
-				            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
-							SpeedyAssetServletUtil.copy(input, out, range.start, range.length);
-						}else{
-							response.setContentType("multipart/byteranges; boundary=" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY);
-							response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-						    input = new RandomAccessFile(f, "r");
-							for (SpeedyAssetServletUtil.ByteRange r : ranges) {
-								if (r.start > r.end) {
-									response.setHeader("Content-Range", "bytes */" + data.length); // Required in 416.
-									response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-									return;
-								}
-								// Add multipart boundary and header fields for every range.
-								out.println();
-								out.println("--" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY);
-								out.println("Content-Type: " + file.getMimeType());
-								out.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
-								out.println();
-
-								// Copy single part range of multi part range.
-								SpeedyAssetServletUtil.copy(input, out, r.start, r.length);
-							}
-							// End with multipart boundary.
-							out.println();
-							out.println("--" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY + "--");
-						}
-						responseSent = true;
-					}	
+
+				if (hot != null && !UtilMethods.isSet(rangeHeader)) {
+					out = response.getOutputStream();
+					writeHotAsset(request, response, out, hot);
+					return;
 				}
-				if(!responseSent){
-					response.setContentLength(data.length);
-					response.setHeader("Content-Length", String.valueOf(f.length()));
-					while (position < size) {
-						position +=  from.transferTo(position, maxTransferSize, to);
+
+				cached = FileChannelCache.getInstance().open(f);
+				FileChannel from = cached.getChannel();
+				long size = cached.getLength();
+
+				// keep small live assets in memory for the next requests
+				long _lastModified = lastModified(f);
+				String _eTag = "dot:" + inode + ":" + _lastModified + ":" + size;
+				if (!PREVIEW_MODE && !EDIT_MODE && !UtilMethods.isSet(rangeHeader) && HotAssetCache.accepts(size)) {
+					hot = HotAssetCache.put(f.getPath(), file.getInode(), file.getModDate(), read(from, size), mimeType,
+							_eTag, _lastModified);
+					if (hot != null) {
+						out = response.getOutputStream();
+						writeHotAsset(request, response, out, hot);
+						return;
 					}
 				}
+				SpeedyAssetServletUtil.writeFile(request, response, f, from, size, file.getMimeType(), _eTag, _lastModified);
 			} catch (Exception e) {
 				Logger.warn(this, e + " Error for = " + request.getRequestURI() + (request.getQueryString() != null?"?"+request.getQueryString():"") );
 				Logger.debug(this, "Error serving asset = " + request.getRequestURI() + (request.getQueryString() != null?"?"+request.getQueryString():""), e);
 
 			} finally {
-				if(to != null)
-					to.close();
-				if(from != null)
-					from.close();
+				if(cached != null)
+					cached.release();
 				if(out != null)
 					out.close();
-				if(input !=null)
-					input.close();
 			}
-
 		} catch (Exception e) {
 			Logger.debug(this, "General Error occurred serving asset = " + request.getRequestURI() + (request.getQueryString() != null?"?"+request.getQueryString():""), e);
 			//DOTCMS-1981
 			//response.sendError(404, "Asset not Found");
 		}
 	}
+
+	/**
+	 * Writes an asset kept in memory, gzipped when the client accepts it
+	 */
+	private void writeHotAsset(HttpServletRequest request, HttpServletResponse response, ServletOutputStream out, HotAssetCache.HotAsset hot) throws IOException {
+		byte[] bytes = hot.getBytes();
+		if (hot.getGzipBytes() != null) {
+			response.addHeader("Vary", "Accept-Encoding");
+			if (GZIPFilter.acceptsGzip(request)) {
+				response.setHeader("Content-Encoding", "gzip");
+				bytes = hot.getGzipBytes();
+			}
+		}
+		response.setContentLength(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads the whole file, only used for files small enough to be kept in memory
+	 */
+	private byte[] read(FileChannel from, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining()) {
+			if (from.read(buffer, buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * The file last modified date without the milliseconds, as sent in the headers
+	 */
+	private long lastModified(File f) {
+		long _lastModified = f.lastModified();
+		if(_lastModified < 0) {
+		    _lastModified = 0;
+		}
+		return (_lastModified / 1000) * 1000;
+	}
 }
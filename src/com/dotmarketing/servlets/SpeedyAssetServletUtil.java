@@ -1,9 +1,23 @@
 package com.dotmarketing.servlets;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.TimeZone;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Constants;
 
 /**
  * @see {@link http://programmaremobile.blogspot.com/2009/01/iphone-file-download-eng-ver.html}
@@ -12,8 +26,192 @@ import java.util.ArrayList;
  */
 public class SpeedyAssetServletUtil {
 	
-	protected static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
+	public static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 	protected static final int DEFAULT_BUFFER_SIZE = 10240; // ..bytes = 10KB.
+	//DOTCMS-5716
+	//32 MB at a time
+	protected static final long MAX_TRANSFER_SIZE = 32 * 1024 * 1024;
+	private static final boolean useSendFile = Config.getBooleanProperty("ASSET_USE_SENDFILE", true);
+	private static final ThreadLocal<SimpleDateFormat> httpDate = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			SimpleDateFormat sdf = new SimpleDateFormat(Constants.RFC2822_FORMAT);
+			sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return sdf;
+		}
+	};
+
+	/**
+	 * The RFC 2822 GMT date format used in the http headers, one per thread
+	 */
+	public static SimpleDateFormat getHttpDate() {
+		return httpDate.get();
+	}
+
+	/**
+	 * Checks the If-None-Match and If-Modified-Since headers of a conditional GET. As in
+	 * RFC 7232 If-Modified-Since is ignored when If-None-Match is sent
+	 * @param request
+	 * @param eTag the ETag sent for the file
+	 * @param lastModified the Last-Modified date sent for the file, without milliseconds
+	 * @return true if the client copy is current and a 304 should be sent
+	 */
+	public static boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return matchesETag(ifNoneMatch, eTag);
+		}
+		String ifModifiedSince = request.getHeader("If-Modified-Since");
+		if (ifModifiedSince != null) {
+			try {
+				return lastModified <= getHttpDate().parse(ifModifiedSince).getTime();
+			} catch (ParseException e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param header a list of entity tags or *, as sent in If-None-Match
+	 * @param eTag the ETag sent for the file
+	 * @return true if one of the tags is the file one, compared without the weak W/ prefix
+	 */
+	private static boolean matchesETag(String header, String eTag) {
+		String tag = (eTag != null && eTag.startsWith("W/")) ? eTag.substring(2) : eTag;
+		for (String candidate : header.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*")) {
+				return true;
+			}
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (tag != null && candidate.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks the If-Range header, the Range header is only honored if it matches the ETag
+	 * or the Last-Modified date of the file
+	 * @param request
+	 * @param eTag the ETag sent for the file, null if none
+	 * @param lastModified the Last-Modified date sent for the file, without milliseconds
+	 * @return false if the whole file has to be sent
+	 */
+	public static boolean isRangeCurrent(HttpServletRequest request, String eTag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.equals(eTag)) {
+			return true;
+		}
+		try {
+			return lastModified == getHttpDate().parse(ifRange).getTime();
+		} catch (ParseException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the file to the response honoring the Range and If-Range headers: one range is
+	 * sent as a 206, several as a multipart/byteranges 206 and invalid ones get a 416.
+	 * The bytes are handed to the connector with sendfile when it supports it (ASSET_USE_SENDFILE,
+	 * default true) or transferred from the channel.
+	 * @param request
+	 * @param response
+	 * @param file the file being sent
+	 * @param from an open channel on the file
+	 * @param size the file size
+	 * @param contentType the file mime type
+	 * @param eTag the ETag sent for the file, null if none
+	 * @param lastModified the Last-Modified date sent for the file, without milliseconds
+	 * @throws IOException
+	 */
+	public static void writeFile(HttpServletRequest request, HttpServletResponse response, File file, FileChannel from, long size,
+			String contentType, String eTag, long lastModified) throws IOException {
+		response.setHeader("Accept-Ranges", "bytes");
+		String rangeHeader = request.getHeader("range");
+
+		if (rangeHeader != null && rangeHeader.length() > 0 && isRangeCurrent(request, eTag, lastModified)) {
+			// Range header should match format "bytes=n-n,n-n,n-n...". If not, then return 416.
+			if (!rangeHeader.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
+				sendRangeNotSatisfiable(response, size);
+				return;
+			}
+			//parse multiple range bytes
+			ArrayList<ByteRange> ranges = parseRange(rangeHeader, size);
+			for (ByteRange r : ranges) {
+				if (r.start > r.end || r.start >= size) {
+					sendRangeNotSatisfiable(response, size);
+					return;
+				}
+			}
+			ByteRange full = new ByteRange(0, size - 1, size);
+			if (ranges.size() == 1 && !ranges.get(0).equals(full)) {
+				ByteRange range = ranges.get(0);
+				response.setContentType(contentType);
+				response.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + range.total);
+				response.setHeader("Content-Length", String.valueOf(range.length));
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
+				if (!sendFile(request, file, range.start, range.length)) {
+					transfer(from, Channels.newChannel(response.getOutputStream()), range.start, range.length);
+				}
+				return;
+			} else if (ranges.size() > 1) {
+				response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				ServletOutputStream out = response.getOutputStream();
+				WritableByteChannel to = Channels.newChannel(out);
+				for (ByteRange r : ranges) {
+					// Add multipart boundary and header fields for every range.
+					out.println();
+					out.println("--" + MULTIPART_BOUNDARY);
+					out.println("Content-Type: " + contentType);
+					out.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
+					out.println();
+
+					// Copy single part range of multi part range.
+					transfer(from, to, r.start, r.length);
+				}
+				// End with multipart boundary.
+				out.println();
+				out.println("--" + MULTIPART_BOUNDARY + "--");
+				return;
+			}
+		}
+
+		// Return full file.
+		response.setHeader("Content-Length", String.valueOf(size));
+		if (!sendFile(request, file, 0, size)) {
+			transfer(from, Channels.newChannel(response.getOutputStream()), 0, size);
+		}
+	}
+
+	/**
+	 * Hands the given part of the file to the connector when it supports sendfile, so the
+	 * bytes go from the page cache to the socket without passing through the servlet.
+	 * ASSET_USE_SENDFILE (default true) turns it off.
+	 * @return false if the servlet has to write the bytes itself
+	 */
+	private static boolean sendFile(HttpServletRequest request, File f, long start, long length) {
+		if (!useSendFile || !Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+			return false;
+		}
+		request.setAttribute("org.apache.tomcat.sendfile.filename", f.getAbsolutePath());
+		request.setAttribute("org.apache.tomcat.sendfile.start", Long.valueOf(start));
+		request.setAttribute("org.apache.tomcat.sendfile.end", Long.valueOf(start + length));
+		return true;
+	}
+
+	private static void sendRangeNotSatisfiable(HttpServletResponse response, long size) throws IOException {
+		response.setHeader("Content-Range", "bytes */" + size); // Required in 416.
+		response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+	}
 	
 	/**
      * Returns a substring of the given string value from the given begin index to the given end
@@ -35,7 +233,7 @@ public class SpeedyAssetServletUtil {
 	 * @param dataLen length of the byte range
 	 * @return
 	 */
-	protected static ArrayList<ByteRange> parseRange(String rangeHeader, int length){
+	public static ArrayList<ByteRange> parseRange(String rangeHeader, long length){
         ArrayList<ByteRange> ranges = null;
         if (rangeHeader != null && rangeHeader.startsWith("bytes")){            
             ranges = new ArrayList<ByteRange>(8);
@@ -46,7 +244,7 @@ public class SpeedyAssetServletUtil {
             long end = sublong(part, part.indexOf("-") + 1, part.length());
 
             if (start == -1) {
-                start = length - end;
+                start = Math.max(0, length - end);
                 end = length - 1;
             } else if (end == -1 || end > length - 1) {
                 end = length - 1;
@@ -67,7 +265,7 @@ public class SpeedyAssetServletUtil {
      * @param length Length of the byte range.
      * @throws IOException If something fails at I/O level.
      */
-	protected static void copy(RandomAccessFile input, OutputStream output, long start, long length)throws IOException{
+	public static void copy(RandomAccessFile input, OutputStream output, long start, long length)throws IOException{
 		byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
 		int read;
 
@@ -92,8 +290,30 @@ public class SpeedyAssetServletUtil {
 		}
 	}
 
-    
-   protected static class ByteRange {
+	/**
+	 * Transfers the given byte range of the file to the output without copying it to the heap
+	 * when the output is a socket, at most MAX_TRANSFER_SIZE bytes at a time.
+	 * Positional, so a channel can be shared by concurrent requests.
+	 * @param input The file to read the range from
+	 * @param output The channel to write the range to
+	 * @param start Start of the byte range.
+	 * @param length Length of the byte range.
+	 * @throws IOException If something fails at I/O level.
+	 */
+	public static void transfer(FileChannel input, WritableByteChannel output, long start, long length) throws IOException {
+		long position = start;
+		long end = start + length;
+		while (position < end) {
+			long sent = input.transferTo(position, Math.min(MAX_TRANSFER_SIZE, end - position), output);
+			if (sent <= 0) {
+				// the file was truncated under us
+				break;
+			}
+			position += sent;
+		}
+	}
+
+   public static class ByteRange {
 	   long start;
        long end;
        long length;
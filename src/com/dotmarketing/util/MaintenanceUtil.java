@@ -21,6 +21,7 @@ import com.dotmarketing.common.db.DotConnect;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.filters.CMSFilter;
 import com.dotmarketing.portlets.files.business.FileAPI;
 import com.dotmarketing.portlets.structure.factories.StructureFactory;
 import com.dotmarketing.portlets.structure.model.Field;
@@ -333,6 +334,7 @@ public class MaintenanceUtil {
 	public static void flushCache(){
 		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
 		cache.flushAll();
+		CMSFilter.clearWebappFileCache();
 	}
 
 	public static void deleteAssets(List<String> inodes, String tableName, int offset){
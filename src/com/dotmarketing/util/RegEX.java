@@ -1,9 +1,9 @@
 package com.dotmarketing.util;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.oro.text.regex.MalformedPatternException;
 import org.apache.oro.text.regex.MatchResult;
@@ -33,7 +33,7 @@ public class RegEX {
 	private static RegEX instance;
 	private Perl5Compiler compiler;
 	
-	private Map<String, org.apache.oro.text.regex.Pattern> patterns = new HashMap<String, org.apache.oro.text.regex.Pattern>();
+	private Map<String, org.apache.oro.text.regex.Pattern> patterns = new ConcurrentHashMap<String, org.apache.oro.text.regex.Pattern>();
 	
 	private RegEX() {
 		compiler = new Perl5Compiler();
@@ -55,10 +55,11 @@ public class RegEX {
 	private Pattern getPattern(String regEx) throws MalformedPatternException{
 		Pattern p = patterns.get(regEx);
 		if(!UtilMethods.isSet(p)){
-			synchronized (patterns) {
+			// the compiler is not thread safe
+			synchronized (compiler) {
 				p = compiler.compile(regEx, Perl5Compiler.READ_ONLY_MASK);
-				patterns.put(regEx, p);
 			}
+			patterns.put(regEx, p);
 		}
 		return p;
 	}
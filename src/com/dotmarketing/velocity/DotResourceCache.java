@@ -6,6 +6,7 @@ package com.dotmarketing.velocity;
 import java.io.File;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.oro.text.regex.MalformedPatternException;
 import org.apache.oro.text.regex.MatchResult;
@@ -20,6 +21,7 @@ import com.dotmarketing.business.Cachable;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotCacheAdministrator;
 import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.exception.DotRuntimeException;
 import com.dotmarketing.util.Logger;
 import com.liferay.util.StringUtil;
 
@@ -98,6 +100,39 @@ public class DotResourceCache implements ResourceCache,Cachable {
         return rw != null ? rw.getResource() : null;	
 	}
 	
+	/**
+	 * Gets the resource from cache. On a miss only one thread runs the loader and
+	 * caches the resource, other threads asking for the same resource wait for it.
+	 * Exceptions thrown by the loader (ResourceNotFoundException, ParseErrorException)
+	 * are rethrown to every waiting thread.
+	 * @param resourceKey
+	 * @param loader
+	 * @return
+	 */
+	public Resource get(Object resourceKey, final Callable<Resource> loader) {
+		resourceKey=cleanKey(resourceKey.toString());
+		String group = primaryGroup;
+		if(isMenu(resourceKey.toString())){
+			group = menuGroup;
+		}
+		String key = group + resourceKey;
+		ResourceWrapper rw = null;
+		try{
+			rw = (ResourceWrapper)cache.get(key, group, new Callable<ResourceWrapper>() {
+				public ResourceWrapper call() throws Exception {
+					Resource resource = loader.call();
+					return resource != null ? new ResourceWrapper(resource) : null;
+				}
+			});
+		}catch (DotCacheException e) {
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new DotRuntimeException(e.getMessage(), e);
+		}
+		return rw != null ? rw.getResource() : null;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.apache.velocity.runtime.resource.ResourceCache#initialize(org.apache.velocity.runtime.RuntimeServices)
 	 */
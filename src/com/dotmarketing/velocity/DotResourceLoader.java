@@ -257,7 +257,16 @@ public class DotResourceLoader extends ResourceLoader {
 
                 Logger.debug(this,"DotResourceLoader:\tWriting out container inode = " + container.getInode());
 
-                result = ContainerServices.buildVelocity(container, identifier, preview);
+                if (preview) {
+                	result = ContainerServices.buildVelocity(container, identifier, preview);
+                } else {
+                	VelocitySourceCache sourceCache = VelocitySourceCache.getInstance();
+                	result = sourceCache.get(arg0, container.getInode(), container.getModDate());
+                	if (result == null) {
+                		result = sourceCache.put(arg0, container.getInode(), container.getModDate(),
+                				ContainerServices.buildVelocity(container, identifier, preview));
+                	}
+                }
             } catch (NumberFormatException e) {
             	CacheLocator.getVeloctyResourceCache().addMiss(arg0);
                 Logger.warn(this,"getResourceStream: Invalid resource path provided = " + arg0 + ", request discarded.");
@@ -433,7 +442,16 @@ public class DotResourceLoader extends ResourceLoader {
 
                 Logger.debug(this,"DotResourceLoader:\tWriting out Template inode = " + template.getInode());
 
-                result = TemplateServices.buildVelocity(template, preview);
+                if (preview) {
+                	result = TemplateServices.buildVelocity(template, preview);
+                } else {
+                	VelocitySourceCache sourceCache = VelocitySourceCache.getInstance();
+                	result = sourceCache.get(arg0, template.getInode(), template.getModDate());
+                	if (result == null) {
+                		result = sourceCache.put(arg0, template.getInode(), template.getModDate(),
+                				TemplateServices.buildVelocity(template, preview));
+                	}
+                }
             } catch (NumberFormatException e) {
                 Logger.warn(this,"getResourceStream: Invalid resource path provided = " + arg0 + ", request discarded.");
                 throw new ResourceNotFoundException("Invalid resource path provided = " + arg0);
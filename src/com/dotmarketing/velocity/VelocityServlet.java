@@ -47,20 +47,22 @@ import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.UserProxy;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.BlockDirectiveCacheObject;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.PermissionAPI;
 import com.dotmarketing.business.portal.PortletAPI;
 import com.dotmarketing.business.web.HostWebAPI;
 import com.dotmarketing.business.web.LanguageWebAPI;
 import com.dotmarketing.business.web.WebAPILocator;
-import com.dotmarketing.cache.LiveCache;
 import com.dotmarketing.cache.StructureCache;
+import com.dotmarketing.cache.URIResolutionCache;
 import com.dotmarketing.cms.factories.PublicCompanyFactory;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.factories.ClickstreamFactory;
+import com.dotmarketing.filters.compression.GZIPFilter;
 import com.dotmarketing.portlets.containers.model.Container;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
@@ -359,19 +361,13 @@ public abstract class VelocityServlet extends HttpServlet {
 		// Map with all identifier inodes for a given uri.
 		//
 
-		// Checking the path is really live using the livecache
-		String cachedUri = LiveCache.getPathFromCache(uri, host);
-
-		// if we still have nothing, check live cache first (which has a 404 cache )
-		if (cachedUri == null) {
-			throw new ResourceNotFoundException(String.format("Resource %s not found in Live mode!", uri));
-		}
-
-		// now  we check identifier cache first (which DOES NOT have a 404 cache )
-		Identifier ident = APILocator.getIdentifierAPI().find(host, uri);
-		if(ident ==null && ident.getInode() == null){
+		// Checking the path is really live, the resolution cache keeps the 404s too
+		URIResolutionCache.ResolvedURI resolved = URIResolutionCache.resolve(uri, host,
+				URIResolutionCache.getLanguageId(request.getParameter("language_id")));
+		if (resolved.isNotFound() || resolved.getIdentifier() == null) {
 			throw new ResourceNotFoundException(String.format("Resource %s not found in Live mode!", uri));
 		}
+		Identifier ident = APILocator.getIdentifierAPI().find(resolved.getIdentifier());
 		response.setContentType(CHARSET);
 
 		request.setAttribute("idInode", String.valueOf(ident.getInode()));
@@ -474,16 +470,18 @@ public abstract class VelocityServlet extends HttpServlet {
 		String key = getPageCacheKey(request);
 		if (key != null) {
 
-			String cachedPage = CacheLocator.getBlockDirectiveCache().get(key, (int) page.getCacheTTL());
-
-			if (cachedPage == null || "refresh".equals(request.getParameter("dotcache"))
+			boolean refresh = "refresh".equals(request.getParameter("dotcache"))
 					|| "refresh".equals(request.getAttribute("dotcache"))
-					|| "refresh".equals(request.getSession().getAttribute("dotcache"))) {
+					|| "refresh".equals(request.getSession().getAttribute("dotcache"));
+			// expired pages keep being served while a single request renders the new version
+			BlockDirectiveCacheObject cachedPage = refresh ? null : CacheLocator.getBlockDirectiveCache().getPage(key, ident.getInode(), (int) page.getCacheTTL());
+
+			if (cachedPage == null) {
 				// build cached response
 				buildCache = true;
 			} else {
 				// have cached response and are not refreshing, send it
-				response.getWriter().write(cachedPage);
+				writeCachedPage(request, response, cachedPage);
 				return;
 			}
 		}
@@ -500,26 +498,64 @@ public abstract class VelocityServlet extends HttpServlet {
 
 		try {
 
-			VelocityUtil.getEngine().getTemplate("/live/" + ident.getInode() + "." + VELOCITY_HTMLPAGE_EXTENSION).merge(context, out);
+			try {
 
-		} catch (ParseErrorException e) {
-			// out.append(e.getMessage());
+				VelocityUtil.getEngine().getTemplate("/live/" + ident.getInode() + "." + VELOCITY_HTMLPAGE_EXTENSION).merge(context, out);
+
+			} catch (ParseErrorException e) {
+				// out.append(e.getMessage());
+			}
+
+			context = null;
+			if (buildCache) {
+				String trimmedPage = out.toString().trim();
+				response.getWriter().write(trimmedPage);
+				response.getWriter().close();
+				synchronized (key) {
+					//CacheLocator.getBlockDirectiveCache().clearCache();
+					CacheLocator.getHTMLPageCache().remove(page);
+					CacheLocator.getBlockDirectiveCache().add(getPageCacheKey(request), trimmedPage, (int) page.getCacheTTL());
+				}
+			} else {
+				out.close();
+			}
+		} finally {
+			if (buildCache) {
+				// a failed render must not keep the other requests on the stale page
+				CacheLocator.getBlockDirectiveCache().endRefresh(key);
+			}
 		}
 
-		context = null;
-		if (buildCache) {
-			String trimmedPage = out.toString().trim();
-			response.getWriter().write(trimmedPage);
-			response.getWriter().close();
-			synchronized (key) {
-				//CacheLocator.getBlockDirectiveCache().clearCache();
-				CacheLocator.getHTMLPageCache().remove(page);
-				CacheLocator.getBlockDirectiveCache().add(getPageCacheKey(request), trimmedPage, (int) page.getCacheTTL());
+	}
+
+	/**
+	 * Writes the cached page bytes, gzipped when the client accepts it, or answers
+	 * with a 304 when the client already has this version of the page
+	 */
+	private void writeCachedPage(HttpServletRequest request, HttpServletResponse response, BlockDirectiveCacheObject cachedPage)
+			throws IOException {
+		String etag = cachedPage.getETag();
+		if (etag != null) {
+			response.setHeader("ETag", etag);
+			String ifNoneMatch = request.getHeader("If-None-Match");
+			if (ifNoneMatch != null && (ifNoneMatch.indexOf(etag) != -1 || "*".equals(ifNoneMatch.trim()))) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
 			}
-		} else {
-			out.close();
 		}
 
+		byte[] body = cachedPage.getBytes();
+		if (cachedPage.getGzipBytes() != null) {
+			response.setHeader("Vary", "Accept-Encoding");
+			if (GZIPFilter.acceptsGzip(request)) {
+				body = cachedPage.getGzipBytes();
+				response.setHeader("Content-Encoding", "gzip");
+			}
+		}
+		response.setContentLength(body.length);
+		ServletOutputStream out = response.getOutputStream();
+		out.write(body);
+		out.flush();
 	}
 
 	@SuppressWarnings("unchecked")
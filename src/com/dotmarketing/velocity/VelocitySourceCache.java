@@ -0,0 +1,190 @@
+package com.dotmarketing.velocity;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Date;
+
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotHibernateException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.ConfigUtils;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.VelocityUtil;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * Keeps the velocity source generated for live containers and templates on disk, under
+ * dynamic/velocity/sourcecache, keyed by resource name and by the inode and mod date of the
+ * version it was built from. Nodes don't have to build it again after a restart and
+ * {@link #warmUp()} parses the stored templates in the background at startup, so the
+ * first requests find them in the velocity cache.
+ *
+ * VELOCITY_SOURCE_CACHE (default true) turns it off, VELOCITY_SOURCE_CACHE_WARMUP (default
+ * true) the startup parsing and VELOCITY_SOURCE_CACHE_WARMUP_MAX (default 1000) limits how
+ * many templates are parsed.
+ *
+ * @author dotCMS
+ */
+public class VelocitySourceCache {
+
+	// bump it when the generated source format changes so old entries are ignored
+	private static final String FORMAT = "v1";
+	private static final String ENCODING = "UTF-8";
+
+	private static final VelocitySourceCache instance = new VelocitySourceCache();
+
+	private final boolean enabled = Config.getBooleanProperty("VELOCITY_SOURCE_CACHE", true);
+	private File root;
+
+	private VelocitySourceCache() {
+	}
+
+	public static VelocitySourceCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @param resourceName the velocity resource name
+	 * @param inode the inode of the version the source is built from
+	 * @param modDate its mod date
+	 * @return the stored source or null
+	 */
+	public InputStream get(String resourceName, String inode, Date modDate) {
+		if (!enabled) {
+			return null;
+		}
+		File f = new File(getDir(resourceName), getVersion(inode, modDate));
+		if (!f.exists()) {
+			return null;
+		}
+		try {
+			return new ByteArrayInputStream(Files.toByteArray(f));
+		} catch (IOException e) {
+			Logger.debug(this, "Unable to read velocity source " + f + " : " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the source, replacing older versions of the resource
+	 * @param resourceName the velocity resource name
+	 * @param inode the inode of the version the source is built from
+	 * @param modDate its mod date
+	 * @param source the generated source
+	 * @return a stream over the same source
+	 * @throws IOException if the source can't be read
+	 */
+	public InputStream put(String resourceName, String inode, Date modDate, InputStream source) throws IOException {
+		byte[] bytes = ByteStreams.toByteArray(source);
+		if (!enabled) {
+			return new ByteArrayInputStream(bytes);
+		}
+		File dir = getDir(resourceName);
+		String version = getVersion(inode, modDate);
+		try {
+			dir.mkdirs();
+			File tmp = new File(dir, version + ".tmp" + Thread.currentThread().getId());
+			FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+			File f = new File(dir, version);
+			if (!tmp.renameTo(f)) {
+				f.delete();
+				if (!tmp.renameTo(f)) {
+					tmp.delete();
+				}
+			}
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File old : files) {
+					if (!old.getName().equals(version) && !old.getName().contains(".tmp")) {
+						old.delete();
+					}
+				}
+			}
+		} catch (IOException e) {
+			Logger.debug(this, "Unable to store velocity source " + resourceName + " : " + e.getMessage());
+		}
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * Parses the stored templates in a background thread
+	 */
+	public void warmUp() {
+		if (!enabled || !Config.getBooleanProperty("VELOCITY_SOURCE_CACHE_WARMUP", true)) {
+			return;
+		}
+		final File[] dirs = getRoot().listFiles();
+		if (dirs == null || dirs.length == 0) {
+			return;
+		}
+		Thread warmUp = new Thread("VelocitySourceCacheWarmUp") {
+			public void run() {
+				int max = Config.getIntProperty("VELOCITY_SOURCE_CACHE_WARMUP_MAX", 1000);
+				int count = 0;
+				long start = System.currentTimeMillis();
+				try {
+					for (File dir : dirs) {
+						if (count >= max) {
+							break;
+						}
+						String resourceName;
+						try {
+							resourceName = URLDecoder.decode(dir.getName(), ENCODING);
+						} catch (UnsupportedEncodingException e) {
+							continue;
+						}
+						try {
+							VelocityUtil.getEngine().getTemplate(resourceName);
+							count++;
+						} catch (Exception e) {
+							Logger.debug(VelocitySourceCache.class, "Unable to warm up " + resourceName + " : " + e.getMessage());
+						} finally {
+							try {
+								HibernateUtil.closeSession();
+							} catch (DotHibernateException e) {
+								Logger.debug(VelocitySourceCache.class, e.getMessage(), e);
+							}
+						}
+					}
+				} finally {
+					Logger.info(VelocitySourceCache.class, "Parsed " + count + " velocity templates in " + (System.currentTimeMillis() - start) + "ms");
+				}
+			}
+		};
+		warmUp.setDaemon(true);
+		warmUp.setPriority(Thread.MIN_PRIORITY);
+		warmUp.start();
+	}
+
+	private File getRoot() {
+		if (root == null) {
+			root = new File(ConfigUtils.getDynamicContentPath() + File.separator + "velocity" + File.separator + "sourcecache");
+		}
+		return root;
+	}
+
+	private File getDir(String resourceName) {
+		try {
+			return new File(getRoot(), URLEncoder.encode(resourceName, ENCODING));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String getVersion(String inode, Date modDate) {
+		return FORMAT + "_" + inode + "_" + ((modDate == null) ? 0 : modDate.getTime());
+	}
+
+}
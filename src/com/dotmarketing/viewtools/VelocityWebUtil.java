@@ -4,6 +4,7 @@
 package com.dotmarketing.viewtools;
 
 import java.io.StringWriter;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -16,6 +17,7 @@ import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.tools.view.context.ViewContext;
 import org.apache.velocity.tools.view.tools.ViewTool;
 
+import com.dotmarketing.cache.ContainerRenderCache;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
@@ -87,6 +89,26 @@ public class VelocityWebUtil implements ViewTool {
 	}
 	
 	
+	/**
+	 * Renders the live container, taking it from the {@link ContainerRenderCache} when
+	 * its fragment for this page, contentlet list and request was already rendered
+	 * @param containerIdentifier
+	 * @return
+	 * @throws Exception
+	 */
+	public String mergeContainer(final String containerIdentifier) throws ResourceNotFoundException, ParseErrorException, Exception{
+		final String templatePath = "/live/" + containerIdentifier + "." + Config.getStringProperty("VELOCITY_CONTAINER_EXTENSION");
+		String key = ContainerRenderCache.getKey(containerIdentifier, ctx, req);
+		if(key == null){
+			return mergeTemplate(templatePath);
+		}
+		return ContainerRenderCache.get(key, new Callable<String>() {
+			public String call() throws Exception {
+				return mergeTemplate(templatePath);
+			}
+		});
+	}
+	
 	public void mergeTemplate(String templatePath, HttpServletResponse response) throws ResourceNotFoundException, ParseErrorException, Exception{
 		VelocityServlet.velocityCtx.set(ctx);
 		VelocityEngine ve = VelocityUtil.getEngine();
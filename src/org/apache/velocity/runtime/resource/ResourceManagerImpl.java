@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.collections.ExtendedProperties;
 import org.apache.velocity.exception.ParseErrorException;
@@ -35,7 +36,10 @@ import org.apache.velocity.runtime.resource.loader.ResourceLoaderFactory;
 import org.apache.velocity.util.ClassUtils;
 import org.apache.velocity.util.StringUtils;
 
+import com.dotmarketing.business.CacheLoadCoalescer;
+import com.dotmarketing.business.DotCacheException;
 import com.dotmarketing.util.Logger;
+import com.dotmarketing.velocity.DotResourceCache;
 import com.dotmarketing.velocity.DotResourceLoader;
 
 
@@ -84,6 +88,12 @@ public class ResourceManagerImpl
     /** switch to turn off log notice when a resource is found for the first time. */
     private boolean logWhenFound = true;
 
+    /**
+     * Loads and refreshes in progress by resource key, so a template is built and
+     * parsed by a single thread while the others wait for it.
+     */
+    private final CacheLoadCoalescer loads = new CacheLoadCoalescer();
+
     /** The internal RuntimeServices object. */
     protected RuntimeServices rsvc = null;
 
@@ -288,7 +298,7 @@ public class ResourceManagerImpl
          * (static content from #include) with a Template.
          */
 
-        String resourceKey = resourceType + resourceName;
+        final String resourceKey = resourceType + resourceName;
         Resource resource = globalCache.get(resourceKey);
 
         if (resource != null)
@@ -301,20 +311,23 @@ public class ResourceManagerImpl
                     /*
                      * both loadResource() and refreshResource() now return
                      * a new Resource instance when they are called
-                     * (put in the cache when appropriate) in order to allow
-                     * several threads to parse the same template simultaneously.
-                     * It is redundant work and will cause more garbage collection but the
-                     * benefit is that it allows concurrent parsing and processing
-                     * without race conditions when multiple requests try to
-                     * refresh/load the same template at the same time.
+                     * (put in the cache when appropriate) so a template in use
+                     * by another thread is never partially overwritten.
                      *
-                     * Another alternative is to limit template parsing/retrieval
-                     * so that only one thread can parse each template at a time
-                     * but that creates a scalability bottleneck.
+                     * Only one thread refreshes a given template at a time, the
+                     * others wait for its result instead of parsing it again. Different
+                     * templates are still loaded concurrently.
                      *
                      * See VELOCITY-606, VELOCITY-595 and VELOCITY-24
                      */
-                    resource = refreshResource(resource, encoding);
+                    final Resource cached = resource;
+                    resource = singleFlight("refresh:" + resourceKey, new Callable<Resource>()
+                    {
+                        public Resource call() throws Exception
+                        {
+                            return refreshResource(cached, encoding);
+                        }
+                    });
                 }
             }
             catch (ResourceNotFoundException rnfe)
@@ -347,11 +360,35 @@ public class ResourceManagerImpl
                 /*
                  *  it's not in the cache, so load it.
                  */    
-                resource = loadResource(resourceName, resourceType, encoding);
-
-                if (DotResourceLoader.getInstance().isCachingOn())
+                if (DotResourceLoader.getInstance().isCachingOn() && globalCache instanceof DotResourceCache)
+                {
+                    /*
+                     * only one thread builds and parses the resource,
+                     * the others wait for it to be cached
+                     */
+                    resource = ((DotResourceCache) globalCache).get(resourceKey, new Callable<Resource>()
+                    {
+                        public Resource call() throws Exception
+                        {
+                            return loadResource(resourceName, resourceType, encoding);
+                        }
+                    });
+                }
+                else
                 {
-                    globalCache.put(resourceKey, resource);
+                    resource = singleFlight(resourceKey, new Callable<Resource>()
+                    {
+                        public Resource call() throws Exception
+                        {
+                            Resource loaded = loadResource(resourceName, resourceType, encoding);
+
+                            if (DotResourceLoader.getInstance().isCachingOn())
+                            {
+                                globalCache.put(resourceKey, loaded);
+                            }
+                            return loaded;
+                        }
+                    });
                 }
             }
             catch (ResourceNotFoundException rnfe)
@@ -375,6 +412,32 @@ public class ResourceManagerImpl
         return resource;
     }
 
+    /**
+     * Runs the loader unless another thread is already running it for the same key,
+     * in which case its result is waited for. Loads are not cached here, the loader does it.
+     *
+     * @param  key  The load key.
+     * @param  loader  Builds the resource.
+     * @return  The loaded resource.
+     */
+    private Resource singleFlight(final String key, final Callable<Resource> loader)
+    {
+        try
+        {
+            return (Resource) loads.load(key, loader);
+        }
+        catch (DotCacheException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                // ResourceNotFoundException and ParseErrorException among others
+                throw (RuntimeException) cause;
+            }
+            throw new VelocityException("Unable to load resource " + key, cause != null ? cause : e);
+        }
+    }
+
     /**
      * Create a new Resource of the specified type.
      *
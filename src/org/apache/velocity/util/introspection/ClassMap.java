@@ -23,8 +23,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.lang.text.StrBuilder;
-import org.apache.velocity.util.MapFactory;
 
 import com.dotmarketing.util.Logger;
 
@@ -209,8 +210,9 @@ public class ClassMap
         /**
          * Cache of Methods, or CACHE_MISS, keyed by method
          * name and actual arguments used to find it.
+         * Reads don't lock, concurrent misses for the same key just resolve it twice.
          */
-        private final Map cache = MapFactory.create(false);
+        private final ConcurrentMap cache = new ConcurrentHashMap(64, 0.75f, Runtime.getRuntime().availableProcessors());
 
         /** Map of methods that are searchable according to method parameters to find a match */
         private final MethodMap methodMap = new MethodMap();
@@ -259,11 +261,11 @@ public class ClassMap
                     /*
                      *  that's a miss :-)
                      */
-                    cache.put(methodKey, CACHE_MISS);
+                    cache.putIfAbsent(methodKey, CACHE_MISS);
                     throw ae;
                 }
 
-                cache.put(methodKey, 
+                cache.putIfAbsent(methodKey,
                         (cacheEntry != null) ? cacheEntry : CACHE_MISS);
             }
 
@@ -19,17 +19,20 @@ package org.apache.velocity.util.introspection;
  * under the License.    
  */
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
 
 import com.dotmarketing.util.Logger;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * This is the internal introspector cache implementation.
  *
+ * Lookups don't lock. Classes are weakly referenced and their class maps softly, so
+ * classes of an OSGi bundle that got stopped can be unloaded. When a class shows up
+ * loaded by another class loader only the classes of the class loader it replaces
+ * are dropped.
+ *
  * @author <a href="mailto:henning@apache.org">Henning P. Schmiedehausen</a>
  * @version $Id: IntrospectorCacheImpl.java 898032 2010-01-11 19:51:03Z nbubna $
  * @since 1.5
@@ -44,16 +47,20 @@ public final class IntrospectorCacheImpl implements IntrospectorCache
     
     /**
      * Holds the method maps for the classes we know about. Map: Class --&gt; ClassMap object.
+     * A ClassMap references its class so it is held softly, otherwise the weak key would
+     * never be cleared.
      */
-    private final Map classMapCache = new HashMap();
+    private final ConcurrentMap<Class, ClassMap> classMapCache = CacheBuilder.newBuilder()
+        .weakKeys().softValues().<Class, ClassMap>build().asMap();
 
     /**
      * Keep the names of the classes in another map. This is needed for a multi-classloader environment where it is possible
      * to have Class 'Foo' loaded by a classloader and then get asked to introspect on 'Foo' from another class loader. While these
      * two Class objects have the same name, a <code>classMethodMaps.get(Foo.class)</code> will return null. For that case, we
-     * keep a set of class names to recognize this case.  
+     * keep the last class seen for each name.
      */
-    private final Set classNameCache = new HashSet();
+    private final ConcurrentMap<String, Class> classNameCache = CacheBuilder.newBuilder()
+        .weakValues().<String, Class>build().asMap();
 
     /**
      * C'tor
@@ -67,18 +74,15 @@ public final class IntrospectorCacheImpl implements IntrospectorCache
      */
     public void clear()
     {
-        synchronized (classMapCache)
-        {
-            classMapCache.clear();
-            classNameCache.clear();
-            Logger.debug(this,CACHEDUMP_MSG);
-        }
+        classMapCache.clear();
+        classNameCache.clear();
+        Logger.debug(this,CACHEDUMP_MSG);
     }
 
     /**
      * Lookup a given Class object in the cache. If it does not exist, 
-     * check whether this is due to a class change and purge the caches
-     * eventually.
+     * check whether this is due to a class change and purge the classes
+     * of the replaced class loader.
      *
      * @param c The class to look up.
      * @return A ClassMap object or null if it does not exist in the cache.
@@ -90,21 +94,19 @@ public final class IntrospectorCacheImpl implements IntrospectorCache
             throw new IllegalArgumentException("class is null!");
         }
 
-        ClassMap classMap = (ClassMap)classMapCache.get(c);
+        ClassMap classMap = classMapCache.get(c);
         if (classMap == null)
         {
             /*
              * check to see if we have it by name.
              * if so, then we have an object with the same
              * name but loaded through a different class loader.
-             * In that case, we will just dump the cache to be sure.
+             * In that case, we dump what that class loader loaded.
              */
-            synchronized (classMapCache)
+            Class known = classNameCache.get(c.getName());
+            if (known != null && known != c)
             {
-                if (classNameCache.contains(c.getName()))
-                {
-                    clear();
-                }
+                clear(known.getClassLoader());
             }
         }
         return classMap;
@@ -121,12 +123,31 @@ public final class IntrospectorCacheImpl implements IntrospectorCache
     public ClassMap put(final Class c)
     {
         final ClassMap classMap = new ClassMap(c);
-        synchronized (classMapCache)
+        ClassMap existing = classMapCache.putIfAbsent(c, classMap);
+        classNameCache.put(c.getName(), c);
+        return (existing != null) ? existing : classMap;
+    }
+
+    /**
+     * Drops the classes loaded by the given class loader
+     */
+    private void clear(final ClassLoader loader)
+    {
+        for (Iterator<Class> it = classMapCache.keySet().iterator(); it.hasNext();)
         {
-            classMapCache.put(c, classMap);
-            classNameCache.add(c.getName());
+            if (it.next().getClassLoader() == loader)
+            {
+                it.remove();
+            }
         }
-        return classMap;
+        for (Iterator<Class> it = classNameCache.values().iterator(); it.hasNext();)
+        {
+            if (it.next().getClassLoader() == loader)
+            {
+                it.remove();
+            }
+        }
+        Logger.debug(this,CACHEDUMP_MSG);
     }
 
 }
@@ -3,12 +3,16 @@ package com;
 import com.dotcms.cmis.DotCMSCMISTest;
 import com.dotcms.content.elasticsearch.business.ESContentletIndexAPITest;
 import com.dotcms.content.elasticsearch.business.ESIndexSpeedTest;
+import com.dotcms.content.elasticsearch.business.LiveIndexGenerationTest;
 import com.dotcms.publisher.endpoint.business.PublishingEndPointAPITest;
 import com.dotcms.rest.ContentResourceTest;
 import com.dotcms.rest.RoleResourceTest;
 import com.dotcms.rest.WebResourceTest;
+import com.dotmarketing.business.CacheLoadCoalescerTest;
 import com.dotmarketing.business.PermissionAPITest;
 import com.dotmarketing.business.RoleAPITest;
+import com.dotmarketing.cache.WriteBehindDiskCacheTest;
+import com.dotmarketing.filters.URIExclusionTableTest;
 import com.dotmarketing.portlets.categories.business.CategoryAPITest;
 import com.dotmarketing.portlets.containers.business.ContainerAPITest;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPITest;
@@ -61,7 +65,11 @@ import org.junit.runners.Suite;
     RoleAPITest.class,
     FolderAPITest.class,
     HostAPITest.class,
-    WorkflowSearcherTest.class
+    WorkflowSearcherTest.class,
+    CacheLoadCoalescerTest.class,
+    WriteBehindDiskCacheTest.class,
+    URIExclusionTableTest.class,
+    LiveIndexGenerationTest.class
 })
 public class AllTestsSuite {
 
@@ -0,0 +1,53 @@
+package com.dotcms.content.elasticsearch.business;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.dotcms.TestBase;
+
+public class LiveIndexGenerationTest extends TestBase {
+
+	@Test
+	public void testSingleStructure() {
+		assertEquals("news", LiveIndexGeneration.getStructureName("+structureName:news"));
+		assertEquals("news", LiveIndexGeneration.getStructureName("+structureName:News +languageId:1 +deleted:false"));
+		assertEquals("news", LiveIndexGeneration.getStructureName("+languageId:1 +StructureName:news"));
+		assertEquals("news", LiveIndexGeneration.getStructureName("+(conhost:abc conhost:SYSTEM_HOST) +structureName:news"));
+	}
+
+	@Test
+	public void testNotRestrictedToOneStructure() {
+		// no structure clause
+		assertNull(LiveIndexGeneration.getStructureName("+languageId:1 +deleted:false"));
+		// optional or excluded
+		assertNull(LiveIndexGeneration.getStructureName("structureName:news"));
+		assertNull(LiveIndexGeneration.getStructureName("-structureName:news"));
+		assertNull(LiveIndexGeneration.getStructureName("+title:x structureName:news"));
+		// more than one
+		assertNull(LiveIndexGeneration.getStructureName("+structureName:news +structureName:blog"));
+		assertNull(LiveIndexGeneration.getStructureName("+(structureName:news structureName:blog)"));
+		// nested in a group
+		assertNull(LiveIndexGeneration.getStructureName("+(+structureName:news)"));
+		// wildcards
+		assertNull(LiveIndexGeneration.getStructureName("+structureName:new*"));
+		assertNull(LiveIndexGeneration.getStructureName("+structureName:new?"));
+		assertNull(LiveIndexGeneration.getStructureName("+structureName: +title:x"));
+	}
+
+	@Test
+	public void testGenerationFollowsWrites() {
+		String query = "+structureName:liveIndexGenerationTest";
+		String before = LiveIndexGeneration.getGeneration(query);
+		LiveIndexGeneration.changed("otherStructure");
+		assertEquals(before, LiveIndexGeneration.getGeneration(query));
+		LiveIndexGeneration.changed("LiveIndexGenerationTest");
+		assertFalse(before.equals(LiveIndexGeneration.getGeneration(query)));
+
+		before = LiveIndexGeneration.getGeneration(query);
+		LiveIndexGeneration.changed();
+		assertFalse(before.equals(LiveIndexGeneration.getGeneration(query)));
+	}
+}
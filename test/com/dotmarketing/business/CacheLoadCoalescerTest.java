@@ -0,0 +1,298 @@
+package com.dotmarketing.business;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jgroups.JChannel;
+import org.junit.Test;
+
+import com.dotcms.TestBase;
+import com.dotmarketing.exception.DotDataException;
+
+public class CacheLoadCoalescerTest extends TestBase {
+
+	private static final String GROUP = "testgroup";
+
+	@Test
+	public void testConcurrentLoadsRunTheLoaderOnce() throws Exception {
+		final CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final Callable<Object> loader = new Callable<Object>() {
+			public Object call() throws Exception {
+				calls.incrementAndGet();
+				started.countDown();
+				gate.await(10, TimeUnit.SECONDS);
+				return "value";
+			}
+		};
+
+		final List<Object> results = new ArrayList<Object>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 5; i++) {
+			Thread t = new Thread() {
+				public void run() {
+					try {
+						Object value = coalescer.load("key", loader);
+						synchronized (results) {
+							results.add(value);
+						}
+					} catch (DotCacheException e) {
+						fail(e.getMessage());
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		// let every other thread join the load before it completes
+		waitUntilWaiting(threads);
+		gate.countDown();
+		for (Thread t : threads) {
+			t.join(5000);
+		}
+
+		assertEquals(1, calls.get());
+		assertEquals(5, results.size());
+		for (Object value : results) {
+			assertEquals("value", value);
+		}
+	}
+
+	@Test
+	public void testLoadsAreNotRemembered() throws Exception {
+		CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<Object> loader = new Callable<Object>() {
+			public Object call() throws Exception {
+				return calls.incrementAndGet();
+			}
+		};
+		assertEquals(1, coalescer.load("key", loader));
+		assertEquals(2, coalescer.load("key", loader));
+		assertNull(coalescer.load(null, loader));
+	}
+
+	@Test
+	public void testLoaderExceptionIsWrapped() throws Exception {
+		CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		final DotDataException error = new DotDataException("boom");
+		try {
+			coalescer.load("key", new Callable<Object>() {
+				public Object call() throws Exception {
+					throw error;
+				}
+			});
+			fail("the loader exception should be thrown");
+		} catch (DotCacheException e) {
+			assertSame(error, e.getCause());
+			assertSame(error, CacheLoadCoalescer.toDataException(e));
+		}
+	}
+
+	@Test
+	public void testLoaderAskingForItsOwnKey() throws Exception {
+		final CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		Object value = coalescer.load("key", new Callable<Object>() {
+			public Object call() throws Exception {
+				return "outer " + coalescer.load("key", new Callable<Object>() {
+					public Object call() throws Exception {
+						return "inner";
+					}
+				});
+			}
+		});
+		assertEquals("outer inner", value);
+	}
+
+	@Test
+	public void testGetPutsTheResult() throws Exception {
+		CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		MapCacheAdministrator cache = new MapCacheAdministrator();
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<Object> loader = new Callable<Object>() {
+			public Object call() throws Exception {
+				calls.incrementAndGet();
+				return "value";
+			}
+		};
+		assertEquals("value", coalescer.get(cache, "key", GROUP, loader));
+		assertEquals("value", cache.get("key", GROUP));
+		assertEquals("value", coalescer.get(cache, "key", GROUP, loader));
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void testGetDoesNotCacheNull() throws Exception {
+		CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		MapCacheAdministrator cache = new MapCacheAdministrator();
+		assertNull(coalescer.get(cache, "key", GROUP, new Callable<Object>() {
+			public Object call() throws Exception {
+				return null;
+			}
+		}));
+		assertTrue(cache.getKeys(GROUP).isEmpty());
+	}
+
+	@Test
+	public void testInvalidatedLoadIsNotCached() throws Exception {
+		final CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		MapCacheAdministrator cache = new MapCacheAdministrator();
+		Object value = coalescer.get(cache, "key", GROUP, new Callable<Object>() {
+			public Object call() throws Exception {
+				// the entry changes while it is being loaded
+				coalescer.invalidate("key", GROUP);
+				return "old";
+			}
+		});
+		assertEquals("old", value);
+		assertNull(cache.get("key", GROUP));
+	}
+
+	@Test
+	public void testGroupInvalidation() throws Exception {
+		final CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		MapCacheAdministrator cache = new MapCacheAdministrator();
+		coalescer.get(cache, "key", GROUP, new Callable<Object>() {
+			public Object call() throws Exception {
+				coalescer.invalidateGroup(GROUP);
+				return "old";
+			}
+		});
+		assertNull(cache.get("key", GROUP));
+
+		coalescer.get(cache, "key", GROUP, new Callable<Object>() {
+			public Object call() throws Exception {
+				coalescer.invalidateAll();
+				return "old";
+			}
+		});
+		assertNull(cache.get("key", GROUP));
+	}
+
+	@Test
+	public void testInvalidationAfterPutRemovesTheValue() throws Exception {
+		final CacheLoadCoalescer coalescer = new CacheLoadCoalescer();
+		// the invalidation lands between the put and the stale check
+		MapCacheAdministrator cache = new MapCacheAdministrator() {
+			public void put(String key, Object content, String group) {
+				super.put(key, content, group);
+				coalescer.invalidate(key, group);
+			}
+		};
+		assertEquals("old", coalescer.get(cache, "key", GROUP, new Callable<Object>() {
+			public Object call() throws Exception {
+				return "old";
+			}
+		}));
+		assertNull(cache.get("key", GROUP));
+	}
+
+	private void waitUntilWaiting(List<Thread> threads) throws InterruptedException {
+		long until = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < until) {
+			int waiting = 0;
+			for (Thread t : threads) {
+				Thread.State state = t.getState();
+				if (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING) {
+					waiting++;
+				}
+			}
+			if (waiting == threads.size()) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Local, map backed administrator
+	 */
+	private static class MapCacheAdministrator implements DotCacheAdministrator {
+
+		private final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+
+		public Set<String> getKeys(String group) {
+			Set<String> keys = new HashSet<String>();
+			for (String key : values.keySet()) {
+				if (key.startsWith(group + ":")) {
+					keys.add(key.substring(group.length() + 1));
+				}
+			}
+			return keys;
+		}
+
+		public void flushAll() {
+			values.clear();
+		}
+
+		public void flushGroup(String group) {
+			for (String key : getKeys(group)) {
+				values.remove(group + ":" + key);
+			}
+		}
+
+		public void flushAlLocalOnlyl() {
+			flushAll();
+		}
+
+		public void flushGroupLocalOnly(String group) {
+			flushGroup(group);
+		}
+
+		public Object get(String key, String group) throws DotCacheException {
+			return values.get(group + ":" + key);
+		}
+
+		public Object get(String key, String group, Callable<?> loader) throws DotCacheException {
+			throw new UnsupportedOperationException();
+		}
+
+		public void put(String key, Object content, String group) {
+			values.put(group + ":" + key, content);
+		}
+
+		public void remove(String key, String group) {
+			values.remove(group + ":" + key);
+		}
+
+		public void removeLocalOnly(String key, String group) {
+			remove(key, group);
+		}
+
+		public void shutdown() {
+		}
+
+		public JChannel getJGroupsChannel() {
+			return null;
+		}
+
+		public List<Map<String, Object>> getCacheStatsList() {
+			return new ArrayList<Map<String, Object>>();
+		}
+
+		public Class getImplementationClass() {
+			return MapCacheAdministrator.class;
+		}
+
+		public DotCacheAdministrator getImplementationObject() {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.dotmarketing.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.dotcms.TestBase;
+
+public class WriteBehindDiskCacheTest extends TestBase {
+
+	private static final String GROUP = "testgroup";
+
+	@Test
+	public void testWritesAreCoalescedInOrder() throws Exception {
+		BlockingStore store = new BlockingStore("a");
+		WriteBehindDiskCache cache = new WriteBehindDiskCache(store, 10, 1);
+		try {
+			cache.put(GROUP, "a", "1");
+			assertTrue(store.blocked.await(5, TimeUnit.SECONDS));
+
+			// the writer is busy with the first value, these wait behind it
+			cache.put(GROUP, "a", "2");
+			cache.put(GROUP, "a", "3");
+			assertEquals(2, cache.getCoalescedWrites());
+			assertEquals("3", cache.get(GROUP, "a"));
+
+			store.gate.countDown();
+			waitForWrites(cache);
+
+			assertEquals("3", store.get(GROUP, "a"));
+			assertEquals("3", cache.get(GROUP, "a"));
+			// the intermediate value is never written
+			assertEquals(2, cache.getWrites());
+			assertEquals("[put a=1, put a=3]", store.ops.toString());
+		} finally {
+			store.gate.countDown();
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testRemoveHidesPendingPut() throws Exception {
+		BlockingStore store = new BlockingStore("a");
+		WriteBehindDiskCache cache = new WriteBehindDiskCache(store, 10, 1);
+		try {
+			cache.put(GROUP, "a", "1");
+			assertTrue(store.blocked.await(5, TimeUnit.SECONDS));
+			cache.remove(GROUP, "a");
+			assertNull(cache.get(GROUP, "a"));
+			assertTrue(!cache.getKeys(GROUP).contains("a"));
+
+			store.gate.countDown();
+			waitForWrites(cache);
+
+			assertNull(store.get(GROUP, "a"));
+			assertNull(cache.get(GROUP, "a"));
+		} finally {
+			store.gate.countDown();
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testOverflowDropsPutAndRemovesOlderValue() throws Exception {
+		BlockingStore store = new BlockingStore("a");
+		store.values.put(GROUP + "/c", "old");
+		store.values.put(GROUP + "/d", "old");
+		WriteBehindDiskCache cache = new WriteBehindDiskCache(store, 1, 1);
+		try {
+			cache.put(GROUP, "a", "1");
+			assertTrue(store.blocked.await(5, TimeUnit.SECONDS));
+			// fills the queue
+			cache.put(GROUP, "b", "1");
+			assertEquals(1, cache.getQueueCapacity());
+
+			// no room left, the put is dropped and the older value removed right away
+			cache.put(GROUP, "c", "new");
+			assertEquals(1, cache.getDroppedWrites());
+			assertNull(cache.get(GROUP, "c"));
+			assertNull(store.get(GROUP, "c"));
+
+			// removes over the capacity are written by the caller
+			cache.remove(GROUP, "d");
+			assertEquals(1, cache.getDroppedWrites());
+			assertNull(store.get(GROUP, "d"));
+
+			store.gate.countDown();
+			waitForWrites(cache);
+
+			assertEquals("1", store.get(GROUP, "a"));
+			assertEquals("1", store.get(GROUP, "b"));
+			assertNull(store.get(GROUP, "c"));
+		} finally {
+			store.gate.countDown();
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testFailedPutRemovesOlderValue() throws Exception {
+		BlockingStore store = new BlockingStore(null);
+		store.values.put(GROUP + "/a", "old");
+		store.failPuts = true;
+		WriteBehindDiskCache cache = new WriteBehindDiskCache(store, 10, 1);
+		try {
+			cache.put(GROUP, "a", "new");
+			waitForWrites(cache);
+
+			assertEquals(1, cache.getFailedWrites());
+			assertNull(store.get(GROUP, "a"));
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testRemoveGroupDropsPendingWrites() throws Exception {
+		BlockingStore store = new BlockingStore("a");
+		WriteBehindDiskCache cache = new WriteBehindDiskCache(store, 10, 1);
+		try {
+			cache.put(GROUP, "a", "1");
+			assertTrue(store.blocked.await(5, TimeUnit.SECONDS));
+			cache.put(GROUP, "b", "1");
+			store.gate.countDown();
+			cache.removeGroup(GROUP);
+			waitForWrites(cache);
+
+			assertNull(store.get(GROUP, "a"));
+			assertNull(store.get(GROUP, "b"));
+			assertNull(cache.get(GROUP, "b"));
+		} finally {
+			store.gate.countDown();
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testPutAfterRemoveGroupIsWrittenOnce() throws Exception {
+		BlockingStore store = new BlockingStore(null);
+		store.writeDelay = 1;
+		WriteBehindDiskCache cache = new WriteBehindDiskCache(store, 10, 4);
+		try {
+			for (int i = 0; i < 200; i++) {
+				cache.put(GROUP, "k", String.valueOf(i));
+				cache.removeGroup(GROUP);
+				cache.put(GROUP, "k", i + "b");
+			}
+			waitForWrites(cache);
+
+			assertTrue("a key was written by two writers at once", !store.overlap);
+			assertEquals("199b", store.get(GROUP, "k"));
+			assertEquals("199b", cache.get(GROUP, "k"));
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	private void waitForWrites(WriteBehindDiskCache cache) throws InterruptedException {
+		long until = System.currentTimeMillis() + 10000;
+		while (cache.getPendingWrites() > 0 && System.currentTimeMillis() < until) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, cache.getPendingWrites());
+	}
+
+	/**
+	 * In memory store, writes to the blocking key wait for the gate to open
+	 */
+	private static class BlockingStore implements DiskCache {
+
+		private final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+		private final List<String> ops = Collections.synchronizedList(new ArrayList<String>());
+		private final String blockingKey;
+		private final CountDownLatch blocked = new CountDownLatch(1);
+		private final CountDownLatch gate = new CountDownLatch(1);
+		private final ConcurrentHashMap<String, AtomicInteger> writing = new ConcurrentHashMap<String, AtomicInteger>();
+		private volatile boolean failPuts = false;
+		private volatile long writeDelay = 0;
+		private volatile boolean overlap = false;
+
+		BlockingStore(String blockingKey) {
+			this.blockingKey = blockingKey;
+		}
+
+		public Object get(String group, String key) throws Exception {
+			return values.get(group + "/" + key);
+		}
+
+		public void put(String group, String key, Object value) throws Exception {
+			block(key);
+			if (failPuts) {
+				throw new Exception("disk full");
+			}
+			enter(key);
+			try {
+				ops.add("put " + key + "=" + value);
+				values.put(group + "/" + key, value);
+			} finally {
+				exit(key);
+			}
+		}
+
+		public void remove(String group, String key) throws Exception {
+			block(key);
+			enter(key);
+			try {
+				ops.add("remove " + key);
+				values.remove(group + "/" + key);
+			} finally {
+				exit(key);
+			}
+		}
+
+		public void removeGroup(String group) throws Exception {
+			for (String key : values.keySet()) {
+				if (key.startsWith(group + "/")) {
+					values.remove(key);
+				}
+			}
+		}
+
+		public Set<String> getKeys(String group) throws Exception {
+			Set<String> keys = new HashSet<String>();
+			for (String key : values.keySet()) {
+				if (key.startsWith(group + "/")) {
+					keys.add(key.substring(group.length() + 1));
+				}
+			}
+			return keys;
+		}
+
+		public Set<String> getGroups() throws Exception {
+			Set<String> groups = new HashSet<String>();
+			for (String key : values.keySet()) {
+				groups.add(key.substring(0, key.indexOf('/')));
+			}
+			return groups;
+		}
+
+		public long getGroupCount(String group) {
+			try {
+				return getKeys(group).size();
+			} catch (Exception e) {
+				return 0;
+			}
+		}
+
+		public void reset() {
+			values.clear();
+		}
+
+		public void destroy() {
+		}
+
+		private void enter(String key) throws InterruptedException {
+			writing.putIfAbsent(key, new AtomicInteger());
+			AtomicInteger count = writing.get(key);
+			if (count.incrementAndGet() > 1) {
+				overlap = true;
+			}
+			if (writeDelay > 0) {
+				Thread.sleep(writeDelay);
+			}
+		}
+
+		private void exit(String key) {
+			writing.get(key).decrementAndGet();
+		}
+
+		private void block(String key) throws InterruptedException {
+			if (key.equals(blockingKey)) {
+				blocked.countDown();
+				gate.await(10, TimeUnit.SECONDS);
+			}
+		}
+	}
+}
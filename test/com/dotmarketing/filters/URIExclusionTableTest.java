@@ -0,0 +1,78 @@
+package com.dotmarketing.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import com.dotcms.TestBase;
+
+public class URIExclusionTableTest extends TestBase {
+
+	@Test
+	public void testExactMatch() {
+		URIExclusionTable table = new URIExclusionTable(Arrays.asList("^/icon$"));
+		assertTrue(table.matches("/icon"));
+		assertFalse(table.matches("/icons"));
+		assertFalse(table.matches("/ico"));
+		assertFalse(table.matches("/html/icon"));
+	}
+
+	@Test
+	public void testPrefixMatch() {
+		URIExclusionTable table = new URIExclusionTable(Arrays.asList("^/dwr/", "^/dotAdmin", "^/d"));
+		assertTrue(table.matches("/dwr/engine.js"));
+		assertTrue(table.matches("/dwr/"));
+		assertTrue(table.matches("/dotAdminX"));
+		assertTrue(table.matches("/d"));
+		assertFalse(table.matches("/"));
+		assertFalse(table.matches("/html/dwr/"));
+	}
+
+	@Test
+	public void testRegexMatch() {
+		URIExclusionTable table = new URIExclusionTable(Arrays.asList("^/html/.*\\.jsp$", "\\.css$", "^/a\\$"));
+		assertTrue(table.matches("/html/portal/login.jsp"));
+		assertFalse(table.matches("/html/portal/login.jsp.bak"));
+		assertTrue(table.matches("/global/style.css"));
+		assertFalse(table.matches("/global/style.cssx"));
+		// an escaped dollar is a literal one, not the end of the uri
+		assertTrue(table.matches("/a$b"));
+		assertFalse(table.matches("/a"));
+	}
+
+	@Test
+	public void testPatternsMatchThemselves() {
+		URIExclusionTable table = new URIExclusionTable(Arrays.asList("/robots.txt"));
+		assertTrue(table.matches("/robots.txt"));
+		assertFalse(table.matches("/sitemap.xml"));
+	}
+
+	@Test
+	public void testInvalidPatternIsSkipped() {
+		URIExclusionTable table = new URIExclusionTable(Arrays.asList("^/bad[", "\\.gif$", "^/dwr/"));
+		assertTrue(table.matches("/images/logo.gif"));
+		assertTrue(table.matches("/dwr/engine.js"));
+		assertFalse(table.matches("/bad["));
+		assertFalse(table.matches("/index.html"));
+	}
+
+	@Test
+	public void testEmptyTable() {
+		URIExclusionTable table = new URIExclusionTable(new ArrayList<String>());
+		assertFalse(table.matches("/"));
+		assertFalse(table.matches("/dwr/engine.js"));
+		assertTrue(table.getPatterns().isEmpty());
+	}
+
+	@Test
+	public void testGetPatterns() {
+		URIExclusionTable table = new URIExclusionTable(Arrays.asList("^/dwr/", "^/icon$", "\\.css$"));
+		assertEquals(new HashSet<String>(Arrays.asList("^/dwr/", "^/icon$", "\\.css$")), table.getPatterns());
+	}
+}